@@ -0,0 +1,355 @@
+package com.uday.copilot;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * Bounded in-memory cache in front of another {@link ProductStore}, so a catalog
+ * larger than the heap, e.g. a {@link MappedProductCatalog}, can be served with
+ * its hot products in memory.
+ *
+ * Lookups read through: a miss loads the product from the backing store and
+ * caches it. Writes go through to the backing store first and then replace or
+ * drop the cached copy, so the backing store always holds every product and the
+ * cache only ever holds a subset. The cache is split by id into shards, each
+ * evicting once its products' total weight exceeds the shard's share of the limit.
+ * Products weigh 1 unless a weigher is given, making the limit a product count.
+ *
+ * Eviction follows the CLOCK approximation of LRU: a hit only marks the entry as
+ * recently used, so lookups read the shard optimistically and never lock or
+ * reorder anything, while the clock hand spares marked entries once, clearing the
+ * mark, and evicts the first unmarked one. Products read once and never again
+ * are therefore the first to go.
+ *
+ * {@link #size()}, {@link #forEach(Consumer)} and
+ * {@link #forEachInPart(int, Consumer)} answer from the backing store and do not
+ * disturb the cache.
+ */
+public class CachingProductStore implements ProductStore {
+
+    private static final int MAX_SHARD_BITS = 4;
+
+    private final ProductStore backing;
+    private final ToIntFunction<? super Product> weigher;
+    private final int shardBits;
+    private final Shard[] shards;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates a cache holding at most {@code maximumSize} products.
+     */
+    public CachingProductStore(ProductStore backing, long maximumSize) {
+        this(backing, maximumSize, p -> 1);
+    }
+
+    /**
+     * Creates a cache whose products weigh at most {@code maximumWeight} in total.
+     *
+     * @param weigher the weight of a product, e.g. its estimated size in bytes; must
+     *     not be negative and must not depend on anything but the product
+     */
+    public CachingProductStore(ProductStore backing, long maximumWeight, ToIntFunction<? super Product> weigher) {
+        if (maximumWeight <= 0) {
+            throw new IllegalArgumentException("maximumWeight must be positive");
+        }
+        this.backing = Objects.requireNonNull(backing, "backing must not be null");
+        this.weigher = Objects.requireNonNull(weigher, "weigher must not be null");
+        // fewer shards for tiny limits, so their shares still add up to no more than the limit
+        this.shardBits = Math.min(MAX_SHARD_BITS, 63 - Long.numberOfLeadingZeros(maximumWeight));
+        this.shards = new Shard[1 << shardBits];
+        long perShard = maximumWeight >> shardBits;
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard(perShard);
+        }
+    }
+
+    @Override
+    public Product get(int id) {
+        Shard shard = shardFor(id);
+        long stamp = shard.lock.tryOptimisticRead();
+        Entry entry = shard.find(id);
+        Product cached = entry == null ? null : entry.product;
+        if (!shard.lock.validate(stamp)) {
+            stamp = shard.lock.readLock();
+            try {
+                entry = shard.find(id);
+                cached = entry == null ? null : entry.product;
+            } finally {
+                shard.lock.unlockRead(stamp);
+            }
+        }
+        if (cached != null) {
+            // racy by design: a lost mark only costs the entry its second chance
+            entry.referenced = true;
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        long writes = shard.writes;
+        Product loaded = backing.get(id);
+        if (loaded != null) {
+            stamp = shard.lock.writeLock();
+            try {
+                // a write since the miss may have made the loaded copy stale; leave it uncached
+                if (shard.writes == writes && shard.find(id) == null) {
+                    cache(shard, loaded);
+                }
+            } finally {
+                shard.lock.unlockWrite(stamp);
+            }
+        }
+        return loaded;
+    }
+
+    @Override
+    public Product put(Product product) {
+        Product previous = backing.put(product);
+        Shard shard = shardFor(product.getId());
+        long stamp = shard.lock.writeLock();
+        try {
+            shard.writes++;
+            cache(shard, product);
+        } finally {
+            shard.lock.unlockWrite(stamp);
+        }
+        return previous;
+    }
+
+    @Override
+    public Product remove(int id) {
+        Product previous = backing.remove(id);
+        Shard shard = shardFor(id);
+        long stamp = shard.lock.writeLock();
+        try {
+            shard.writes++;
+            Entry entry = shard.find(id);
+            if (entry != null) {
+                shard.unlink(entry);
+            }
+        } finally {
+            shard.lock.unlockWrite(stamp);
+        }
+        return previous;
+    }
+
+    @Override
+    public int size() {
+        return backing.size();
+    }
+
+    @Override
+    public void ensureCapacity(int expectedSize) {
+        backing.ensureCapacity(expectedSize);
+    }
+
+    @Override
+    public void forEach(Consumer<? super Product> action) {
+        backing.forEach(action);
+    }
+
+    @Override
+    public int partCount() {
+        return backing.partCount();
+    }
+
+    @Override
+    public void forEachInPart(int part, Consumer<? super Product> action) {
+        backing.forEachInPart(part, action);
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Returns the share of lookups answered from the cache, or 0 before the first.
+     */
+    public double hitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    /**
+     * Returns the number of products currently cached.
+     */
+    public int cachedCount() {
+        int count = 0;
+        for (Shard shard : shards) {
+            long stamp = shard.lock.readLock();
+            try {
+                count += shard.ringSize;
+            } finally {
+                shard.lock.unlockRead(stamp);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the total weight of the products currently cached.
+     */
+    public long cachedWeight() {
+        long weight = 0;
+        for (Shard shard : shards) {
+            long stamp = shard.lock.readLock();
+            try {
+                weight += shard.weight;
+            } finally {
+                shard.lock.unlockRead(stamp);
+            }
+        }
+        return weight;
+    }
+
+    // called with the shard write-locked; caches the product, then evicts down to the limit
+    private void cache(Shard shard, Product product) {
+        int weight = weigher.applyAsInt(product);
+        Entry entry = shard.find(product.getId());
+        if (entry != null) {
+            shard.weight += weight - entry.weight;
+            entry.product = product;
+            entry.weight = weight;
+        } else {
+            shard.link(new Entry(product, weight));
+        }
+        // CLOCK: sweep the ring, giving entries read since the last sweep a second chance;
+        // after two full turns every mark has been cleared at least once, so stop sparing them
+        int spared = 0;
+        while (shard.weight > shard.maximumWeight && shard.ringSize > 0) {
+            if (shard.hand >= shard.ringSize) {
+                shard.hand = 0;
+            }
+            Entry candidate = shard.ring[shard.hand];
+            if (candidate.referenced && spared < 2 * shard.ringSize) {
+                candidate.referenced = false;
+                shard.hand++;
+                spared++;
+            } else {
+                shard.unlink(candidate);
+                evictions.increment();
+            }
+        }
+    }
+
+    private Shard shardFor(int id) {
+        return shardBits == 0 ? shards[0] : shards[IntProductMap.hash(id) >>> (Integer.SIZE - shardBits)];
+    }
+
+    // a cached product
+    private static final class Entry {
+        Product product;
+        int weight;
+        // set by readers, cleared by the clock hand
+        boolean referenced;
+        // position in the shard's ring
+        int ringIndex;
+
+        Entry(Product product, int weight) {
+            this.product = product;
+            this.weight = weight;
+        }
+    }
+
+    // one slice of the cache: an open-addressing table of entries keyed by product id, read
+    // optimistically, and a ring of the same entries swept by the clock hand; writes hold the lock
+    private static final class Shard {
+        final StampedLock lock = new StampedLock();
+        final long maximumWeight;
+        Entry[] table = new Entry[16];
+        Entry[] ring = new Entry[16];
+        int ringSize;
+        int hand;
+        long weight;
+        // bumped by every write, so a load racing a write can tell
+        volatile long writes;
+
+        Shard(long maximumWeight) {
+            this.maximumWeight = maximumWeight;
+        }
+
+        // safe without the lock in the sense of IntProductMap.get: it terminates, but the result
+        // must be validated
+        Entry find(int id) {
+            Entry[] tab = table;
+            int mask = tab.length - 1;
+            int i = IntProductMap.hash(id) & mask;
+            for (int probes = 0; probes < tab.length; probes++) {
+                Entry e = tab[i];
+                if (e == null || e.product.getId() == id) {
+                    return e;
+                }
+                i = (i + 1) & mask;
+            }
+            return null;
+        }
+
+        void link(Entry entry) {
+            if ((ringSize + 1) * 2 > table.length) {
+                Entry[] grown = new Entry[table.length * 2];
+                for (Entry e : table) {
+                    if (e != null) {
+                        insert(grown, e);
+                    }
+                }
+                table = grown;
+            }
+            insert(table, entry);
+            if (ringSize == ring.length) {
+                ring = Arrays.copyOf(ring, ring.length * 2);
+            }
+            entry.ringIndex = ringSize;
+            ring[ringSize++] = entry;
+            weight += entry.weight;
+        }
+
+        void unlink(Entry entry) {
+            Entry[] tab = table;
+            int mask = tab.length - 1;
+            int i = IntProductMap.hash(entry.product.getId()) & mask;
+            while (tab[i] != entry) {
+                i = (i + 1) & mask;
+            }
+            // backward-shift deletion, as in IntProductMap
+            int gap = i;
+            for (int j = (i + 1) & mask; tab[j] != null; j = (j + 1) & mask) {
+                int home = IntProductMap.hash(tab[j].product.getId()) & mask;
+                boolean homeAfterGap = gap <= j ? gap < home && home <= j : gap < home || home <= j;
+                if (!homeAfterGap) {
+                    tab[gap] = tab[j];
+                    gap = j;
+                }
+            }
+            tab[gap] = null;
+
+            Entry last = ring[--ringSize];
+            ring[entry.ringIndex] = last;
+            last.ringIndex = entry.ringIndex;
+            ring[ringSize] = null;
+            weight -= entry.weight;
+        }
+
+        private static void insert(Entry[] tab, Entry entry) {
+            int mask = tab.length - 1;
+            int i = IntProductMap.hash(entry.product.getId()) & mask;
+            while (tab[i] != null) {
+                i = (i + 1) & mask;
+            }
+            tab[i] = entry;
+        }
+    }
+}
@@ -0,0 +1,399 @@
+package com.uday.copilot;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Sequence-numbered record of every change made through an
+ * {@link InventoryManager}, so replicas can follow the inventory by applying
+ * changes instead of copying the whole catalog.
+ *
+ * Each change is a put of the product's new state or a removal of its id,
+ * numbered from 1 in the order the manager made them; changes to the same id are
+ * always in the order they happened. Applying a change is idempotent, so a replica
+ * that starts from a {@link InventorySnapshot} and replays everything after its
+ * {@link InventorySnapshot#journalPosition()} ends up equal to the primary, even
+ * if some of the replayed changes are already in the snapshot.
+ *
+ * The most recent changes are kept in an in-memory ring. A journal given a file
+ * also appends every change to it, framed as
+ * {@code [length][type][sequence][id][price][name length][name][crc32c]}, so a
+ * replica that fell behind the ring can catch up with {@link #read(Path, long,
+ * Consumer)}. File writes are buffered and reach the file when the buffer fills,
+ * on {@link #flush()} and on {@link #close()}; a failed write stops further file
+ * writes, is reported by the next flush or close, and leaves the ring working.
+ */
+public final class ChangeJournal implements Closeable {
+
+    /**
+     * One change to the inventory.
+     */
+    public static final class Change {
+
+        public enum Type {
+            PUT, REMOVE
+        }
+
+        private final long sequence;
+        private final Type type;
+        private final int id;
+        private final Product product;
+
+        Change(long sequence, Type type, int id, Product product) {
+            this.sequence = sequence;
+            this.type = type;
+            this.id = id;
+            this.product = product;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * Returns the product as it was after a put, or null for a removal.
+         */
+        public Product getProduct() {
+            return product;
+        }
+
+        /**
+         * Makes the same change to a replica.
+         */
+        public void applyTo(InventoryManager replica) {
+            if (type == Type.PUT) {
+                replica.addProduct(product);
+            } else {
+                replica.removeProduct(id);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return sequence + " " + type + " " + id + (product == null ? "" : " " + product.getName() + " " + product.getPrice());
+        }
+    }
+
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    private static final short NULL_NAME = -1;
+    private static final int READ_BUFFER = 1 << 20;
+    // type, sequence, id, price and name length ahead of the name bytes
+    private static final int HEADER = 1 + 8 + 4 + 8 + 2;
+    // length prefix, header and checksum around the name bytes
+    private static final int RECORD_OVERHEAD = 4 + HEADER + 4;
+    private static final int MAX_NAME = Short.MAX_VALUE;
+
+    private final Change[] ring;
+    // the first change this journal numbered; earlier ones, from a continued file, are not in the ring
+    private final long first;
+    private final FileChannel channel;
+    private final CRC32C crc = new CRC32C();
+
+    // guarded by this
+    private long last;
+    private int waiting;
+    private ByteBuffer pending;
+    private IOException failure;
+    private boolean closed;
+
+    /**
+     * Creates a journal keeping the last {@code capacity} changes in memory.
+     */
+    public ChangeJournal(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.ring = new Change[capacity];
+        this.first = 1;
+        this.channel = null;
+    }
+
+    /**
+     * Creates a journal keeping the last {@code capacity} changes in memory and
+     * appending every change to the file. An existing file is continued: new
+     * changes are numbered after its last intact record, and a torn tail left by a
+     * crash is cut off.
+     */
+    public ChangeJournal(int capacity, Path file) throws IOException {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        Objects.requireNonNull(file, "file must not be null");
+        this.ring = new Change[capacity];
+        long[] lastSequence = {0};
+        long intact = Files.exists(file) ? scan(file, 0, c -> lastSequence[0] = c.getSequence()) : 0;
+        this.last = lastSequence[0];
+        this.first = last + 1;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.truncate(intact);
+        channel.position(intact);
+        this.pending = ByteBuffer.allocate(64 * 1024);
+    }
+
+    /**
+     * Returns the sequence number of the latest change, or 0 before the first.
+     */
+    public synchronized long lastSequence() {
+        return last;
+    }
+
+    /**
+     * Returns the sequence number of the oldest change still held in memory.
+     * Equals {@code lastSequence() + 1} while there is none.
+     */
+    public synchronized long oldestSequence() {
+        return oldest();
+    }
+
+    /**
+     * Returns up to {@code limit} changes numbered after {@code position}, oldest
+     * first; empty if the replica is up to date.
+     *
+     * @throws IllegalStateException if some of those changes are no longer in
+     *     memory; the replica must catch up from the file or a new snapshot
+     */
+    public synchronized List<Change> changesAfter(long position, int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit must not be negative");
+        }
+        if (position + 1 < oldest()) {
+            throw new IllegalStateException("changes after " + position + " are no longer in memory; oldest is " + oldest());
+        }
+        if (position >= last || limit == 0) {
+            return Collections.emptyList();
+        }
+        int count = (int) Math.min(limit, last - position);
+        List<Change> changes = new ArrayList<>(count);
+        for (long s = position + 1; s <= position + count; s++) {
+            changes.add(ring[(int) (s % ring.length)]);
+        }
+        return changes;
+    }
+
+    /**
+     * Like {@link #changesAfter(long, int)}, but waits up to the timeout for a
+     * change if there is none yet. Returns an empty list if none came.
+     */
+    public synchronized List<Change> awaitChangesAfter(long position, int limit, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        waiting++;
+        try {
+            long remaining;
+            while (last <= position && (remaining = deadline - System.nanoTime()) > 0) {
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+        } finally {
+            waiting--;
+        }
+        return changesAfter(position, limit);
+    }
+
+    /**
+     * Writes the changes buffered for the file and forces them to disk. Does
+     * nothing for a journal without a file.
+     *
+     * @throws IOException if this or an earlier write to the file failed
+     */
+    public synchronized void flush() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        if (failure == null && !closed) {
+            drain();
+            if (failure == null) {
+                try {
+                    channel.force(false);
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Flushes and closes the file. The in-memory ring stays readable.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel == null || closed) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            closed = true;
+            channel.close();
+        }
+    }
+
+    /**
+     * Feeds every intact change in a journal file numbered after {@code position}
+     * to the action, oldest first, and returns the sequence number of the last
+     * change in the file. Stops quietly at a truncated or corrupt record.
+     */
+    public static long read(Path file, long position, Consumer<? super Change> action) throws IOException {
+        long[] lastSequence = {position};
+        scan(file, position, c -> {
+            action.accept(c);
+            lastSequence[0] = c.getSequence();
+        });
+        return lastSequence[0];
+    }
+
+    // called by InventoryManager before a product goes into the store, so a name the file cannot
+    // hold is refused instead of reaching replicas cut short
+    static void check(Product product) {
+        String name = product.getName();
+        // a UTF-16 char never takes more than three UTF-8 bytes
+        if (name != null && name.length() * 3 > MAX_NAME) {
+            int bytes = name.getBytes(StandardCharsets.UTF_8).length;
+            if (bytes > MAX_NAME) {
+                throw new IllegalArgumentException("name longer than " + MAX_NAME + " bytes cannot be journaled: " + bytes);
+            }
+        }
+    }
+
+    // called by InventoryManager under the id's lock, after the store has changed
+    void put(Product product) {
+        append(Change.Type.PUT, product.getId(), product);
+    }
+
+    void remove(int id) {
+        append(Change.Type.REMOVE, id, null);
+    }
+
+    private synchronized void append(Change.Type type, int id, Product product) {
+        Change change = new Change(++last, type, id, product);
+        ring[(int) (change.sequence % ring.length)] = change;
+        if (channel != null && failure == null && !closed) {
+            write(change);
+        }
+        if (waiting > 0) {
+            notifyAll();
+        }
+    }
+
+    private long oldest() {
+        return Math.max(first, last - ring.length + 1);
+    }
+
+    // caller holds the monitor
+    private void write(Change change) {
+        // check() has kept names too long for the frame out
+        byte[] name = null;
+        if (change.product != null && change.product.getName() != null) {
+            name = change.product.getName().getBytes(StandardCharsets.UTF_8);
+        }
+        int size = RECORD_OVERHEAD + (name == null ? 0 : name.length);
+        if (pending.remaining() < size) {
+            drain();
+            if (failure != null) {
+                return;
+            }
+        }
+        int start = pending.position();
+        pending.putInt(size - 8);
+        pending.put(change.type == Change.Type.PUT ? PUT : REMOVE);
+        pending.putLong(change.sequence);
+        pending.putInt(change.id);
+        pending.putDouble(change.product == null ? 0 : change.product.getPrice());
+        pending.putShort(name == null ? NULL_NAME : (short) name.length);
+        if (name != null) {
+            pending.put(name);
+        }
+        crc.reset();
+        crc.update(pending.array(), start + 4, size - 8);
+        pending.putInt((int) crc.getValue());
+    }
+
+    // caller holds the monitor; writes the buffer to the file, recording a failure instead of throwing
+    private void drain() {
+        pending.flip();
+        try {
+            while (pending.hasRemaining()) {
+                channel.write(pending);
+            }
+        } catch (IOException e) {
+            failure = e;
+        }
+        pending.clear();
+    }
+
+    // feeds the intact changes after position to the action; returns the length of the intact prefix
+    private static long scan(Path file, long position, Consumer<Change> action) throws IOException {
+        CRC32C crc = new CRC32C();
+        long intact = 0;
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate(READ_BUFFER);
+            byte[] array = buf.array();
+            while (true) {
+                boolean eof = in.read(buf) < 0;
+                buf.flip();
+                while (buf.remaining() >= 4) {
+                    int p = buf.position();
+                    int length = buf.getInt(p);
+                    if (length < HEADER || length > READ_BUFFER - 8) {
+                        return intact;
+                    }
+                    if (buf.remaining() < length + 8) {
+                        break;
+                    }
+                    crc.reset();
+                    crc.update(array, p + 4, length);
+                    if ((int) crc.getValue() != buf.getInt(p + 4 + length)) {
+                        return intact;
+                    }
+                    byte type = buf.get(p + 4);
+                    long sequence = buf.getLong(p + 5);
+                    int id = buf.getInt(p + 13);
+                    if (type != PUT && type != REMOVE) {
+                        return intact;
+                    }
+                    if (sequence > position) {
+                        if (type == PUT) {
+                            double price = buf.getDouble(p + 17);
+                            short nameLength = buf.getShort(p + 25);
+                            String name = nameLength == NULL_NAME ? null
+                                    : new String(array, p + 4 + HEADER, nameLength, StandardCharsets.UTF_8);
+                            action.accept(new Change(sequence, Change.Type.PUT, id, new Product(id, name, price)));
+                        } else {
+                            action.accept(new Change(sequence, Change.Type.REMOVE, id, null));
+                        }
+                    }
+                    intact += length + 8;
+                    buf.position(p + length + 8);
+                }
+                if (eof) {
+                    return intact;
+                }
+                buf.compact();
+            }
+        }
+    }
+}
@@ -1,11 +0,0 @@
-package com.uday.copilot.clinical;
-
-import org.springframework.boot.SpringApplication;
-import org.springframework.boot.autoconfigure.SpringBootApplication;
-
-@SpringBootApplication
-public class ClinicalApiApplication {
-    public static void main(String[] args) {
-        SpringApplication.run(ClinicalApiApplication.class, args);
-    }
-}
@@ -0,0 +1,541 @@
+package com.uday.copilot;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * A task manager for very large task counts that stores tasks in columns instead
+ * of one object per task. Ids live in two parallel {@code long[]} columns, done and
+ * removed flags in bitsets, and descriptions are deduplicated into a byte arena
+ * (on the heap, or off-heap when constructed with {@code offHeap = true}), so a task
+ * costs roughly 25 bytes plus its share of the distinct descriptions. Descriptions
+ * are counted by the tasks using them; once most are unused, the arena and the
+ * dictionary are rebuilt without them when removed rows are compacted.
+ *
+ * Tasks are handed out as {@link TaskView} flyweights that read the columns on
+ * demand. Lookups by id use an open-addressing table of row numbers; operations by
+ * description scan the int description column, which is cheap but linear.
+ * All methods are synchronized on the manager.
+ */
+public class CompactTaskManager {
+
+    private static final int INITIAL_ROWS = 1024;
+
+    private final TaskIdGenerator idGenerator;
+    private final boolean offHeap;
+
+    // row columns, in insertion order
+    private long[] idHigh = new long[INITIAL_ROWS];
+    private long[] idLow = new long[INITIAL_ROWS];
+    private int[] descriptionRef = new int[INITIAL_ROWS];
+    private final BitSet done = new BitSet();
+    private final BitSet removed = new BitSet();
+    private int rows;
+    private int removedCount;
+    // bumped when rows are compacted, so views re-resolve their row by id
+    private int epoch;
+
+    // id -> row + 1, open addressing with linear probing; 0 marks a free slot
+    private int[] idTable = new int[INITIAL_ROWS * 2];
+
+    // distinct descriptions: UTF-8 bytes in the arena at offset/length
+    private ByteBuffer arena;
+    private int[] descriptionOffset = new int[INITIAL_ROWS];
+    private int[] descriptionLength = new int[INITIAL_ROWS];
+    // number of rows, removed ones excluded, referring to each description
+    private int[] descriptionUses = new int[INITIAL_ROWS];
+    private int descriptions;
+    private int unusedDescriptions;
+    // description hash -> description number + 1, same scheme as idTable
+    private int[] descriptionTable = new int[INITIAL_ROWS * 2];
+
+    /**
+     * Lightweight handle onto one row of the manager. Holds no task data of its
+     * own beyond the id it was created for.
+     */
+    public static final class TaskView {
+        private final CompactTaskManager owner;
+        private final long high;
+        private final long low;
+        private int row;
+        private int epoch;
+
+        private TaskView(CompactTaskManager owner, int row) {
+            this.owner = owner;
+            this.high = owner.idHigh[row];
+            this.low = owner.idLow[row];
+            this.row = row;
+            this.epoch = owner.epoch;
+        }
+
+        public UUID getId() {
+            return new UUID(high, low);
+        }
+
+        public String getDescription() {
+            synchronized (owner) {
+                return owner.description(owner.descriptionRef[resolve()]);
+            }
+        }
+
+        public boolean isDone() {
+            synchronized (owner) {
+                return owner.done.get(resolve());
+            }
+        }
+
+        public void setDone(boolean value) {
+            synchronized (owner) {
+                owner.done.set(resolve(), value);
+            }
+        }
+
+        /**
+         * Returns true while the task is still held by the manager.
+         */
+        public boolean isPresent() {
+            synchronized (owner) {
+                if (epoch != owner.epoch) {
+                    return owner.find(high, low) >= 0;
+                }
+                return !owner.removed.get(row);
+            }
+        }
+
+        // caller must hold the owner's monitor
+        private int resolve() {
+            if (epoch != owner.epoch) {
+                row = owner.find(high, low);
+                epoch = owner.epoch;
+            }
+            if (row < 0 || owner.removed.get(row)) {
+                throw new IllegalStateException("task " + getId() + " has been removed");
+            }
+            return row;
+        }
+
+        @Override
+        public String toString() {
+            synchronized (owner) {
+                int r = resolve();
+                return (owner.done.get(r) ? "[X] " : "[ ] ") + owner.description(owner.descriptionRef[r]);
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            TaskView other = (TaskView) o;
+            return owner == other.owner && high == other.high && low == other.low;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(high) * 31 + Long.hashCode(low);
+        }
+    }
+
+    /**
+     * Constructs an empty manager with an on-heap description arena.
+     */
+    public CompactTaskManager() {
+        this(TaskIdGenerator.timeOrdered(), false);
+    }
+
+    /**
+     * Constructs an empty manager.
+     *
+     * @param idGenerator source of task ids
+     * @param offHeap keep description bytes in direct memory outside the Java heap
+     */
+    public CompactTaskManager(TaskIdGenerator idGenerator, boolean offHeap) {
+        this.idGenerator = Objects.requireNonNull(idGenerator, "idGenerator must not be null");
+        this.offHeap = offHeap;
+        this.arena = allocate(64 * 1024);
+    }
+
+    /**
+     * Adds a new task and returns a view of it.
+     */
+    public synchronized TaskView addTask(String description) {
+        Objects.requireNonNull(description, "description must not be null");
+        UUID id = idGenerator.nextId();
+        if (rows == idHigh.length) {
+            int capacity = rows * 2;
+            idHigh = Arrays.copyOf(idHigh, capacity);
+            idLow = Arrays.copyOf(idLow, capacity);
+            descriptionRef = Arrays.copyOf(descriptionRef, capacity);
+        }
+        int row = rows++;
+        idHigh[row] = id.getMostSignificantBits();
+        idLow[row] = id.getLeastSignificantBits();
+        descriptionRef[row] = intern(description);
+        if ((rows - removedCount) * 2 > idTable.length) {
+            rebuildIdTable(idTable.length * 2);
+        } else {
+            insertId(row);
+        }
+        return new TaskView(this, row);
+    }
+
+    /**
+     * Returns the number of tasks held.
+     */
+    public synchronized int size() {
+        return rows - removedCount;
+    }
+
+    /**
+     * Returns a view of the task with the given id, or null.
+     */
+    public synchronized TaskView getTask(UUID id) {
+        Objects.requireNonNull(id, "id must not be null");
+        int row = find(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        return row < 0 ? null : new TaskView(this, row);
+    }
+
+    /**
+     * Returns views of all tasks in insertion order.
+     */
+    public synchronized List<TaskView> listTasks() {
+        List<TaskView> views = new ArrayList<>(size());
+        for (int row = removed.nextClearBit(0); row < rows; row = removed.nextClearBit(row + 1)) {
+            views.add(new TaskView(this, row));
+        }
+        return Collections.unmodifiableList(views);
+    }
+
+    /**
+     * Applies the action to a view of every task in insertion order, holding the
+     * manager's monitor for the whole walk.
+     */
+    public synchronized void forEachTask(Consumer<? super TaskView> action) {
+        Objects.requireNonNull(action, "action must not be null");
+        for (int row = removed.nextClearBit(0); row < rows; row = removed.nextClearBit(row + 1)) {
+            action.accept(new TaskView(this, row));
+        }
+    }
+
+    /**
+     * Marks the task with the given id as done.
+     */
+    public synchronized boolean markTaskDone(UUID id) {
+        Objects.requireNonNull(id, "id must not be null");
+        int row = find(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        if (row < 0) {
+            return false;
+        }
+        done.set(row);
+        return true;
+    }
+
+    /**
+     * Marks the first task matching the description as done.
+     */
+    public synchronized boolean markTaskDone(String description) {
+        int row = firstRow(description);
+        if (row < 0) {
+            return false;
+        }
+        done.set(row);
+        return true;
+    }
+
+    /**
+     * Removes the task with the given id.
+     */
+    public synchronized boolean removeTask(UUID id) {
+        Objects.requireNonNull(id, "id must not be null");
+        int row = find(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        if (row < 0) {
+            return false;
+        }
+        removeRow(row);
+        return true;
+    }
+
+    /**
+     * Removes the first task that matches the description.
+     */
+    public synchronized boolean removeTask(String description) {
+        int row = firstRow(description);
+        if (row < 0) {
+            return false;
+        }
+        removeRow(row);
+        return true;
+    }
+
+    /**
+     * Finds all tasks matching the given description.
+     */
+    public synchronized List<TaskView> findTasks(String description) {
+        Objects.requireNonNull(description, "description must not be null");
+        int ref = lookupDescription(description);
+        if (ref < 0) {
+            return Collections.emptyList();
+        }
+        List<TaskView> found = new ArrayList<>();
+        for (int row = removed.nextClearBit(0); row < rows; row = removed.nextClearBit(row + 1)) {
+            if (descriptionRef[row] == ref) {
+                found.add(new TaskView(this, row));
+            }
+        }
+        return Collections.unmodifiableList(found);
+    }
+
+    /**
+     * Returns an estimate of the bytes held by the columns, tables and arena,
+     * including off-heap arena memory.
+     */
+    public synchronized long footprintBytes() {
+        long bytes = 16L * idHigh.length + 4L * descriptionRef.length + 4L * idTable.length;
+        bytes += 12L * descriptionOffset.length + 4L * descriptionTable.length;
+        bytes += done.size() / 8 + removed.size() / 8;
+        return bytes + arena.capacity();
+    }
+
+    // caller must hold the monitor
+    private int firstRow(String description) {
+        Objects.requireNonNull(description, "description must not be null");
+        int ref = lookupDescription(description);
+        if (ref < 0) {
+            return -1;
+        }
+        for (int row = removed.nextClearBit(0); row < rows; row = removed.nextClearBit(row + 1)) {
+            if (descriptionRef[row] == ref) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    // caller must hold the monitor
+    private void removeRow(int row) {
+        deleteId(row);
+        if (--descriptionUses[descriptionRef[row]] == 0) {
+            unusedDescriptions++;
+        }
+        removed.set(row);
+        done.clear(row);
+        removedCount++;
+        if (removedCount > INITIAL_ROWS && removedCount * 2 > rows) {
+            compact();
+        }
+    }
+
+    // drops removed rows, keeping insertion order
+    private void compact() {
+        int live = 0;
+        for (int row = removed.nextClearBit(0); row < rows; row = removed.nextClearBit(row + 1)) {
+            idHigh[live] = idHigh[row];
+            idLow[live] = idLow[row];
+            descriptionRef[live] = descriptionRef[row];
+            done.set(live, done.get(row));
+            live++;
+        }
+        done.clear(live, rows);
+        removed.clear();
+        rows = live;
+        removedCount = 0;
+        epoch++;
+        rebuildIdTable(idTable.length);
+        if (unusedDescriptions * 2 > descriptions) {
+            compactDescriptions();
+        }
+    }
+
+    // ---- id table ----
+
+    private static int hash(long high, long low) {
+        long h = (high ^ low) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private int find(long high, long low) {
+        int mask = idTable.length - 1;
+        for (int slot = hash(high, low) & mask; ; slot = (slot + 1) & mask) {
+            int entry = idTable[slot];
+            if (entry == 0) {
+                return -1;
+            }
+            int row = entry - 1;
+            if (idHigh[row] == high && idLow[row] == low) {
+                return row;
+            }
+        }
+    }
+
+    private void insertId(int row) {
+        int mask = idTable.length - 1;
+        int slot = hash(idHigh[row], idLow[row]) & mask;
+        while (idTable[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        idTable[slot] = row + 1;
+    }
+
+    // backward-shift deletion keeps probe chains intact without tombstones
+    private void deleteId(int row) {
+        int mask = idTable.length - 1;
+        int slot = hash(idHigh[row], idLow[row]) & mask;
+        while (idTable[slot] != row + 1) {
+            slot = (slot + 1) & mask;
+        }
+        int gap = slot;
+        for (int next = (gap + 1) & mask; idTable[next] != 0; next = (next + 1) & mask) {
+            int r = idTable[next] - 1;
+            int home = hash(idHigh[r], idLow[r]) & mask;
+            // move the entry back if the gap lies between its home slot and where it sits
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                idTable[gap] = idTable[next];
+                gap = next;
+            }
+        }
+        idTable[gap] = 0;
+    }
+
+    private void rebuildIdTable(int capacity) {
+        idTable = new int[capacity];
+        for (int row = removed.nextClearBit(0); row < rows; row = removed.nextClearBit(row + 1)) {
+            insertId(row);
+        }
+    }
+
+    // ---- description dictionary ----
+
+    private ByteBuffer allocate(int capacity) {
+        return offHeap ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    private String description(int ref) {
+        byte[] bytes = new byte[descriptionLength[ref]];
+        arena.get(descriptionOffset[ref], bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private boolean descriptionEquals(int ref, byte[] bytes) {
+        if (descriptionLength[ref] != bytes.length) {
+            return false;
+        }
+        int offset = descriptionOffset[ref];
+        for (int i = 0; i < bytes.length; i++) {
+            if (arena.get(offset + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int lookupDescription(String description) {
+        byte[] bytes = description.getBytes(StandardCharsets.UTF_8);
+        int mask = descriptionTable.length - 1;
+        for (int slot = Arrays.hashCode(bytes) & mask; ; slot = (slot + 1) & mask) {
+            int entry = descriptionTable[slot];
+            if (entry == 0) {
+                return -1;
+            }
+            if (descriptionEquals(entry - 1, bytes)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    // returns the number of an equal description already stored, or stores a new one
+    private int intern(String description) {
+        byte[] bytes = description.getBytes(StandardCharsets.UTF_8);
+        int mask = descriptionTable.length - 1;
+        int slot = Arrays.hashCode(bytes) & mask;
+        for (; descriptionTable[slot] != 0; slot = (slot + 1) & mask) {
+            int ref = descriptionTable[slot] - 1;
+            if (descriptionEquals(ref, bytes)) {
+                if (descriptionUses[ref]++ == 0) {
+                    unusedDescriptions--;
+                }
+                return ref;
+            }
+        }
+        if (arena.capacity() - arena.position() < bytes.length) {
+            ByteBuffer grown = allocate(Math.max(arena.capacity() * 2, arena.position() + bytes.length));
+            arena.flip();
+            grown.put(arena);
+            arena = grown;
+        }
+        if (descriptions == descriptionOffset.length) {
+            descriptionOffset = Arrays.copyOf(descriptionOffset, descriptions * 2);
+            descriptionLength = Arrays.copyOf(descriptionLength, descriptions * 2);
+            descriptionUses = Arrays.copyOf(descriptionUses, descriptions * 2);
+        }
+        int ref = descriptions++;
+        descriptionOffset[ref] = arena.position();
+        descriptionLength[ref] = bytes.length;
+        descriptionUses[ref] = 1;
+        arena.put(bytes);
+        descriptionTable[slot] = ref + 1;
+        if (descriptions * 2 > descriptionTable.length) {
+            rebuildDescriptionTable(descriptionTable.length * 2);
+        }
+        return ref;
+    }
+
+    // copies the descriptions still in use into a new arena, renumbering them; caller has just
+    // compacted the rows, so every row is live
+    private void compactDescriptions() {
+        int live = descriptions - unusedDescriptions;
+        int liveBytes = 0;
+        for (int ref = 0; ref < descriptions; ref++) {
+            if (descriptionUses[ref] > 0) {
+                liveBytes += descriptionLength[ref];
+            }
+        }
+        ByteBuffer packed = allocate(Math.max(64 * 1024, liveBytes * 2));
+        int capacity = Math.max(INITIAL_ROWS, live * 2);
+        int[] offsets = new int[capacity];
+        int[] lengths = new int[capacity];
+        int[] uses = new int[capacity];
+        int[] renumbered = new int[descriptions];
+        int next = 0;
+        for (int ref = 0; ref < descriptions; ref++) {
+            if (descriptionUses[ref] > 0) {
+                offsets[next] = packed.position();
+                lengths[next] = descriptionLength[ref];
+                uses[next] = descriptionUses[ref];
+                packed.put(arena.slice(descriptionOffset[ref], descriptionLength[ref]));
+                renumbered[ref] = next++;
+            }
+        }
+        for (int row = 0; row < rows; row++) {
+            descriptionRef[row] = renumbered[descriptionRef[row]];
+        }
+        arena = packed;
+        descriptionOffset = offsets;
+        descriptionLength = lengths;
+        descriptionUses = uses;
+        descriptions = live;
+        unusedDescriptions = 0;
+        rebuildDescriptionTable(Math.max(INITIAL_ROWS * 2, Integer.highestOneBit(Math.max(1, live)) * 4));
+    }
+
+    private void rebuildDescriptionTable(int capacity) {
+        descriptionTable = new int[capacity];
+        int mask = capacity - 1;
+        for (int ref = 0; ref < descriptions; ref++) {
+            byte[] stored = new byte[descriptionLength[ref]];
+            arena.get(descriptionOffset[ref], stored);
+            int slot = Arrays.hashCode(stored) & mask;
+            while (descriptionTable[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            descriptionTable[slot] = ref + 1;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.uday.copilot;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+/**
+ * A TaskManager that survives restarts. Every add, completion and removal is
+ * written to a {@link TaskLog} in the given directory before the call returns,
+ * and the log is compacted into a snapshot every so many records. Opening the
+ * same directory again restores the tasks, ids, order and done flags.
+ *
+ * Only changes made through the manager are recorded; calling
+ * {@link Task#setDone(boolean)} directly on a task is not persisted.
+ */
+public class DurableTaskManager extends TaskManager {
+
+    private static final long DEFAULT_CHECKPOINT_EVERY = 1_000_000;
+
+    private final Path dir;
+    private final TaskLog log;
+    private final long checkpointEvery;
+    private final Object checkpointLock = new Object();
+    private final AtomicBoolean checkpointScheduled = new AtomicBoolean();
+    private final ExecutorService checkpointer;
+    private volatile IOException checkpointFailure;
+
+    private DurableTaskManager(Path dir, long checkpointEvery) throws IOException {
+        this.dir = dir;
+        this.checkpointEvery = checkpointEvery;
+        long segment = TaskLog.recover(dir, new TaskLog.Handler() {
+            @Override
+            public void add(UUID id, long sequence, String description) {
+                restoreTask(id, sequence, description);
+            }
+
+            @Override
+            public void done(UUID id) {
+                replayDone(id);
+            }
+
+            @Override
+            public void remove(UUID id) {
+                replayRemove(id);
+            }
+        });
+        this.log = new TaskLog(dir, segment);
+        this.checkpointer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "task-log-checkpoint");
+            t.setDaemon(true);
+            return t;
+        });
+        addListener(new TaskListener() {
+            @Override
+            public void taskAdded(Task task) {
+                log.append(TaskLog.ADD, task, task.getDescription());
+            }
+
+            @Override
+            public void taskDone(Task task) {
+                log.append(TaskLog.DONE, task, null);
+            }
+
+            @Override
+            public void taskRemoved(Task task) {
+                log.append(TaskLog.REMOVE, task, null);
+            }
+        });
+    }
+
+    /**
+     * Opens (or creates) a durable task manager in the given directory,
+     * compacting the log every million records.
+     */
+    public static DurableTaskManager open(Path dir) throws IOException {
+        return open(dir, DEFAULT_CHECKPOINT_EVERY);
+    }
+
+    /**
+     * Opens (or creates) a durable task manager in the given directory that
+     * writes a snapshot once {@code checkpointEvery} records have been logged.
+     */
+    public static DurableTaskManager open(Path dir, long checkpointEvery) throws IOException {
+        if (checkpointEvery <= 0) {
+            throw new IllegalArgumentException("checkpointEvery must be positive");
+        }
+        return new DurableTaskManager(dir, checkpointEvery);
+    }
+
+    @Override
+    public Task addTask(String description) {
+        Task t = super.addTask(description);
+        commit();
+        return t;
+    }
+
+    /**
+     * Adds the tasks and logs them. Every description is checked against the log's
+     * length limit first, so a description too long to log adds nothing.
+     */
+    @Override
+    public List<Task> addTasks(Collection<String> descriptions) {
+        Objects.requireNonNull(descriptions, "descriptions must not be null");
+        for (String description : descriptions) {
+            TaskLog.check(Objects.requireNonNull(description, "description must not be null"));
+        }
+        List<Task> added = super.addTasks(descriptions);
+        commit();
+        return added;
+    }
+
+    @Override
+    public boolean markTaskDone(String description) {
+        boolean marked = super.markTaskDone(description);
+        commit();
+        return marked;
+    }
+
+    @Override
+    public boolean markTaskDone(UUID id) {
+        boolean marked = super.markTaskDone(id);
+        commit();
+        return marked;
+    }
+
+    @Override
+    public int markTasksDone(Collection<UUID> ids) {
+        int marked = super.markTasksDone(ids);
+        commit();
+        return marked;
+    }
+
+    @Override
+    public boolean removeTask(String description) {
+        boolean removed = super.removeTask(description);
+        commit();
+        return removed;
+    }
+
+    @Override
+    public boolean removeTask(UUID id) {
+        boolean removed = super.removeTask(id);
+        commit();
+        return removed;
+    }
+
+    @Override
+    public int removeTasks(Predicate<? super Task> filter) {
+        int removed = super.removeTasks(filter);
+        commit();
+        return removed;
+    }
+
+    /**
+     * Writes a snapshot of the current tasks and deletes the log records it replaces.
+     */
+    public void checkpoint() throws IOException {
+        synchronized (checkpointLock) {
+            long segment;
+            try {
+                // no add or remove can be half logged while the segment switches
+                segment = withAllStripesLocked(log::rotate);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            TaskLog.writeSnapshot(dir, segment, streamTasks().iterator());
+            TaskLog.deleteBefore(dir, segment);
+        }
+    }
+
+    /**
+     * Closes the event publisher, flushes the log and stops the background threads.
+     * Tasks stay on disk.
+     *
+     * @throws IOException if the log or a background checkpoint failed
+     */
+    @Override
+    public void close() throws IOException {
+        super.close();
+        checkpointer.shutdown();
+        try {
+            checkpointer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.close();
+        if (checkpointFailure != null) {
+            throw checkpointFailure;
+        }
+    }
+
+    // waits for this thread's records to reach disk, then compacts if the log is long
+    private void commit() {
+        log.sync();
+        if (log.appendedSinceRotation() >= checkpointEvery && checkpointScheduled.compareAndSet(false, true)) {
+            checkpointer.execute(() -> {
+                try {
+                    checkpoint();
+                } catch (IOException | RuntimeException e) {
+                    checkpointFailure = e instanceof IOException ? (IOException) e : new IOException(e);
+                } finally {
+                    checkpointScheduled.set(false);
+                }
+            });
+        }
+    }
+
+    private void replayDone(UUID id) {
+        super.markTaskDone(id);
+    }
+
+    private void replayRemove(UUID id) {
+        super.removeTask(id);
+    }
+}
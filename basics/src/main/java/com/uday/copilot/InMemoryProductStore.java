@@ -0,0 +1,130 @@
+package com.uday.copilot;
+
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+/**
+ * Heap-resident {@link ProductStore}, the default for {@link InventoryManager}.
+ *
+ * Products are sharded by id over segments, each an {@link IntProductMap} guarded
+ * by its own lock. Lookups are optimistic reads that only take the lock when they
+ * race a writer to the same segment.
+ */
+public class InMemoryProductStore implements ProductStore {
+
+    private static final int SEGMENT_BITS = 6;
+
+    private final Segment[] segments;
+
+    public InMemoryProductStore() {
+        segments = new Segment[1 << SEGMENT_BITS];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    @Override
+    public Product get(int id) {
+        Segment segment = segmentFor(id);
+        long stamp = segment.lock.tryOptimisticRead();
+        Product product = segment.products.get(id);
+        if (segment.lock.validate(stamp)) {
+            return product;
+        }
+        stamp = segment.lock.readLock();
+        try {
+            return segment.products.get(id);
+        } finally {
+            segment.lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public Product put(Product product) {
+        Segment segment = segmentFor(product.getId());
+        long stamp = segment.lock.writeLock();
+        try {
+            return segment.products.put(product);
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public Product remove(int id) {
+        Segment segment = segmentFor(id);
+        long stamp = segment.lock.writeLock();
+        try {
+            return segment.products.remove(id);
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            long stamp = segment.lock.readLock();
+            try {
+                size += segment.products.size();
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public void ensureCapacity(int expectedSize) {
+        // ids spread evenly over the segments, give or take; leave some room for the unevenness
+        int perSegment = expectedSize / segments.length;
+        perSegment += perSegment / 8 + 16;
+        for (Segment segment : segments) {
+            long stamp = segment.lock.writeLock();
+            try {
+                segment.products.ensureCapacity(perSegment);
+            } finally {
+                segment.lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    @Override
+    public void forEach(Consumer<? super Product> action) {
+        for (Segment segment : segments) {
+            long stamp = segment.lock.readLock();
+            try {
+                segment.products.forEach(action);
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+        }
+    }
+
+    @Override
+    public int partCount() {
+        return segments.length;
+    }
+
+    @Override
+    public void forEachInPart(int part, Consumer<? super Product> action) {
+        Segment segment = segments[part];
+        long stamp = segment.lock.readLock();
+        try {
+            segment.products.forEach(action);
+        } finally {
+            segment.lock.unlockRead(stamp);
+        }
+    }
+
+    private Segment segmentFor(int id) {
+        return segments[IntProductMap.hash(id) >>> (Integer.SIZE - SEGMENT_BITS)];
+    }
+
+    // one shard of the store
+    private static final class Segment {
+        final StampedLock lock = new StampedLock();
+        final IntProductMap products = new IntProductMap();
+    }
+}
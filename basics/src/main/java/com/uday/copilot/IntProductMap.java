@@ -0,0 +1,180 @@
+package com.uday.copilot;
+
+import java.util.function.Consumer;
+
+/**
+ * Open-addressing hash map from product id to {@link Product}, keyed by the id the
+ * product already carries.
+ *
+ * Products are stored directly in one array probed linearly from a mixed hash of
+ * the id, so a lookup never boxes the id and an entry costs a single array slot
+ * instead of a node plus an {@code Integer}. Removal shifts later entries of the
+ * probe run back rather than leaving tombstones, so lookups stay short after
+ * heavy churn.
+ *
+ * Not thread-safe. {@link #get(int)} only ever reads the current table and stops
+ * after one pass over it, so a reader racing a writer may see a stale or missing
+ * entry but always terminates; callers validating such reads, e.g. with a
+ * {@link java.util.concurrent.locks.StampedLock} optimistic read, may rely on that.
+ */
+final class IntProductMap {
+
+    private static final int MIN_CAPACITY = 16;
+    // resize above three quarters full
+    private static final int LOAD_NUMERATOR = 3;
+    private static final int LOAD_DENOMINATOR = 4;
+
+    private Product[] slots;
+    private int size;
+
+    IntProductMap() {
+        this(0);
+    }
+
+    IntProductMap(int expectedSize) {
+        slots = new Product[capacityFor(expectedSize)];
+    }
+
+    Product get(int id) {
+        Product[] tab = slots;
+        int mask = tab.length - 1;
+        int i = hash(id) & mask;
+        for (int probes = 0; probes < tab.length; probes++) {
+            Product p = tab[i];
+            if (p == null || p.getId() == id) {
+                return p;
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Stores the product under its id and returns the product it replaced, if any.
+     */
+    Product put(Product product) {
+        int id = product.getId();
+        int mask = slots.length - 1;
+        int i = hash(id) & mask;
+        for (Product p; (p = slots[i]) != null; i = (i + 1) & mask) {
+            if (p.getId() == id) {
+                slots[i] = product;
+                return p;
+            }
+        }
+        if ((size + 1) * LOAD_DENOMINATOR > slots.length * LOAD_NUMERATOR) {
+            resize(slots.length * 2);
+            insertNew(slots, product);
+        } else {
+            slots[i] = product;
+        }
+        size++;
+        return null;
+    }
+
+    Product remove(int id) {
+        int mask = slots.length - 1;
+        int i = hash(id) & mask;
+        for (Product p; (p = slots[i]) != null; i = (i + 1) & mask) {
+            if (p.getId() == id) {
+                shiftBack(i);
+                size--;
+                return p;
+            }
+        }
+        return null;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        slots = new Product[MIN_CAPACITY];
+        size = 0;
+    }
+
+    /**
+     * Grows the table ahead of time so that {@code expectedSize} products fit
+     * without further rehashing.
+     */
+    void ensureCapacity(int expectedSize) {
+        int capacity = capacityFor(expectedSize);
+        if (capacity > slots.length) {
+            resize(capacity);
+        }
+    }
+
+    void forEach(Consumer<? super Product> action) {
+        for (Product p : slots) {
+            if (p != null) {
+                action.accept(p);
+            }
+        }
+    }
+
+    /**
+     * Returns the bytes held by the table itself, excluding the products.
+     */
+    long footprintBytes() {
+        // array header plus one reference per slot, assuming compressed references
+        return 16 + 4L * slots.length;
+    }
+
+    // closes the gap at i by moving back any later entry of the run whose home slot it passed
+    private void shiftBack(int i) {
+        int mask = slots.length - 1;
+        int gap = i;
+        for (int j = (i + 1) & mask; ; j = (j + 1) & mask) {
+            Product p = slots[j];
+            if (p == null) {
+                break;
+            }
+            int home = hash(p.getId()) & mask;
+            // p may fill the gap unless its home lies cyclically in (gap, j]
+            boolean homeAfterGap = gap <= j ? gap < home && home <= j : gap < home || home <= j;
+            if (!homeAfterGap) {
+                slots[gap] = p;
+                gap = j;
+            }
+        }
+        slots[gap] = null;
+    }
+
+    private void resize(int capacity) {
+        // fill the new table completely before publishing it to racing readers
+        Product[] grown = new Product[capacity];
+        for (Product p : slots) {
+            if (p != null) {
+                insertNew(grown, p);
+            }
+        }
+        slots = grown;
+    }
+
+    private static void insertNew(Product[] tab, Product product) {
+        int mask = tab.length - 1;
+        int i = hash(product.getId()) & mask;
+        while (tab[i] != null) {
+            i = (i + 1) & mask;
+        }
+        tab[i] = product;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        long needed = ((long) Math.max(expectedSize, 1) * LOAD_DENOMINATOR + LOAD_NUMERATOR - 1) / LOAD_NUMERATOR;
+        if (needed > 1 << 30) {
+            throw new IllegalArgumentException("too many products: " + expectedSize);
+        }
+        return Math.max(MIN_CAPACITY, Integer.highestOneBit((int) needed - 1) << 1);
+    }
+
+    /**
+     * Spreads sequential ids over the table; the low bits pick a slot and the high
+     * bits are free for callers that shard maps by id.
+     */
+    static int hash(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -1,44 +1,488 @@
 package com.uday.copilot;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
 
-// inventory manager class that uses the Map and adds, removes, lists and updates products
+// inventory manager class that uses a ProductStore and adds, removes, lists and updates products.
+// Changes to a product are serialized by a lock picked by its id; lookups go straight to the store.
+// Range, prefix and price queries are served from indexes built on first use, snapshot() gives a
+// point-in-time view, and an optional ChangeJournal records every change for replicas.
 public class InventoryManager {
-    private final Map<Integer, Product> inventory;
+    // number of write locks; a power of two so the id hash can be masked
+    private static final int LOCKS = 64;
+
+    private final ProductStore store;
+    private final Object[] locks;
+    // null until the first indexed query has built it
+    private volatile ProductIndex index;
+    // the index every change is applied to, set as soon as a build starts; null before that
+    private volatile ProductIndex maintained;
+    // held while the index is built, so only one query builds it
+    private final Object indexBuild = new Object();
+    // price totals of the products under each lock, guarded by that lock
+    private final PriceTotals[] totals;
+    private final VersionHistory history = new VersionHistory();
+    // null unless changes are journaled
+    private final ChangeJournal journal;
 
     public InventoryManager() {
-        this.inventory = new HashMap<>();
+        this(new InMemoryProductStore());
+    }
+
+    public InventoryManager(ProductStore store) {
+        this(store, null);
+    }
+
+    // Journal every change made from now on; products already in the store are not journaled, so
+    // replicas start from a snapshot of this manager. Products whose name is too long for the
+    // journal are rejected with IllegalArgumentException before anything changes.
+    public InventoryManager(ProductStore store, ChangeJournal journal) {
+        this.store = Objects.requireNonNull(store, "store must not be null");
+        this.journal = journal;
+        this.locks = new Object[LOCKS];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+        // the manager is not shared yet, so the store is totalled without locks
+        this.totals = scan(() -> {
+            PriceTotals[] t = new PriceTotals[LOCKS];
+            Arrays.setAll(t, i -> new PriceTotals());
+            return t;
+        }, (t, p) -> t[lockIndex(p.getId())].add(p.getPrice()), (a, b) -> {
+            for (int i = 0; i < LOCKS; i++) {
+                a[i].merge(b[i]);
+            }
+            return a;
+        });
     }
 
     public void addProduct(Product product) {
-        inventory.put(product.getId(), product);
+        synchronized (lockFor(product.getId())) {
+            put(product);
+        }
+    }
+
+    // Add many products at once; each write lock is taken once for the whole batch and the store
+    // is sized for the result up front. Later products replace earlier ones with the same id.
+    public void addProducts(Collection<Product> products) {
+        reserveCapacity(products.size());
+        List<List<Product>> groups = new ArrayList<>(LOCKS);
+        for (int i = 0; i < LOCKS; i++) {
+            groups.add(new ArrayList<>());
+        }
+        for (Product product : products) {
+            groups.get(lockIndex(product.getId())).add(product);
+        }
+        for (int i = 0; i < LOCKS; i++) {
+            List<Product> group = groups.get(i);
+            if (group.isEmpty()) {
+                continue;
+            }
+            synchronized (locks[i]) {
+                for (Product product : group) {
+                    put(product);
+                }
+            }
+        }
+    }
+
+    // Make room for about additionalProducts more products, so the store does not grow while they
+    // are added
+    public void reserveCapacity(int additionalProducts) {
+        store.ensureCapacity((int) Math.min(Integer.MAX_VALUE, (long) store.size() + additionalProducts));
     }
 
     public void removeProduct(int id) {
-        inventory.remove(id);
+        synchronized (lockFor(id)) {
+            if (history.recording()) {
+                history.record(id, store.get(id));
+            }
+            changed(store.remove(id), null);
+        }
     }
 
     public Product getProduct(int id) {
-        return inventory.get(id);
+        return store.get(id);
     }
 
     public List<Product> listProducts() {
-        return new ArrayList<>(inventory.values());
+        List<Product> products = new ArrayList<>(store.size());
+        store.forEach(products::add);
+        return products;
     }
     
     // Update product price
     public void updateProductPrice(int id, double newPrice) {
-        Product product = inventory.get(id);
-        if (product != null) {
-            // Create a new Product with the updated price and replace the old one
-            Product updatedProduct = new Product(product.getId(), product.getName(), newPrice);
-            inventory.put(id, updatedProduct);
+        // Create a new Product with the updated price and replace the old one atomically
+        updateProduct(id, product -> new Product(product.getId(), product.getName(), newPrice));
+    }
+
+    // Update product name
+    public void updateProductName(int id, String newName) {
+        updateProduct(id, product -> new Product(product.getId(), newName, product.getPrice()));
+    }
+
+    // Atomically replace a product with update(current); returns the new product, or null if the
+    // id is unknown. The update runs once, under the lock for the product's id, so it should be
+    // quick and must not call back into this manager; returning null removes the product.
+    public Product updateProduct(int id, UnaryOperator<Product> update) {
+        synchronized (lockFor(id)) {
+            Product product = store.get(id);
+            if (product == null) {
+                return null;
+            }
+            Product updated = update.apply(product);
+            if (updated != null && updated.getId() != id) {
+                throw new IllegalArgumentException("update must not change the product id");
+            }
+            if (updated != null && journal != null) {
+                ChangeJournal.check(updated);
+            }
+            if (history.recording()) {
+                history.record(id, product);
+            }
+            if (updated == null) {
+                store.remove(id);
+            } else {
+                store.put(updated);
+            }
+            changed(product, updated);
+            return updated;
+        }
+    }
+
+    // Products priced from minPrice to maxPrice inclusive, cheapest first (ties by id), skipping
+    // the first offset matches and returning at most limit
+    public List<Product> findProductsByPrice(double minPrice, double maxPrice, int offset, int limit) {
+        checkPage(offset, limit);
+        List<Product> page = new ArrayList<>(Math.min(limit, 64));
+        int skipped = 0;
+        for (ProductIndex.PriceKey key : index().priceRange(minPrice, maxPrice)) {
+            if (page.size() == limit) {
+                break;
+            }
+            // an entry may be stale for a moment while its product changes; its replacement has its own entry
+            Product product = store.get(key.id);
+            if (product == null || Double.compare(product.getPrice(), key.price) != 0) {
+                continue;
+            }
+            if (skipped < offset) {
+                skipped++;
+            } else {
+                page.add(product);
+            }
+        }
+        return page;
+    }
+
+    // Products whose name starts with prefix, ignoring case, in name order (ties by id), skipping
+    // the first offset matches and returning at most limit
+    public List<Product> findProductsByNamePrefix(String prefix, int offset, int limit) {
+        Objects.requireNonNull(prefix, "prefix must not be null");
+        checkPage(offset, limit);
+        List<Product> page = new ArrayList<>(Math.min(limit, 64));
+        int skipped = 0;
+        for (ProductIndex.NameKey key : index().namePrefix(prefix)) {
+            if (page.size() == limit) {
+                break;
+            }
+            Product product = store.get(key.id);
+            if (product == null || product.getName() == null
+                    || !ProductIndex.normalize(product.getName()).equals(key.name)) {
+                continue;
+            }
+            if (skipped < offset) {
+                skipped++;
+            } else {
+                page.add(product);
+            }
+        }
+        return page;
+    }
+
+    // The most expensive products, dearest first (ties by id, highest first), at most limit of them
+    public List<Product> findMostExpensiveProducts(int limit) {
+        checkPage(0, limit);
+        List<Product> top = new ArrayList<>(Math.min(limit, 64));
+        for (ProductIndex.PriceKey key : index().prices().descendingSet()) {
+            if (top.size() == limit) {
+                break;
+            }
+            Product product = store.get(key.id);
+            if (product != null && Double.compare(product.getPrice(), key.price) == 0) {
+                top.add(product);
+            }
+        }
+        return top;
+    }
+
+    // Count, sum, lowest, highest and average of all prices. The store is totalled per lock when the
+    // manager is created and every change keeps those totals up to date, so a call only adds up one
+    // total per lock; the lowest and highest prices come from the price index. While products change,
+    // each figure is right as of some moment during the call.
+    public PriceStatistics priceStatistics() {
+        PriceTotals all = new PriceTotals();
+        for (int i = 0; i < LOCKS; i++) {
+            synchronized (locks[i]) {
+                all.merge(totals[i]);
+            }
+        }
+        if (all.count == 0) {
+            return new PriceStatistics(0, 0, Double.NaN, Double.NaN);
+        }
+        NavigableSet<ProductIndex.PriceKey> prices = index().prices();
+        return new PriceStatistics(all.count, all.sum(), firstPrice(prices), firstPrice(prices.descendingSet()));
+    }
+
+    // Count products by price into buckets split at the given ascending boundaries: bucket 0 holds
+    // prices below boundaries[0], bucket i those from boundaries[i - 1] up to but not including
+    // boundaries[i], and the last bucket those from the last boundary up (and NaN prices). Scans
+    // the store, its parts in parallel; products changed meanwhile may or may not be counted.
+    public long[] priceHistogram(double... boundaries) {
+        Objects.requireNonNull(boundaries, "boundaries must not be null");
+        for (int i = 0; i < boundaries.length; i++) {
+            if (Double.isNaN(boundaries[i]) || i > 0 && boundaries[i - 1] >= boundaries[i]) {
+                throw new IllegalArgumentException("boundaries must be strictly ascending numbers");
+            }
+        }
+        double[] bounds = boundaries.clone();
+        return scan(() -> new long[bounds.length + 1], (counts, p) -> {
+            int i = Arrays.binarySearch(bounds, p.getPrice());
+            counts[i >= 0 ? i + 1 : -(i + 1)]++;
+        }, (a, b) -> {
+            for (int i = 0; i < a.length; i++) {
+                a[i] += b[i];
+            }
+            return a;
+        });
+    }
+
+    // Take a consistent view of the inventory as it is now; close it when done
+    public InventorySnapshot snapshot() {
+        // with every lock held no change is between recording and applying its undo entry, nor
+        // between being applied and being journaled
+        return withAllLocked(() -> new InventorySnapshot(this, history.open(),
+                journal == null ? 0 : journal.lastSequence()));
+    }
+
+    Product productAt(int id, long version) {
+        // the store first, then the history; see VersionHistory
+        return history.resolve(id, store.get(id), version);
+    }
+
+    List<Product> productsAt(long version) {
+        IntProductMap products = new IntProductMap(store.size());
+        store.forEach(current -> {
+            Product p = history.resolve(current.getId(), current, version);
+            if (p != null) {
+                products.put(p);
+            }
+        });
+        // products changed since the snapshot, including those removed since
+        for (int id : history.changedIds()) {
+            Product p = productAt(id, version);
+            if (p != null) {
+                products.put(p);
+            } else {
+                products.remove(id);
+            }
+        }
+        List<Product> list = new ArrayList<>(products.size());
+        products.forEach(list::add);
+        return list;
+    }
+
+    void release(long version) {
+        history.close(version);
+    }
+
+    // called under the id's lock
+    private void put(Product product) {
+        if (journal != null) {
+            ChangeJournal.check(product);
+        }
+        if (history.recording()) {
+            history.record(product.getId(), store.get(product.getId()));
+        }
+        changed(store.put(product), product);
+    }
+
+    // called under the id's lock after every change; either side may be null
+    private void changed(Product previous, Product current) {
+        if (previous != null || current != null) {
+            PriceTotals t = totals[lockIndex((previous != null ? previous : current).getId())];
+            if (previous != null) {
+                t.remove(previous.getPrice());
+            }
+            if (current != null) {
+                t.add(current.getPrice());
+            }
+        }
+        ProductIndex idx = maintained;
+        if (idx != null) {
+            if (previous != null) {
+                idx.remove(previous);
+            }
+            if (current != null) {
+                idx.add(current);
+            }
+        }
+        if (journal != null) {
+            if (current != null) {
+                journal.put(current);
+            } else if (previous != null) {
+                journal.remove(previous.getId());
+            }
+        }
+    }
+
+    private ProductIndex index() {
+        ProductIndex idx = index;
+        if (idx != null) {
+            return idx;
+        }
+        synchronized (indexBuild) {
+            if (index == null) {
+                ProductIndex built = new ProductIndex();
+                // the locks are held only to start routing changes into the new index, so none is
+                // half way between the store and the index; the store is then copied without them
+                withAllLocked(() -> maintained = built);
+                List<Product> products = listProducts();
+                built.addAll(products);
+                // a product changed while it was being copied may have had its old entries added
+                // after the change replaced them; settle each against the store under its own lock
+                for (Product copied : products) {
+                    synchronized (lockFor(copied.getId())) {
+                        Product current = store.get(copied.getId());
+                        if (current == null || Double.compare(current.getPrice(), copied.getPrice()) != 0
+                                || !Objects.equals(current.getName(), copied.getName())) {
+                            built.remove(copied);
+                            if (current != null) {
+                                built.add(current);
+                            }
+                        }
+                    }
+                }
+                index = built;
+            }
+            return index;
+        }
+    }
+
+    // the price of the first entry that is not stale, or NaN
+    private double firstPrice(NavigableSet<ProductIndex.PriceKey> prices) {
+        for (ProductIndex.PriceKey key : prices) {
+            Product product = store.get(key.id);
+            if (product != null && Double.compare(product.getPrice(), key.price) == 0) {
+                return key.price;
+            }
         }
+        return Double.NaN;
     }
 
+    // folds every product in the store into one result per part, the parts walked in parallel on
+    // the common pool, and combines the results
+    private <R> R scan(Supplier<R> create, BiConsumer<R, Product> add, BinaryOperator<R> combine) {
+        return IntStream.range(0, store.partCount()).parallel()
+                .mapToObj(part -> {
+                    R result = create.get();
+                    store.forEachInPart(part, p -> add.accept(result, p));
+                    return result;
+                })
+                .reduce(combine)
+                .orElseGet(create);
+    }
+
+    private <T> T withAllLocked(Supplier<T> action) {
+        return lockFrom(0, action);
+    }
+
+    private <T> T lockFrom(int i, Supplier<T> action) {
+        if (i == LOCKS) {
+            return action.get();
+        }
+        synchronized (locks[i]) {
+            return lockFrom(i + 1, action);
+        }
+    }
+
+    private static void checkPage(int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("offset and limit must not be negative");
+        }
+    }
+
+    // count and sum of prices, the sum compensated (Neumaier) against rounding; infinite and NaN
+    // prices are counted apart so that removing them again leaves the sum finite
+    private static final class PriceTotals {
+        long count;
+        double sum;
+        double compensation;
+        long positiveInfinite;
+        long negativeInfinite;
+        long notANumber;
+
+        void add(double price) {
+            count++;
+            accumulate(price, 1);
+        }
+
+        void remove(double price) {
+            count--;
+            accumulate(price, -1);
+        }
+
+        void merge(PriceTotals other) {
+            count += other.count;
+            accumulate(other.sum, 1);
+            accumulate(other.compensation, 1);
+            positiveInfinite += other.positiveInfinite;
+            negativeInfinite += other.negativeInfinite;
+            notANumber += other.notANumber;
+        }
+
+        double sum() {
+            if (notANumber > 0 || positiveInfinite > 0 && negativeInfinite > 0) {
+                return Double.NaN;
+            }
+            if (positiveInfinite > 0) {
+                return Double.POSITIVE_INFINITY;
+            }
+            return negativeInfinite > 0 ? Double.NEGATIVE_INFINITY : sum + compensation;
+        }
+
+        private void accumulate(double value, int sign) {
+            if (Double.isNaN(value)) {
+                notANumber += sign;
+            } else if (value == Double.POSITIVE_INFINITY) {
+                positiveInfinite += sign;
+            } else if (value == Double.NEGATIVE_INFINITY) {
+                negativeInfinite += sign;
+            } else {
+                double x = sign * value;
+                double t = sum + x;
+                compensation += Math.abs(sum) >= Math.abs(x) ? (sum - t) + x : (x - t) + sum;
+                sum = t;
+            }
+        }
+    }
+
+    private Object lockFor(int id) {
+        return locks[lockIndex(id)];
+    }
+
+    private static int lockIndex(int id) {
+        return IntProductMap.hash(id) & (LOCKS - 1);
+    }
 
     //main method to test the inventory manager 
     public static void main(String[] args) {
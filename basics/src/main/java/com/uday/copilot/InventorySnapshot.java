@@ -0,0 +1,64 @@
+package com.uday.copilot;
+
+import java.util.List;
+
+/**
+ * A consistent point-in-time view of an {@link InventoryManager}, from
+ * {@link InventoryManager#snapshot()}.
+ *
+ * Reads see the products exactly as they were when the snapshot was taken, while
+ * the manager keeps accepting changes. Reading never blocks writers; the cost of a
+ * snapshot is the old versions the manager keeps for it, so close it when done.
+ */
+public final class InventorySnapshot implements AutoCloseable {
+
+    private final InventoryManager manager;
+    private final long version;
+    private final long journalPosition;
+    private volatile boolean closed;
+
+    InventorySnapshot(InventoryManager manager, long version, long journalPosition) {
+        this.manager = manager;
+        this.version = version;
+        this.journalPosition = journalPosition;
+    }
+
+    public Product getProduct(int id) {
+        ensureOpen();
+        return manager.productAt(id, version);
+    }
+
+    /**
+     * Returns every product in the snapshot, in no particular order.
+     */
+    public List<Product> listProducts() {
+        ensureOpen();
+        return manager.productsAt(version);
+    }
+
+    /**
+     * Returns the sequence number of the last {@link ChangeJournal} change this
+     * snapshot includes, or 0 if the manager has no journal. A replica loaded from
+     * the snapshot continues with the changes after it.
+     */
+    public long journalPosition() {
+        return journalPosition;
+    }
+
+    /**
+     * Releases the old versions kept for this snapshot. Further reads fail.
+     */
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            manager.release(version);
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("snapshot is closed");
+        }
+    }
+}
@@ -0,0 +1,540 @@
+package com.uday.copilot;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+/**
+ * {@link ProductStore} kept in a memory-mapped file of fixed-size records.
+ *
+ * The file is a 64-byte header followed by an open-addressing hash table of
+ * records, each {@code [id][state][price][name length][name bytes]} padded to a
+ * power of two. A product lives in the slot its id hashes to or the first free
+ * slot after it, so opening a catalog only maps the file: nothing is read until a
+ * lookup decodes the one record it lands on, and every change is written straight
+ * into the mapped record. Names are stored as UTF-8 and may not exceed the name
+ * size chosen when the catalog was created.
+ *
+ * Changes reach the file when the operating system writes the mapped pages back;
+ * {@link #force()} and {@link #close()} flush them explicitly. Records are changed
+ * in place without a journal, so the file is only known to be consistent as of the
+ * last force or close: a crash in between can leave a record half rewritten or a
+ * removal half done. When the table becomes three quarters full it is rebuilt into
+ * a file of twice the capacity, which is written out completely and forced before
+ * it atomically replaces the original, so a failed or interrupted grow leaves the
+ * original table whole. Reads share a lock and writes are exclusive.
+ */
+public final class MappedProductCatalog implements ProductStore, Closeable {
+
+    private static final int MAGIC = 0x50434154; // "PCAT"
+    private static final int VERSION = 1;
+
+    private static final int HEADER = 64;
+    private static final int HEADER_MAGIC = 0;
+    private static final int HEADER_VERSION = 4;
+    private static final int HEADER_RECORD_SIZE = 8;
+    private static final int HEADER_CAPACITY = 12;
+    private static final int HEADER_SIZE = 16;
+
+    private static final int RECORD_ID = 0;
+    private static final int RECORD_STATE = 4;
+    private static final int RECORD_PRICE = 8;
+    private static final int RECORD_NAME_LENGTH = 16;
+    private static final int RECORD_NAME = 18;
+
+    private static final byte EMPTY = 0;
+    private static final byte LIVE = 1;
+    private static final short NULL_NAME = -1;
+
+    // records are mapped in chunks of this size, which a power-of-two record never straddles
+    private static final int CHUNK_BITS = 30;
+    private static final int MIN_CAPACITY = 16;
+    private static final int MAX_NAME_BYTES = Short.MAX_VALUE;
+    // forEachInPart splits the slots into this many ranges
+    private static final int PARTS = 64;
+    // sun.misc.Unsafe.invokeCleaner bound to the Unsafe instance, or null where the JDK lacks it
+    private static final MethodHandle INVOKE_CLEANER = invokeCleaner();
+
+    private final Path path;
+    private final StampedLock lock = new StampedLock();
+
+    // guarded by lock
+    private FileChannel channel;
+    private MappedByteBuffer header;
+    private MappedByteBuffer[] chunks;
+    private int recordShift;
+    private int capacity;
+    private int size;
+
+    private MappedProductCatalog(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Creates a new catalog file with room for about {@code expectedProducts}
+     * products before it has to grow.
+     *
+     * @param maxNameBytes the longest UTF-8 encoded name the catalog must hold; the
+     *     record is padded to a power of two, so slightly longer names may fit
+     * @throws java.nio.file.FileAlreadyExistsException if the file exists
+     */
+    public static MappedProductCatalog create(Path path, int expectedProducts, int maxNameBytes) throws IOException {
+        if (expectedProducts < 0) {
+            throw new IllegalArgumentException("expectedProducts must not be negative");
+        }
+        if (maxNameBytes < 0 || maxNameBytes > MAX_NAME_BYTES) {
+            throw new IllegalArgumentException("maxNameBytes must be between 0 and " + MAX_NAME_BYTES);
+        }
+        int recordShift = Integer.SIZE - Integer.numberOfLeadingZeros(RECORD_NAME + maxNameBytes - 1);
+        MappedProductCatalog catalog = new MappedProductCatalog(path);
+        catalog.initialize(recordShift, capacityFor(expectedProducts));
+        return catalog;
+    }
+
+    /**
+     * Opens an existing catalog file. Only the header is read.
+     */
+    public static MappedProductCatalog open(Path path) throws IOException {
+        MappedProductCatalog catalog = new MappedProductCatalog(path);
+        catalog.map(FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE));
+        return catalog;
+    }
+
+    @Override
+    public Product get(int id) {
+        long stamp = lock.readLock();
+        try {
+            ensureOpen();
+            long slot = find(id);
+            return slot < 0 ? null : decode(slot);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public Product put(Product product) {
+        byte[] name = encodeName(product.getName());
+        long stamp = lock.writeLock();
+        try {
+            ensureOpen();
+            long slot = find(product.getId());
+            if (slot >= 0) {
+                Product previous = decode(slot);
+                write(slot, product, name);
+                return previous;
+            }
+            if ((long) (size + 1) * 4 > (long) capacity * 3) {
+                grow(capacity * 2);
+            }
+            slot = freeSlotFor(product.getId());
+            write(slot, product, name);
+            // the slot becomes live once the record is complete
+            buffer(slot).put(position(slot) + RECORD_STATE, LIVE);
+            header.putInt(HEADER_SIZE, ++size);
+            return null;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public Product remove(int id) {
+        long stamp = lock.writeLock();
+        try {
+            ensureOpen();
+            long slot = find(id);
+            if (slot < 0) {
+                return null;
+            }
+            Product previous = decode(slot);
+            shiftBack(slot);
+            header.putInt(HEADER_SIZE, --size);
+            return previous;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public void ensureCapacity(int expectedSize) {
+        long stamp = lock.writeLock();
+        try {
+            ensureOpen();
+            int needed = capacityFor(expectedSize);
+            if (needed > capacity) {
+                grow(needed);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Decodes every product and passes it to the action. Holds the read lock
+     * throughout, so the action must not change this catalog.
+     */
+    @Override
+    public void forEach(Consumer<? super Product> action) {
+        long stamp = lock.readLock();
+        try {
+            ensureOpen();
+            for (long slot = 0; slot < capacity; slot++) {
+                if (buffer(slot).get(position(slot) + RECORD_STATE) == LIVE) {
+                    action.accept(decode(slot));
+                }
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public int partCount() {
+        return PARTS;
+    }
+
+    @Override
+    public void forEachInPart(int part, Consumer<? super Product> action) {
+        Objects.checkIndex(part, PARTS);
+        long stamp = lock.readLock();
+        try {
+            ensureOpen();
+            long to = (long) capacity * (part + 1) / PARTS;
+            for (long slot = (long) capacity * part / PARTS; slot < to; slot++) {
+                if (buffer(slot).get(position(slot) + RECORD_STATE) == LIVE) {
+                    action.accept(decode(slot));
+                }
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns the longest UTF-8 encoded name a record can hold.
+     */
+    public int maxNameBytes() {
+        return Math.min((1 << recordShift) - RECORD_NAME, MAX_NAME_BYTES);
+    }
+
+    /**
+     * Writes all changes made so far to the file.
+     */
+    public void force() {
+        long stamp = lock.readLock();
+        try {
+            ensureOpen();
+            header.force();
+            for (MappedByteBuffer chunk : chunks) {
+                chunk.force();
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        long stamp = lock.writeLock();
+        try {
+            if (channel == null) {
+                return;
+            }
+            release();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // caller holds the write lock; writes the mapped pages back, closes the file and unmaps it,
+    // leaving the catalog closed even if that fails part way
+    private void release() throws IOException {
+        try {
+            header.force();
+            for (MappedByteBuffer chunk : chunks) {
+                chunk.force();
+            }
+            channel.close();
+        } finally {
+            unmap(header);
+            for (MappedByteBuffer chunk : chunks) {
+                unmap(chunk);
+            }
+            channel = null;
+            header = null;
+            chunks = null;
+        }
+    }
+
+    // unmaps the buffer now rather than when it is collected, so the file under it can be replaced
+    // on every platform; the caller must make sure nothing touches the buffer again
+    private static void unmap(MappedByteBuffer buffer) {
+        if (INVOKE_CLEANER == null) {
+            return;
+        }
+        try {
+            INVOKE_CLEANER.invokeExact((ByteBuffer) buffer);
+        } catch (Throwable e) {
+            // left to the garbage collector
+        }
+    }
+
+    private static MethodHandle invokeCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(field.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private void initialize(int recordShift, int capacity) throws IOException {
+        FileChannel created = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer head = ByteBuffer.allocate(HEADER);
+            head.putInt(HEADER_MAGIC, MAGIC);
+            head.putInt(HEADER_VERSION, VERSION);
+            head.putInt(HEADER_RECORD_SIZE, 1 << recordShift);
+            head.putInt(HEADER_CAPACITY, capacity);
+            head.putInt(HEADER_SIZE, 0);
+            created.write(head, 0);
+            // extend the file to its full length; the zero-filled records are all empty
+            created.write(ByteBuffer.allocate(1), HEADER + ((long) capacity << recordShift) - 1);
+        } catch (IOException | RuntimeException e) {
+            created.close();
+            throw e;
+        }
+        map(created);
+    }
+
+    private void map(FileChannel opened) throws IOException {
+        try {
+            MappedByteBuffer head = opened.map(FileChannel.MapMode.READ_WRITE, 0, HEADER);
+            int recordSize = head.getInt(HEADER_RECORD_SIZE);
+            int slots = head.getInt(HEADER_CAPACITY);
+            if (head.getInt(HEADER_MAGIC) != MAGIC || head.getInt(HEADER_VERSION) != VERSION
+                    || Integer.bitCount(recordSize) != 1 || recordSize < RECORD_NAME
+                    || Integer.bitCount(slots) != 1
+                    || opened.size() < HEADER + (long) slots * recordSize) {
+                throw new IOException("not a product catalog: " + path);
+            }
+            long length = (long) slots * recordSize;
+            int count = (int) ((length + (1L << CHUNK_BITS) - 1) >>> CHUNK_BITS);
+            MappedByteBuffer[] mapped = new MappedByteBuffer[count];
+            for (int i = 0; i < count; i++) {
+                long offset = (long) i << CHUNK_BITS;
+                mapped[i] = opened.map(FileChannel.MapMode.READ_WRITE, HEADER + offset,
+                        Math.min(1L << CHUNK_BITS, length - offset));
+            }
+            this.channel = opened;
+            this.header = head;
+            this.chunks = mapped;
+            this.recordShift = Integer.numberOfTrailingZeros(recordSize);
+            this.capacity = slots;
+            this.size = head.getInt(HEADER_SIZE);
+        } catch (IOException | RuntimeException e) {
+            opened.close();
+            throw e;
+        }
+    }
+
+    // slot holding the id, or -1
+    private long find(int id) {
+        long mask = capacity - 1;
+        long slot = IntProductMap.hash(id) & mask;
+        for (int probes = 0; probes < capacity; probes++, slot = (slot + 1) & mask) {
+            MappedByteBuffer buffer = buffer(slot);
+            int position = position(slot);
+            if (buffer.get(position + RECORD_STATE) == EMPTY) {
+                return -1;
+            }
+            if (buffer.getInt(position + RECORD_ID) == id) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private long freeSlotFor(int id) {
+        long mask = capacity - 1;
+        long slot = IntProductMap.hash(id) & mask;
+        while (buffer(slot).get(position(slot) + RECORD_STATE) != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private Product decode(long slot) {
+        MappedByteBuffer buffer = buffer(slot);
+        int position = position(slot);
+        int id = buffer.getInt(position + RECORD_ID);
+        double price = buffer.getDouble(position + RECORD_PRICE);
+        short length = buffer.getShort(position + RECORD_NAME_LENGTH);
+        String name = null;
+        if (length != NULL_NAME) {
+            byte[] bytes = new byte[length];
+            buffer.get(position + RECORD_NAME, bytes);
+            name = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return new Product(id, name, price);
+    }
+
+    // every field but the state
+    private void write(long slot, Product product, byte[] name) {
+        MappedByteBuffer buffer = buffer(slot);
+        int position = position(slot);
+        buffer.putInt(position + RECORD_ID, product.getId());
+        buffer.putDouble(position + RECORD_PRICE, product.getPrice());
+        if (name == null) {
+            buffer.putShort(position + RECORD_NAME_LENGTH, NULL_NAME);
+        } else {
+            buffer.putShort(position + RECORD_NAME_LENGTH, (short) name.length);
+            buffer.put(position + RECORD_NAME, name);
+        }
+    }
+
+    private byte[] encodeName(String name) {
+        if (name == null) {
+            return null;
+        }
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > maxNameBytes()) {
+            throw new IllegalArgumentException("name longer than " + maxNameBytes() + " bytes: " + name);
+        }
+        return bytes;
+    }
+
+    // closes the gap at slot by moving back any later record of the run whose home slot it passed
+    private void shiftBack(long slot) {
+        long mask = capacity - 1;
+        long gap = slot;
+        for (long j = (slot + 1) & mask; ; j = (j + 1) & mask) {
+            if (buffer(j).get(position(j) + RECORD_STATE) == EMPTY) {
+                break;
+            }
+            long home = IntProductMap.hash(buffer(j).getInt(position(j) + RECORD_ID)) & mask;
+            boolean homeAfterGap = gap <= j ? gap < home && home <= j : gap < home || home <= j;
+            if (!homeAfterGap) {
+                copyRecord(j, gap);
+                gap = j;
+            }
+        }
+        buffer(gap).put(position(gap) + RECORD_STATE, EMPTY);
+    }
+
+    private void copyRecord(long from, long to) {
+        int recordSize = 1 << recordShift;
+        buffer(to).put(position(to), buffer(from), position(from), recordSize);
+    }
+
+    // rebuilds the table at a larger capacity in a new file that then replaces this one; on failure
+    // the catalog carries on with the original table, or is left closed if even that cannot be mapped
+    private void grow(int newCapacity) {
+        Path grown = path.resolveSibling(path.getFileName() + ".grow");
+        MappedProductCatalog target = new MappedProductCatalog(grown);
+        try {
+            Files.deleteIfExists(grown);
+            target.initialize(recordShift, newCapacity);
+            int recordSize = 1 << recordShift;
+            for (long slot = 0; slot < capacity; slot++) {
+                MappedByteBuffer buffer = buffer(slot);
+                int position = position(slot);
+                if (buffer.get(position + RECORD_STATE) == LIVE) {
+                    long to = target.freeSlotFor(buffer.getInt(position + RECORD_ID));
+                    target.buffer(to).put(target.position(to), buffer, position, recordSize);
+                }
+            }
+            target.header.putInt(HEADER_SIZE, size);
+            target.close();
+        } catch (IOException | RuntimeException e) {
+            try {
+                target.close();
+                Files.deleteIfExists(grown);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            if (e instanceof IOException io) {
+                throw new UncheckedIOException("could not grow catalog " + path, io);
+            }
+            throw (RuntimeException) e;
+        }
+        // the new table is complete and on disk; drop every mapping of the original before replacing it
+        IOException failure = null;
+        try {
+            release();
+            Files.move(grown, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            failure = e;
+        }
+        try {
+            // the grown table if the move went through, the original otherwise
+            map(FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE));
+        } catch (IOException e) {
+            if (failure != null) {
+                e.addSuppressed(failure);
+            }
+            throw new UncheckedIOException("catalog closed after failing to grow " + path, e);
+        }
+        if (failure != null) {
+            try {
+                Files.deleteIfExists(grown);
+            } catch (IOException suppressed) {
+                failure.addSuppressed(suppressed);
+            }
+            throw new UncheckedIOException("could not grow catalog " + path, failure);
+        }
+    }
+
+    private MappedByteBuffer buffer(long slot) {
+        return chunks[(int) ((slot << recordShift) >>> CHUNK_BITS)];
+    }
+
+    private int position(long slot) {
+        return (int) ((slot << recordShift) & ((1L << CHUNK_BITS) - 1));
+    }
+
+    private void ensureOpen() {
+        if (channel == null) {
+            throw new IllegalStateException("catalog is closed: " + path);
+        }
+    }
+
+    private static int capacityFor(int expectedProducts) {
+        long needed = ((long) Math.max(expectedProducts, 1) * 4 + 2) / 3;
+        if (needed > 1 << 30) {
+            throw new IllegalArgumentException("too many products: " + expectedProducts);
+        }
+        return Math.max(MIN_CAPACITY, Integer.highestOneBit((int) needed - 1) << 1);
+    }
+}
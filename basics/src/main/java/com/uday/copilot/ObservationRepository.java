@@ -1,10 +0,0 @@
-package com.uday.copilot.clinical.repository;
-
-import com.uday.copilot.clinical.model.Observation;
-import org.springframework.data.jpa.repository.JpaRepository;
-
-import java.util.List;
-
-public interface ObservationRepository extends JpaRepository<Observation, Long> {
-    List<Observation> findByPatientId(Long patientId);
-}
@@ -0,0 +1,48 @@
+package com.uday.copilot;
+
+/**
+ * Count, total, minimum, maximum and average of product prices, from
+ * {@link InventoryManager#priceStatistics()}.
+ *
+ * The minimum, maximum and average of no products are NaN.
+ */
+public final class PriceStatistics {
+
+    private final long count;
+    private final double sum;
+    private final double min;
+    private final double max;
+
+    PriceStatistics(long count, double sum, double min, double max) {
+        this.count = count;
+        this.sum = sum;
+        this.min = min;
+        this.max = max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public double getAverage() {
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d sum=%.2f min=%.2f max=%.2f average=%.2f",
+                count, sum, min, max, getAverage());
+    }
+}
@@ -0,0 +1,428 @@
+package com.uday.copilot;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Bulk loads products into an {@link InventoryManager} from files.
+ *
+ * Files are streamed through a {@link FileChannel} in fixed-size blocks, so they
+ * are never held in memory as a whole, and parsed products are handed to
+ * {@link InventoryManager#addProducts(Collection)} in batches after the manager
+ * has been sized for the whole file.
+ *
+ * CSV files hold one {@code id,name,price} row per line, optionally after a
+ * header line. The id is everything before the first comma and the price
+ * everything after the last, so names may contain commas; a name in double quotes
+ * has the quotes removed and doubled quotes inside it unescaped. With a
+ * parallelism above one, a CSV file is cut into byte ranges parsed concurrently;
+ * each range starts at the first line beginning inside it.
+ *
+ * The binary format, written by {@link #writeBinary(Path, Collection)}, is a
+ * header {@code [magic][count]} followed by {@code [id][price][name length][name]}
+ * records with UTF-8 names, and is always read sequentially.
+ */
+public final class ProductImporter {
+
+    /**
+     * Outcome of one import.
+     */
+    public static final class Result {
+        private final long rows;
+        private final long nanos;
+
+        private Result(long rows, long nanos) {
+            this.rows = rows;
+            this.nanos = nanos;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public long getElapsedNanos() {
+            return nanos;
+        }
+
+        public double rowsPerSecond() {
+            return nanos == 0 ? 0 : rows * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%,d rows in %,d ms (%,.0f rows/s)", rows, nanos / 1_000_000, rowsPerSecond());
+        }
+    }
+
+    private static final int BINARY_MAGIC = 0x5042494E; // "PBIN"
+    private static final int BLOCK = 1 << 20;
+    private static final int BATCH = 8_192;
+    // bytes sampled from the start of a CSV file to estimate its row count
+    private static final int SAMPLE = 64 * 1024;
+
+    private final InventoryManager manager;
+    private final int parallelism;
+
+    /**
+     * Creates an importer that parses files on the calling thread.
+     */
+    public ProductImporter(InventoryManager manager) {
+        this(manager, 1);
+    }
+
+    /**
+     * Creates an importer that parses CSV files in up to {@code parallelism}
+     * chunks at once.
+     */
+    public ProductImporter(InventoryManager manager, int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        this.manager = Objects.requireNonNull(manager, "manager must not be null");
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Imports every row of a CSV file.
+     *
+     * @throws IOException if the file cannot be read or a row is malformed
+     */
+    public Result importCsv(Path file) throws IOException {
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            manager.reserveCapacity(estimateRows(channel, length));
+            int chunks = (int) Math.max(1, Math.min(parallelism, length / BLOCK));
+            if (chunks == 1) {
+                return new Result(importCsvRange(channel, file, 0, length), System.nanoTime() - start);
+            }
+            ExecutorService pool = Executors.newFixedThreadPool(chunks);
+            try {
+                List<Future<Long>> parts = new ArrayList<>(chunks);
+                for (int i = 0; i < chunks; i++) {
+                    long from = length * i / chunks;
+                    long to = length * (i + 1) / chunks;
+                    parts.add(pool.submit(() -> importCsvRange(channel, file, from, to)));
+                }
+                long rows = 0;
+                for (Future<Long> part : parts) {
+                    rows += join(part);
+                }
+                return new Result(rows, System.nanoTime() - start);
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Imports every record of a file written by {@link #writeBinary(Path, Collection)}.
+     *
+     * @throws IOException if the file cannot be read or is not in the binary format
+     */
+    public Result importBinary(Path file) throws IOException {
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BLOCK);
+            long position = 0;
+            position += readAtLeast(channel, buffer, position, 8);
+            buffer.flip();
+            if (buffer.remaining() < 8 || buffer.getInt() != BINARY_MAGIC) {
+                throw new IOException("not a binary product file: " + file);
+            }
+            int count = buffer.getInt();
+            manager.reserveCapacity(count);
+
+            List<Product> batch = new ArrayList<>(BATCH);
+            byte[] name = new byte[256];
+            for (int i = 0; i < count; i++) {
+                if (buffer.remaining() < 14) {
+                    buffer.compact();
+                    position += readAtLeast(channel, buffer, position, 14);
+                    buffer.flip();
+                    if (buffer.remaining() < 14) {
+                        throw new IOException("truncated binary product file: " + file);
+                    }
+                }
+                int id = buffer.getInt();
+                double price = buffer.getDouble();
+                int nameLength = buffer.getShort() & 0xFFFF;
+                if (buffer.remaining() < nameLength) {
+                    buffer.compact();
+                    position += readAtLeast(channel, buffer, position, nameLength);
+                    buffer.flip();
+                    if (buffer.remaining() < nameLength) {
+                        throw new IOException("truncated binary product file: " + file);
+                    }
+                }
+                if (name.length < nameLength) {
+                    name = new byte[nameLength];
+                }
+                buffer.get(name, 0, nameLength);
+                batch.add(new Product(id, new String(name, 0, nameLength, StandardCharsets.UTF_8), price));
+                if (batch.size() == BATCH) {
+                    manager.addProducts(batch);
+                    batch = new ArrayList<>(BATCH);
+                }
+            }
+            manager.addProducts(batch);
+            return new Result(count, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Writes products in the binary format read by {@link #importBinary(Path)},
+     * replacing the file if it exists. Names must not be null or longer than
+     * 65535 UTF-8 bytes.
+     */
+    public static void writeBinary(Path file, Collection<Product> products) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BLOCK);
+            buffer.putInt(BINARY_MAGIC).putInt(products.size());
+            int written = 0;
+            for (Product p : products) {
+                written++;
+                byte[] name = Objects.requireNonNull(p.getName(), "name must not be null").getBytes(StandardCharsets.UTF_8);
+                if (name.length > 0xFFFF) {
+                    throw new IllegalArgumentException("name too long for product " + p.getId());
+                }
+                if (buffer.remaining() < 14 + name.length) {
+                    drain(channel, buffer);
+                }
+                buffer.putInt(p.getId()).putDouble(p.getPrice()).putShort((short) name.length).put(name);
+            }
+            if (written != products.size()) {
+                throw new IllegalStateException("products changed while being written");
+            }
+            drain(channel, buffer);
+        }
+    }
+
+    // parses the lines starting in [from, to) and returns how many products they held
+    private long importCsvRange(FileChannel channel, Path file, long from, long to) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BLOCK);
+        // file offset of the first byte in the buffer
+        long bufferStart = from;
+        // the line running into this range belongs to the previous one, unless it ends right before it
+        boolean skipLine = from > 0;
+        if (skipLine) {
+            bufferStart--;
+        }
+        boolean firstLine = from == 0;
+        long rows = 0;
+        List<Product> batch = new ArrayList<>(BATCH);
+
+        boolean done = false;
+        while (!done) {
+            boolean eof = channel.read(buffer, bufferStart + buffer.position()) < 0;
+            byte[] bytes = buffer.array();
+            int limit = buffer.position();
+            int begin = 0;
+            for (int i = 0; i <= limit && !done; i++) {
+                if (i < limit ? bytes[i] != '\n' : !eof || begin == limit) {
+                    continue;
+                }
+                if (skipLine) {
+                    skipLine = false;
+                } else if (bufferStart + begin >= to) {
+                    done = true;
+                } else if (firstLine && isHeader(bytes, begin, i)) {
+                    firstLine = false;
+                } else {
+                    firstLine = false;
+                    if (parseCsvRow(bytes, begin, i, batch, file, bufferStart + begin) && batch.size() == BATCH) {
+                        rows += batch.size();
+                        manager.addProducts(batch);
+                        batch = new ArrayList<>(BATCH);
+                    }
+                }
+                begin = i + 1;
+            }
+            if (eof) {
+                break;
+            }
+            // keep the unfinished line, growing the buffer if one line fills it
+            System.arraycopy(bytes, begin, bytes, 0, limit - begin);
+            bufferStart += begin;
+            buffer.position(limit - begin);
+            if (!buffer.hasRemaining()) {
+                ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+                buffer.flip();
+                larger.put(buffer);
+                buffer = larger;
+            }
+        }
+        rows += batch.size();
+        manager.addProducts(batch);
+        return rows;
+    }
+
+    // adds the product on the line to the batch; false for a blank line
+    private static boolean parseCsvRow(byte[] bytes, int from, int to, List<Product> batch, Path file, long offset)
+            throws IOException {
+        if (to > from && bytes[to - 1] == '\r') {
+            to--;
+        }
+        if (to == from) {
+            return false;
+        }
+        int firstComma = indexOf(bytes, from, to, (byte) ',');
+        int lastComma = lastIndexOf(bytes, from, to, (byte) ',');
+        if (firstComma < 0 || firstComma == lastComma) {
+            throw malformed(file, offset, bytes, from, to);
+        }
+        try {
+            int id = parseInt(bytes, from, firstComma);
+            double price = Double.parseDouble(new String(bytes, lastComma + 1, to - lastComma - 1, StandardCharsets.ISO_8859_1));
+            batch.add(new Product(id, parseName(bytes, firstComma + 1, lastComma), price));
+            return true;
+        } catch (NumberFormatException e) {
+            throw malformed(file, offset, bytes, from, to);
+        }
+    }
+
+    // a first line whose id field is not a number
+    private static boolean isHeader(byte[] bytes, int from, int to) {
+        int comma = indexOf(bytes, from, to, (byte) ',');
+        try {
+            parseInt(bytes, from, comma < 0 ? to : comma);
+            return false;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    private static String parseName(byte[] bytes, int from, int to) {
+        if (to - from >= 2 && bytes[from] == '"' && bytes[to - 1] == '"') {
+            String quoted = new String(bytes, from + 1, to - from - 2, StandardCharsets.UTF_8);
+            return quoted.replace("\"\"", "\"");
+        }
+        return new String(bytes, from, to - from, StandardCharsets.UTF_8);
+    }
+
+    private static int parseInt(byte[] bytes, int from, int to) {
+        while (from < to && bytes[from] == ' ') {
+            from++;
+        }
+        while (to > from && bytes[to - 1] == ' ') {
+            to--;
+        }
+        boolean negative = from < to && bytes[from] == '-';
+        int i = negative ? from + 1 : from;
+        if (i == to) {
+            throw new NumberFormatException();
+        }
+        long value = 0;
+        for (; i < to; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException();
+            }
+            value = value * 10 + digit;
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                throw new NumberFormatException();
+            }
+        }
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) {
+            throw new NumberFormatException();
+        }
+        return (int) value;
+    }
+
+    // rows expected in the file, judged by the line length in its first block
+    private static int estimateRows(FileChannel channel, long length) throws IOException {
+        ByteBuffer sample = ByteBuffer.allocate((int) Math.min(SAMPLE, length));
+        while (sample.hasRemaining() && channel.read(sample, sample.position()) > 0) {
+            // keep reading until the sample is full
+        }
+        int lines = 0;
+        for (int i = 0; i < sample.position(); i++) {
+            if (sample.get(i) == '\n') {
+                lines++;
+            }
+        }
+        if (lines == 0) {
+            return 1;
+        }
+        return (int) Math.min(Integer.MAX_VALUE / 2, length * lines / sample.position());
+    }
+
+    private static int indexOf(byte[] bytes, int from, int to, byte b) {
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int lastIndexOf(byte[] bytes, int from, int to, byte b) {
+        for (int i = to - 1; i >= from; i--) {
+            if (bytes[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // reads until at least `needed` bytes are buffered or the file ends; returns the bytes read
+    private static long readAtLeast(FileChannel channel, ByteBuffer buffer, long position, int needed) throws IOException {
+        if (buffer.capacity() < needed) {
+            throw new IOException("record larger than the read buffer");
+        }
+        long total = 0;
+        while (buffer.position() < needed) {
+            int read = channel.read(buffer, position + total);
+            if (read <= 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static long join(Future<Long> part) throws IOException {
+        try {
+            return part.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("import interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private static IOException malformed(Path file, long offset, byte[] bytes, int from, int to) {
+        String line = new String(bytes, from, Math.min(to - from, 200), StandardCharsets.UTF_8);
+        return new IOException("malformed product row at byte " + offset + " of " + file + ": " + line);
+    }
+}
@@ -0,0 +1,123 @@
+package com.uday.copilot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Sorted secondary indexes over products, kept up to date by
+ * {@link InventoryManager} as products are added, changed and removed.
+ *
+ * The price index orders (price, id) pairs and answers ranges; the name index
+ * orders (lower-case name, id) pairs and answers prefix lookups as the range of
+ * names between the prefix and the prefix followed by the largest character.
+ * Entries hold only keys and ids, so the products themselves stay wherever the
+ * store keeps them.
+ */
+final class ProductIndex {
+
+    static final class PriceKey {
+        final double price;
+        final int id;
+
+        PriceKey(double price, int id) {
+            this.price = price;
+            this.id = id;
+        }
+    }
+
+    static final class NameKey {
+        final String name;
+        final int id;
+
+        NameKey(String name, int id) {
+            this.name = name;
+            this.id = id;
+        }
+    }
+
+    // written out rather than composed with thenComparing, as every index operation makes many calls
+    private static final Comparator<PriceKey> PRICE_ORDER = (a, b) -> {
+        int c = Double.compare(a.price, b.price);
+        return c != 0 ? c : Integer.compare(a.id, b.id);
+    };
+    private static final Comparator<NameKey> NAME_ORDER = (a, b) -> {
+        int c = a.name.compareTo(b.name);
+        return c != 0 ? c : Integer.compare(a.id, b.id);
+    };
+
+    private final NavigableSet<PriceKey> byPrice = new ConcurrentSkipListSet<>(PRICE_ORDER);
+    private final NavigableSet<NameKey> byName = new ConcurrentSkipListSet<>(NAME_ORDER);
+
+    void add(Product p) {
+        byPrice.add(new PriceKey(p.getPrice(), p.getId()));
+        if (p.getName() != null) {
+            byName.add(new NameKey(normalize(p.getName()), p.getId()));
+        }
+    }
+
+    /**
+     * Adds many products at once, e.g. to build the index from a store. The keys
+     * are sorted first, since a skip list takes them in order several times faster
+     * than in random order.
+     */
+    void addAll(Collection<? extends Product> products) {
+        PriceKey[] prices = new PriceKey[products.size()];
+        List<NameKey> names = new ArrayList<>(products.size());
+        int i = 0;
+        for (Product p : products) {
+            prices[i++] = new PriceKey(p.getPrice(), p.getId());
+            if (p.getName() != null) {
+                names.add(new NameKey(normalize(p.getName()), p.getId()));
+            }
+        }
+        Arrays.parallelSort(prices, PRICE_ORDER);
+        NameKey[] sortedNames = names.toArray(new NameKey[0]);
+        Arrays.parallelSort(sortedNames, NAME_ORDER);
+        byPrice.addAll(Arrays.asList(prices));
+        byName.addAll(Arrays.asList(sortedNames));
+    }
+
+    void remove(Product p) {
+        byPrice.remove(new PriceKey(p.getPrice(), p.getId()));
+        if (p.getName() != null) {
+            byName.remove(new NameKey(normalize(p.getName()), p.getId()));
+        }
+    }
+
+    /**
+     * Returns every price entry, cheapest first.
+     */
+    NavigableSet<PriceKey> prices() {
+        return byPrice;
+    }
+
+    /**
+     * Returns the entries with minPrice <= price <= maxPrice, cheapest first.
+     */
+    NavigableSet<PriceKey> priceRange(double minPrice, double maxPrice) {
+        if (Double.compare(minPrice, maxPrice) > 0) {
+            return new ConcurrentSkipListSet<>(PRICE_ORDER);
+        }
+        return byPrice.subSet(new PriceKey(minPrice, Integer.MIN_VALUE), true,
+                new PriceKey(maxPrice, Integer.MAX_VALUE), true);
+    }
+
+    /**
+     * Returns the entries whose name starts with the prefix, ignoring case, in name order.
+     */
+    NavigableSet<NameKey> namePrefix(String prefix) {
+        String from = normalize(prefix);
+        return byName.subSet(new NameKey(from, Integer.MIN_VALUE), true,
+                new NameKey(from + Character.MAX_VALUE, Integer.MIN_VALUE), false);
+    }
+
+    static String normalize(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,63 @@
+package com.uday.copilot;
+
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Storage behind an {@link InventoryManager}, mapping product ids to products.
+ *
+ * Each method must be safe to call concurrently with the others. Compound
+ * changes such as read-modify-write updates are made atomic by the manager, which
+ * never writes the same id from two threads at once.
+ */
+public interface ProductStore {
+
+    /**
+     * Returns the product with the given id, or null if there is none.
+     */
+    Product get(int id);
+
+    /**
+     * Stores the product under its id and returns the product it replaced, if any.
+     */
+    Product put(Product product);
+
+    /**
+     * Removes and returns the product with the given id, or null if there was none.
+     */
+    Product remove(int id);
+
+    int size();
+
+    /**
+     * Prepares the store to hold {@code expectedSize} products without growing
+     * again, e.g. ahead of a bulk import. Does nothing by default.
+     */
+    default void ensureCapacity(int expectedSize) {
+    }
+
+    /**
+     * Passes every stored product to the action, in no particular order. Products
+     * changed while this runs may or may not be seen.
+     */
+    void forEach(Consumer<? super Product> action);
+
+    /**
+     * Returns the number of disjoint parts {@link #forEachInPart(int, Consumer)}
+     * splits the store into, so that they can be walked from different threads at
+     * once. One by default.
+     */
+    default int partCount() {
+        return 1;
+    }
+
+    /**
+     * Passes every product in one part of the store, numbered from 0 to
+     * {@code partCount() - 1}, to the action; together the parts hold every
+     * product once. Products changed while this runs may or may not be seen.
+     */
+    default void forEachInPart(int part, Consumer<? super Product> action) {
+        Objects.checkIndex(part, partCount());
+        forEach(action);
+    }
+}
@@ -0,0 +1,448 @@
+package com.uday.copilot;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+/**
+ * Price and stock levels for products, kept in primitive columns and changed in
+ * place.
+ *
+ * Each product gets a row; its price and quantity live in {@code long} columns
+ * split into fixed-size pages that never move, so growing the ledger never loses
+ * a concurrent write. Prices are set and quantities reserved and released with
+ * atomic operations on the column cells, without allocating, which keeps
+ * high-rate repricing off the garbage collector. Ids map to rows through a
+ * primitive open-addressing table. Reads look up the row optimistically; writes
+ * share a read lock so a row cannot change hands under them, and only adding
+ * and removing products takes the write lock.
+ *
+ * Products are exposed as {@link StockView}s: one {@link Product} per row whose
+ * getters read the columns, so a view always shows the current price rather than
+ * a copy. The rows of removed products go on a free list for the next product
+ * added, and their views keep the values the product had when it was removed.
+ */
+public final class StockLedger {
+
+    /**
+     * A live view of one product in the ledger.
+     */
+    public static final class StockView extends Product {
+        private final StockLedger ledger;
+        private final int row;
+        // the values at removal, written before removed is set; once set, the row may hold another product
+        private String finalName;
+        private long finalPrice;
+        private long finalQuantity;
+        private volatile boolean removed;
+
+        private StockView(StockLedger ledger, int id, int row) {
+            super(id, null, 0);
+            this.ledger = ledger;
+            this.row = row;
+        }
+
+        @Override
+        public String getName() {
+            if (!removed) {
+                String name = ledger.names[row >>> PAGE_BITS][row & PAGE_MASK];
+                if (!removed) {
+                    return name;
+                }
+            }
+            return finalName;
+        }
+
+        @Override
+        public double getPrice() {
+            return Double.longBitsToDouble(read(ledger.prices, finalPrice));
+        }
+
+        public long getQuantity() {
+            return read(ledger.quantities, finalQuantity);
+        }
+
+        private long read(long[][] column, long finalValue) {
+            if (!removed) {
+                long value = (long) CELL.getVolatile(column[row >>> PAGE_BITS], row & PAGE_MASK);
+                if (!removed) {
+                    return value;
+                }
+            }
+            return finalValue;
+        }
+
+        // caller holds the write lock
+        private void remove() {
+            finalName = getName();
+            finalPrice = (long) CELL.getVolatile(ledger.prices[row >>> PAGE_BITS], row & PAGE_MASK);
+            finalQuantity = (long) CELL.getVolatile(ledger.quantities[row >>> PAGE_BITS], row & PAGE_MASK);
+            removed = true;
+        }
+    }
+
+    private static final VarHandle CELL = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final int PAGE_BITS = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private final StampedLock lock = new StampedLock();
+    // pages of the columns, indexed by row; a page never moves once allocated
+    private volatile long[][] prices = new long[0][];
+    private volatile long[][] quantities = new long[0][];
+    private volatile String[][] names = new String[0][];
+    private volatile StockView[][] views = new StockView[0][];
+    // open-addressing id -> row table; each slot packs the id in the high half and row + 1 in the
+    // low half, 0 marking an empty slot, so one read sees a consistent pair
+    private volatile long[] slots = new long[16];
+    // guarded by lock
+    private int rows;
+    private int size;
+    // rows of removed products, reused before new rows are allocated
+    private int[] freeRows = new int[16];
+    private int freeCount;
+
+    /**
+     * Adds a product with the given quantity in stock, or overwrites the name,
+     * price and quantity of the product already in the ledger with that id.
+     * Returns the product's view.
+     */
+    public StockView addProduct(Product product, long quantity) {
+        Objects.requireNonNull(product, "product must not be null");
+        if (quantity < 0) {
+            throw new IllegalArgumentException("quantity must not be negative");
+        }
+        long stamp = lock.writeLock();
+        try {
+            int row = find(slots, product.getId());
+            if (row < 0) {
+                if (freeCount > 0) {
+                    row = freeRows[--freeCount];
+                } else {
+                    row = rows++;
+                    if (row >>> PAGE_BITS == prices.length) {
+                        addPage();
+                    }
+                }
+                views[row >>> PAGE_BITS][row & PAGE_MASK] = new StockView(this, product.getId(), row);
+                insert(product.getId(), row);
+            }
+            names[row >>> PAGE_BITS][row & PAGE_MASK] = product.getName();
+            CELL.setVolatile(prices[row >>> PAGE_BITS], row & PAGE_MASK, Double.doubleToRawLongBits(product.getPrice()));
+            CELL.setVolatile(quantities[row >>> PAGE_BITS], row & PAGE_MASK, quantity);
+            return views[row >>> PAGE_BITS][row & PAGE_MASK];
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public boolean removeProduct(int id) {
+        long stamp = lock.writeLock();
+        try {
+            int row = delete(id);
+            if (row < 0) {
+                return false;
+            }
+            views[row >>> PAGE_BITS][row & PAGE_MASK].remove();
+            names[row >>> PAGE_BITS][row & PAGE_MASK] = null;
+            if (freeCount == freeRows.length) {
+                freeRows = Arrays.copyOf(freeRows, freeCount * 2);
+            }
+            freeRows[freeCount++] = row;
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns the live view of the product with the id, or null.
+     */
+    public StockView getProduct(int id) {
+        long stamp = lock.tryOptimisticRead();
+        StockView view = viewOf(id);
+        if (lock.validate(stamp)) {
+            return view;
+        }
+        stamp = lock.readLock();
+        try {
+            return viewOf(id);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns the price of the product with the id, or NaN if there is none.
+     */
+    public double getPrice(int id) {
+        return Double.longBitsToDouble(read(true, id, Double.doubleToRawLongBits(Double.NaN)));
+    }
+
+    /**
+     * Sets the price in place. Returns false if the id is unknown.
+     */
+    public boolean setPrice(int id, double price) {
+        long stamp = lock.readLock();
+        try {
+            int row = find(slots, id);
+            if (row < 0) {
+                return false;
+            }
+            CELL.setVolatile(prices[row >>> PAGE_BITS], row & PAGE_MASK, Double.doubleToRawLongBits(price));
+            return true;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns the quantity in stock, or -1 if the id is unknown.
+     */
+    public long getQuantity(int id) {
+        return read(false, id, -1);
+    }
+
+    /**
+     * Sets the quantity in stock. Returns false if the id is unknown.
+     */
+    public boolean setQuantity(int id, long quantity) {
+        if (quantity < 0) {
+            throw new IllegalArgumentException("quantity must not be negative");
+        }
+        long stamp = lock.readLock();
+        try {
+            int row = find(slots, id);
+            if (row < 0) {
+                return false;
+            }
+            CELL.setVolatile(quantities[row >>> PAGE_BITS], row & PAGE_MASK, quantity);
+            return true;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Takes {@code amount} out of stock if at least that much is there. Returns
+     * false, leaving the stock alone, if there is not enough or the id is unknown.
+     */
+    public boolean reserve(int id, long amount) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("amount must not be negative");
+        }
+        long stamp = lock.readLock();
+        try {
+            int row = find(slots, id);
+            if (row < 0) {
+                return false;
+            }
+            long[] page = quantities[row >>> PAGE_BITS];
+            int cell = row & PAGE_MASK;
+            while (true) {
+                long available = (long) CELL.getVolatile(page, cell);
+                if (available < amount) {
+                    return false;
+                }
+                if (CELL.compareAndSet(page, cell, available, available - amount)) {
+                    return true;
+                }
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Puts {@code amount} back into stock, e.g. when a reservation is cancelled or
+     * goods arrive. Returns false if the id is unknown, and throws, leaving the
+     * stock alone, if the quantity would overflow.
+     */
+    public boolean release(int id, long amount) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("amount must not be negative");
+        }
+        long stamp = lock.readLock();
+        try {
+            int row = find(slots, id);
+            if (row < 0) {
+                return false;
+            }
+            long[] page = quantities[row >>> PAGE_BITS];
+            int cell = row & PAGE_MASK;
+            while (true) {
+                long available = (long) CELL.getVolatile(page, cell);
+                if (available > Long.MAX_VALUE - amount) {
+                    throw new IllegalArgumentException("releasing " + amount + " would overflow the stock of product " + id);
+                }
+                if (CELL.compareAndSet(page, cell, available, available + amount)) {
+                    return true;
+                }
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Passes the view of every product in the ledger to the action, in no
+     * particular order. Products added or removed meanwhile are not reflected.
+     */
+    public void forEach(Consumer<? super StockView> action) {
+        StockView[] all;
+        long stamp = lock.readLock();
+        try {
+            // collected under the lock, since a row may pass to another product once it is released
+            all = new StockView[size];
+            int n = 0;
+            for (long slot : slots) {
+                if (slot != 0) {
+                    int row = (int) slot - 1;
+                    all[n++] = views[row >>> PAGE_BITS][row & PAGE_MASK];
+                }
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        for (StockView view : all) {
+            action.accept(view);
+        }
+    }
+
+    // rows allocated so far, free ones included
+    int rowCount() {
+        long stamp = lock.readLock();
+        try {
+            return rows;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // an optimistic read may see a row before its page, hence the bounds checks; validation then fails
+    private StockView viewOf(int id) {
+        int row = find(slots, id);
+        StockView[][] pages = views;
+        return row < 0 || row >>> PAGE_BITS >= pages.length ? null : pages[row >>> PAGE_BITS][row & PAGE_MASK];
+    }
+
+    // the id's price or quantity cell, or absent if the id is unknown; the optimistic read covers
+    // the cell too, so a value read from a row that changed hands meanwhile is never returned
+    private long read(boolean price, int id, long absent) {
+        long stamp = lock.tryOptimisticRead();
+        long value = cellOf(price, id, absent);
+        if (lock.validate(stamp)) {
+            return value;
+        }
+        stamp = lock.readLock();
+        try {
+            return cellOf(price, id, absent);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private long cellOf(boolean price, int id, long absent) {
+        int row = find(slots, id);
+        long[][] column = price ? prices : quantities;
+        if (row < 0 || row >>> PAGE_BITS >= column.length) {
+            return absent;
+        }
+        return (long) CELL.getVolatile(column[row >>> PAGE_BITS], row & PAGE_MASK);
+    }
+
+    // terminates on any table, so it is safe inside an optimistic read
+    private static int find(long[] table, int id) {
+        int mask = table.length - 1;
+        int i = IntProductMap.hash(id) & mask;
+        for (int probes = 0; probes < table.length; probes++) {
+            long slot = table[i];
+            if (slot == 0) {
+                return -1;
+            }
+            if ((int) (slot >>> 32) == id) {
+                return (int) slot - 1;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void insert(int id, int row) {
+        if ((size + 1) * 2 > slots.length) {
+            long[] grown = new long[slots.length * 2];
+            for (long slot : slots) {
+                if (slot != 0) {
+                    place(grown, slot);
+                }
+            }
+            slots = grown;
+        }
+        place(slots, ((long) id << 32) | (row + 1L));
+        size++;
+    }
+
+    private static void place(long[] table, long slot) {
+        int mask = table.length - 1;
+        int i = IntProductMap.hash((int) (slot >>> 32)) & mask;
+        while (table[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        table[i] = slot;
+    }
+
+    // the row the id had, or -1 if it was not in the table
+    private int delete(int id) {
+        long[] table = slots;
+        int mask = table.length - 1;
+        int i = IntProductMap.hash(id) & mask;
+        while (table[i] != 0 && (int) (table[i] >>> 32) != id) {
+            i = (i + 1) & mask;
+        }
+        if (table[i] == 0) {
+            return -1;
+        }
+        int row = (int) table[i] - 1;
+        // backward-shift deletion, as in IntProductMap
+        int gap = i;
+        for (int j = (i + 1) & mask; table[j] != 0; j = (j + 1) & mask) {
+            int home = IntProductMap.hash((int) (table[j] >>> 32)) & mask;
+            boolean homeAfterGap = gap <= j ? gap < home && home <= j : gap < home || home <= j;
+            if (!homeAfterGap) {
+                table[gap] = table[j];
+                gap = j;
+            }
+        }
+        table[gap] = 0;
+        size--;
+        return row;
+    }
+
+    private void addPage() {
+        int pages = prices.length + 1;
+        long[][] p = Arrays.copyOf(prices, pages);
+        p[pages - 1] = new long[PAGE_SIZE];
+        long[][] q = Arrays.copyOf(quantities, pages);
+        q[pages - 1] = new long[PAGE_SIZE];
+        String[][] n = Arrays.copyOf(names, pages);
+        n[pages - 1] = new String[PAGE_SIZE];
+        StockView[][] v = Arrays.copyOf(views, pages);
+        v[pages - 1] = new StockView[PAGE_SIZE];
+        prices = p;
+        quantities = q;
+        names = n;
+        views = v;
+    }
+}
@@ -0,0 +1,37 @@
+package com.uday.copilot;
+
+import com.uday.copilot.TaskManager.Task;
+
+/**
+ * A change made through a {@link TaskManager}, as delivered to event subscribers.
+ */
+public final class TaskEvent {
+
+    /**
+     * What happened to the task.
+     */
+    public enum Type {
+        ADDED, DONE, REMOVED
+    }
+
+    private final Type type;
+    private final Task task;
+
+    public TaskEvent(Type type, Task task) {
+        this.type = type;
+        this.task = task;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Task getTask() {
+        return task;
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + task;
+    }
+}
@@ -0,0 +1,95 @@
+package com.uday.copilot;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.uday.copilot.TaskManager.Task;
+
+/**
+ * Publishes the changes of a {@link TaskManager} to {@link Flow.Subscriber}s.
+ *
+ * Each subscriber gets its own bounded buffer and receives events on the
+ * publisher's executor, never on the thread that changed the task. Subscribers
+ * pace delivery with {@link Flow.Subscription#request(long)}; when one falls so
+ * far behind that its buffer is full, further events for it are dropped and
+ * counted instead of blocking the manager.
+ */
+public class TaskEventPublisher implements TaskListener, Flow.Publisher<TaskEvent>, AutoCloseable {
+
+    private final SubmissionPublisher<TaskEvent> publisher;
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * Creates a publisher delivering on the common fork/join pool with the
+     * default per-subscriber buffer size.
+     */
+    public TaskEventPublisher() {
+        this(ForkJoinPool.commonPool(), Flow.defaultBufferSize());
+    }
+
+    /**
+     * Creates a publisher delivering on the given executor.
+     *
+     * @param executor runs subscriber callbacks
+     * @param bufferCapacity events buffered per subscriber before dropping
+     */
+    public TaskEventPublisher(Executor executor, int bufferCapacity) {
+        this.publisher = new SubmissionPublisher<>(executor, bufferCapacity);
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super TaskEvent> subscriber) {
+        publisher.subscribe(subscriber);
+    }
+
+    @Override
+    public void taskAdded(Task task) {
+        publish(new TaskEvent(TaskEvent.Type.ADDED, task));
+    }
+
+    @Override
+    public void taskDone(Task task) {
+        publish(new TaskEvent(TaskEvent.Type.DONE, task));
+    }
+
+    @Override
+    public void taskRemoved(Task task) {
+        publish(new TaskEvent(TaskEvent.Type.REMOVED, task));
+    }
+
+    /**
+     * Returns how many events were dropped for subscribers with a full buffer,
+     * counted once per subscriber that missed the event.
+     */
+    public long droppedEvents() {
+        return dropped.sum();
+    }
+
+    /**
+     * Returns the number of current subscribers.
+     */
+    public int subscriberCount() {
+        return publisher.getNumberOfSubscribers();
+    }
+
+    /**
+     * Completes every subscriber once it has received the events already buffered.
+     */
+    @Override
+    public void close() {
+        publisher.close();
+    }
+
+    private void publish(TaskEvent event) {
+        if (!publisher.hasSubscribers() || publisher.isClosed()) {
+            return;
+        }
+        publisher.offer(event, (subscriber, item) -> {
+            dropped.increment();
+            return false;
+        });
+    }
+}
@@ -0,0 +1,31 @@
+package com.uday.copilot;
+
+import java.util.UUID;
+
+/**
+ * Supplies ids for new {@link TaskManager.Task} instances.
+ * Implementations must be thread-safe and never hand out the same id twice.
+ */
+@FunctionalInterface
+public interface TaskIdGenerator {
+
+    /**
+     * Returns a new, unique id.
+     */
+    UUID nextId();
+
+    /**
+     * Returns the shared time-ordered generator used by default.
+     */
+    static TaskIdGenerator timeOrdered() {
+        return TimeOrderedIdGenerator.INSTANCE;
+    }
+
+    /**
+     * Returns a generator backed by {@link UUID#randomUUID()}, for callers that
+     * need ids which reveal nothing about when they were created.
+     */
+    static TaskIdGenerator random() {
+        return UUID::randomUUID;
+    }
+}
@@ -0,0 +1,34 @@
+package com.uday.copilot;
+
+import com.uday.copilot.TaskManager.Task;
+
+/**
+ * Receives changes made through a {@link TaskManager}.
+ *
+ * Callbacks run on the mutating thread. Added and removed notifications are
+ * delivered while the manager holds the lock covering the task, so for any one
+ * task they arrive in the order the changes happened. Implementations must be
+ * quick and must not call back into the manager.
+ */
+public interface TaskListener {
+
+    /**
+     * Called just before a new task becomes visible in the manager. Throwing
+     * keeps the task out of the manager and fails the add.
+     */
+    default void taskAdded(Task task) {
+    }
+
+    /**
+     * Called after a task moves from not done to done through the manager.
+     * Calls to {@link Task#setDone(boolean)} on the task itself are not reported.
+     */
+    default void taskDone(Task task) {
+    }
+
+    /**
+     * Called after a task has been removed from the manager.
+     */
+    default void taskRemoved(Task task) {
+    }
+}
@@ -0,0 +1,457 @@
+package com.uday.copilot;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.UUID;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+import com.uday.copilot.TaskManager.Task;
+
+/**
+ * Append-only write-ahead log behind {@link DurableTaskManager}.
+ *
+ * The log directory holds numbered segments ({@code wal-N.log}) and snapshots
+ * ({@code snapshot-N.bin}). Snapshot N is the full task list, copied after segment N
+ * was started, so recovery loads the newest snapshot and replays segment N and every
+ * later one. Replaying a change that the snapshot already reflects is harmless.
+ *
+ * Every record is framed as {@code [length][type][id][sequence][description][crc32c]},
+ * where the sequence is the task's position in insertion order; a torn
+ * or corrupt tail left by a crash ends the replay of that file. Appends go to an
+ * in-memory buffer and a single background thread writes and fsyncs whatever has
+ * accumulated, so concurrent writers share one fsync (group commit).
+ */
+final class TaskLog implements Closeable {
+
+    static final byte ADD = 1;
+    static final byte DONE = 2;
+    static final byte REMOVE = 3;
+
+    private static final int READ_BUFFER = 1 << 20;
+    // type, id and sequence ahead of the description bytes
+    private static final int HEADER = 1 + 16 + 8;
+    // length prefix, header and checksum around the description bytes
+    private static final int RECORD_OVERHEAD = 4 + HEADER + 4;
+    static final int MAX_DESCRIPTION = READ_BUFFER - RECORD_OVERHEAD;
+    private static final byte[] NO_DESCRIPTION = new byte[0];
+
+    /**
+     * Throws IllegalArgumentException if the description is too long to log.
+     */
+    static void check(String description) {
+        // a UTF-8 character takes at most three bytes per UTF-16 unit
+        if (description.length() * 3L > MAX_DESCRIPTION) {
+            checkLength(description.getBytes(StandardCharsets.UTF_8).length);
+        }
+    }
+
+    private static void checkLength(int bytes) {
+        if (bytes > MAX_DESCRIPTION) {
+            throw new IllegalArgumentException("description too long to log: " + bytes + " bytes");
+        }
+    }
+
+    /**
+     * Receives records read back during recovery.
+     */
+    interface Handler {
+        void add(UUID id, long sequence, String description);
+
+        void done(UUID id);
+
+        void remove(UUID id);
+    }
+
+    private final Path dir;
+    private final ReentrantLock lock = new ReentrantLock();
+    // signalled when there is something for the flusher to do
+    private final Condition hasWork = lock.newCondition();
+    // signalled after every flush, rotation or failure
+    private final Condition flushed = lock.newCondition();
+    private final CRC32C crc = new CRC32C();
+    private final Thread flusher;
+
+    // guarded by lock
+    private ByteBuffer pending = ByteBuffer.allocate(64 * 1024);
+    private ByteBuffer spare = ByteBuffer.allocate(64 * 1024);
+    private long appended;
+    private long durable;
+    private long appendedAtRotation;
+    private long segment;
+    private boolean rotateRequested;
+    private boolean closed;
+    private IOException failure;
+
+    // only touched by the flusher thread once it has started
+    private FileChannel channel;
+
+    /**
+     * Opens a new segment with the given number and starts the flusher thread.
+     */
+    TaskLog(Path dir, long segment) throws IOException {
+        this.dir = dir;
+        this.segment = segment;
+        this.channel = openSegment(dir, segment);
+        this.flusher = new Thread(this::flushLoop, "task-log-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Buffers one record about the task and returns its position in the log.
+     * The description is only stored for {@link #ADD} records.
+     *
+     * @throws UncheckedIOException if an earlier write failed
+     */
+    long append(byte type, Task task, String description) {
+        byte[] bytes = description == null ? NO_DESCRIPTION : description.getBytes(StandardCharsets.UTF_8);
+        checkLength(bytes.length);
+        lock.lock();
+        try {
+            checkOpen();
+            if (pending.remaining() < RECORD_OVERHEAD + bytes.length) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + RECORD_OVERHEAD + bytes.length));
+                pending.flip();
+                grown.put(pending);
+                pending = grown;
+            }
+            encode(pending, crc, type, task, bytes);
+            appended++;
+            hasWork.signal();
+            return appended;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Blocks until every record appended so far is on disk.
+     *
+     * @throws UncheckedIOException if the log could not be written
+     */
+    void sync() {
+        lock.lock();
+        try {
+            long target = appended;
+            while (durable < target) {
+                if (failure != null) {
+                    throw new UncheckedIOException(failure);
+                }
+                flushed.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Flushes the current segment, starts the next one and returns its number.
+     * Records appended after this returns land in the new segment.
+     */
+    long rotate() {
+        lock.lock();
+        try {
+            checkOpen();
+            long target = segment + 1;
+            rotateRequested = true;
+            hasWork.signal();
+            while (segment < target) {
+                if (failure != null) {
+                    throw new UncheckedIOException(failure);
+                }
+                flushed.awaitUninterruptibly();
+            }
+            return target;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns how many records were appended since the last rotation.
+     */
+    long appendedSinceRotation() {
+        lock.lock();
+        try {
+            return appended - appendedAtRotation;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Flushes outstanding records and stops the flusher thread.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            hasWork.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    // caller must hold the lock
+    private void checkOpen() {
+        if (failure != null) {
+            throw new UncheckedIOException(failure);
+        }
+        if (closed) {
+            throw new IllegalStateException("task log is closed");
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            ByteBuffer batch;
+            long upTo;
+            boolean rotate;
+            boolean stop;
+            lock.lock();
+            try {
+                while (pending.position() == 0 && !rotateRequested && !closed) {
+                    hasWork.awaitUninterruptibly();
+                }
+                batch = pending;
+                pending = spare;
+                upTo = appended;
+                rotate = rotateRequested;
+                stop = closed;
+            } finally {
+                lock.unlock();
+            }
+
+            IOException error = null;
+            try {
+                batch.flip();
+                while (batch.hasRemaining()) {
+                    channel.write(batch);
+                }
+                channel.force(false);
+                if (rotate) {
+                    FileChannel next = openSegment(dir, segment + 1);
+                    channel.close();
+                    channel = next;
+                }
+            } catch (IOException e) {
+                error = e;
+            }
+
+            lock.lock();
+            try {
+                batch.clear();
+                spare = batch;
+                if (error != null) {
+                    failure = error;
+                    flushed.signalAll();
+                    return;
+                }
+                durable = upTo;
+                if (rotate) {
+                    segment++;
+                    appendedAtRotation = upTo;
+                    rotateRequested = false;
+                }
+                flushed.signalAll();
+                if (stop && pending.position() == 0 && !rotateRequested) {
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Loads the newest snapshot in the directory and replays the segments written
+     * after it into the handler. Creates the directory if needed.
+     *
+     * @return number of the segment new records should go to
+     */
+    static long recover(Path dir, Handler handler) throws IOException {
+        Files.createDirectories(dir);
+        long snapshot = 0;
+        long lastSegment = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.startsWith("snapshot-") && name.endsWith(".bin")) {
+                    snapshot = Math.max(snapshot, number(name));
+                } else if (name.startsWith("wal-") && name.endsWith(".log")) {
+                    lastSegment = Math.max(lastSegment, number(name));
+                }
+            }
+        }
+        if (snapshot > 0) {
+            replay(snapshotFile(dir, snapshot), handler);
+        }
+        for (long n = Math.max(snapshot, 1); n <= lastSegment; n++) {
+            Path file = segmentFile(dir, n);
+            if (Files.exists(file)) {
+                replay(file, handler);
+            }
+        }
+        return Math.max(snapshot, lastSegment) + 1;
+    }
+
+    /**
+     * Writes the tasks as snapshot number {@code n}. The file only appears under its
+     * final name once it is complete and synced.
+     */
+    static void writeSnapshot(Path dir, long n, Iterator<Task> tasks) throws IOException {
+        Path tmp = dir.resolve("snapshot-" + n + ".tmp");
+        CRC32C crc = new CRC32C();
+        ByteBuffer buf = ByteBuffer.allocate(READ_BUFFER);
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (tasks.hasNext()) {
+                Task t = tasks.next();
+                byte[] bytes = t.getDescription().getBytes(StandardCharsets.UTF_8);
+                if (buf.remaining() < RECORD_OVERHEAD + bytes.length) {
+                    drain(buf, out);
+                }
+                encode(buf, crc, ADD, t, bytes);
+                if (t.isDone()) {
+                    // a longest description fills the whole buffer on its own
+                    if (buf.remaining() < RECORD_OVERHEAD) {
+                        drain(buf, out);
+                    }
+                    encode(buf, crc, DONE, t, NO_DESCRIPTION);
+                }
+            }
+            drain(buf, out);
+            out.force(true);
+        }
+        Files.move(tmp, snapshotFile(dir, n), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Deletes segments and snapshots numbered below {@code n}.
+     */
+    static void deleteBefore(Path dir, long n) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                boolean known = (name.startsWith("wal-") && name.endsWith(".log"))
+                        || (name.startsWith("snapshot-") && name.endsWith(".bin"));
+                if (known && number(name) < n) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Feeds every intact record of the file to the handler and returns how many
+     * there were. Stops quietly at a truncated or corrupt record.
+     */
+    static long replay(Path file, Handler handler) throws IOException {
+        CRC32C crc = new CRC32C();
+        long count = 0;
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate(READ_BUFFER);
+            byte[] array = buf.array();
+            while (true) {
+                boolean eof = in.read(buf) < 0;
+                buf.flip();
+                while (buf.remaining() >= 4) {
+                    int p = buf.position();
+                    int length = buf.getInt(p);
+                    if (length < HEADER || length > READ_BUFFER - 8) {
+                        return count;
+                    }
+                    if (buf.remaining() < length + 8) {
+                        break;
+                    }
+                    crc.reset();
+                    crc.update(array, p + 4, length);
+                    if ((int) crc.getValue() != buf.getInt(p + 4 + length)) {
+                        return count;
+                    }
+                    byte type = buf.get(p + 4);
+                    UUID id = new UUID(buf.getLong(p + 5), buf.getLong(p + 13));
+                    if (type == ADD) {
+                        long sequence = buf.getLong(p + 21);
+                        handler.add(id, sequence, new String(array, p + 4 + HEADER, length - HEADER, StandardCharsets.UTF_8));
+                    } else if (type == DONE) {
+                        handler.done(id);
+                    } else if (type == REMOVE) {
+                        handler.remove(id);
+                    } else {
+                        return count;
+                    }
+                    count++;
+                    buf.position(p + length + 8);
+                }
+                if (eof) {
+                    return count;
+                }
+                buf.compact();
+            }
+        }
+    }
+
+    private static void encode(ByteBuffer buf, CRC32C crc, byte type, Task task, byte[] description) {
+        int length = HEADER + description.length;
+        int start = buf.position();
+        buf.putInt(length)
+                .put(type)
+                .putLong(task.getId().getMostSignificantBits())
+                .putLong(task.getId().getLeastSignificantBits())
+                .putLong(task.sequence)
+                .put(description);
+        crc.reset();
+        crc.update(buf.array(), start + 4, length);
+        buf.putInt((int) crc.getValue());
+    }
+
+    private static void drain(ByteBuffer buf, FileChannel out) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) {
+            out.write(buf);
+        }
+        buf.clear();
+    }
+
+    private static FileChannel openSegment(Path dir, long n) throws IOException {
+        return FileChannel.open(segmentFile(dir, n), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+
+    private static Path segmentFile(Path dir, long n) {
+        return dir.resolve("wal-" + n + ".log");
+    }
+
+    private static Path snapshotFile(Path dir, long n) {
+        return dir.resolve("snapshot-" + n + ".bin");
+    }
+
+    private static long number(String name) {
+        return Long.parseLong(name.substring(name.indexOf('-') + 1, name.lastIndexOf('.')));
+    }
+}
@@ -1,17 +1,39 @@
 package com.uday.copilot;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.Iterator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 /**
  * The TaskManager class is responsible for managing a list of tasks.
  * It allows adding tasks, listing all tasks, and marking tasks as done.
+ * Tasks are indexed by id and by description, so lookups and removals
+ * do not depend on how many tasks are held. The description index is
+ * lock-striped, so threads working on different tasks rarely contend.
+ * Every change to a task is made and announced to listeners under its stripe's
+ * lock, so a task's events arrive in the order they happened.
  */
-public class TaskManager {
+public class TaskManager implements Closeable {
     
     /**
      * The Task class represents a single task with a description and a completion status.
@@ -20,14 +42,36 @@ public class TaskManager {
         private final UUID id;
         private final String description;
         private volatile boolean done;
+        // position in the manager's insertion order, assigned when added
+        long sequence;
+
+        private static final VarHandle DONE;
+
+        static {
+            try {
+                DONE = MethodHandles.lookup().findVarHandle(Task.class, "done", boolean.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
 
         /**
-         * Constructs a Task with the specified description.
+         * Constructs a Task with the specified description and a time-ordered id.
          *
          * @param description non-null task description
          */
         public Task(String description) {
-            this.id = UUID.randomUUID();
+            this(TaskIdGenerator.timeOrdered().nextId(), description);
+        }
+
+        /**
+         * Constructs a Task with the specified id and description.
+         *
+         * @param id non-null task id
+         * @param description non-null task description
+         */
+        public Task(UUID id, String description) {
+            this.id = Objects.requireNonNull(id, "id must not be null");
             this.description = Objects.requireNonNull(description, "description must not be null");
             this.done = false;
         }
@@ -48,6 +92,11 @@ public class TaskManager {
             this.done = done;
         }
 
+        // flips done from false to true; only one caller ever sees true
+        boolean markDone() {
+            return DONE.compareAndSet(this, false, true);
+        }
+
         @Override
         public String toString() {
             return (done ? "[X] " : "[ ] ") + description;
@@ -68,13 +117,127 @@ public class TaskManager {
 
     }
     
-    private final List<Task> tasks;
+    // number of description stripes; a power of two so the hash can be masked
+    private static final int STRIPES = 64;
+
+    // insertion sequence -> task, iterated by listTasks()
+    private final ConcurrentSkipListMap<Long, Task> tasks;
+    // id -> task
+    private final Map<UUID, Task> byId;
+    // description index split into independently locked stripes
+    private final Stripe[] stripes;
+    private final AtomicLong nextSequence;
+    private final TaskIdGenerator idGenerator;
+    // bumped after every change to the set of tasks; done flags are not tracked
+    private final AtomicLong version;
+    // last listTasks() result, shared by readers until the version moves on
+    private volatile Snapshot snapshot;
+    private final List<TaskListener> listeners;
+    // description words -> tasks, for searchTasks()
+    private final TaskSearchIndex searchIndex;
+    // created by the first call to events(), closed with the manager
+    private TaskEventPublisher eventPublisher;
+    private boolean closed;
+
+    /**
+     * An immutable task list tagged with the version it was copied at.
+     */
+    private static final class Snapshot {
+        final long version;
+        final List<Task> tasks;
+
+        Snapshot(long version, List<Task> tasks) {
+            this.version = version;
+            this.tasks = tasks;
+        }
+    }
+
+    /**
+     * A slice of the description index. Its monitor guards the stripe's index and
+     * every insert into or removal from the shared maps for tasks hashed to it, so
+     * mutations of tasks with different descriptions never contend.
+     */
+    private static final class Stripe {
+        // description -> tasks with that description, in insertion order
+        final Map<String, Set<Task>> byDescription = new HashMap<>();
+    }
     
     /**
-     * Constructs a TaskManager with an empty task list.
+     * Constructs a TaskManager with an empty task list and time-ordered task ids.
      */
     public TaskManager() {
-        this.tasks = new ArrayList<>();
+        this(TaskIdGenerator.timeOrdered());
+    }
+
+    /**
+     * Constructs a TaskManager with an empty task list that takes task ids from
+     * the given generator.
+     */
+    public TaskManager(TaskIdGenerator idGenerator) {
+        this.idGenerator = Objects.requireNonNull(idGenerator, "idGenerator must not be null");
+        this.tasks = new ConcurrentSkipListMap<>();
+        this.byId = new ConcurrentHashMap<>();
+        this.stripes = new Stripe[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.nextSequence = new AtomicLong();
+        this.version = new AtomicLong();
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.searchIndex = new TaskSearchIndex();
+    }
+
+    /**
+     * Registers a listener that is told about every subsequent change.
+     */
+    public void addListener(TaskListener listener) {
+        listeners.add(Objects.requireNonNull(listener, "listener must not be null"));
+    }
+
+    /**
+     * Unregisters a listener added with {@link #addListener(TaskListener)}.
+     */
+    public void removeListener(TaskListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Returns a publisher of this manager's add, done and remove events. Events are
+     * delivered asynchronously with per-subscriber buffers, so a slow subscriber
+     * never holds up a mutation. Use {@link #addListener(TaskListener)} with a
+     * {@link TaskEventPublisher} of your own to choose the executor and buffer size.
+     * The publisher is closed by {@link #close()}, which completes its subscribers;
+     * after that this returns a closed publisher.
+     */
+    public synchronized Flow.Publisher<TaskEvent> events() {
+        if (eventPublisher == null) {
+            eventPublisher = new TaskEventPublisher();
+            if (closed) {
+                eventPublisher.close();
+            } else {
+                addListener(eventPublisher);
+            }
+        }
+        return eventPublisher;
+    }
+
+    /**
+     * Closes the publisher returned by {@link #events()}, completing its subscribers
+     * once they have received the events already buffered. The tasks stay usable.
+     *
+     * @throws IOException never by this class; subclasses may fail to release their own resources
+     */
+    @Override
+    public void close() throws IOException {
+        TaskEventPublisher publisher;
+        synchronized (this) {
+            closed = true;
+            publisher = eventPublisher;
+        }
+        if (publisher != null) {
+            removeListener(publisher);
+            publisher.close();
+        }
     }
     
     /**
@@ -85,20 +248,99 @@ public class TaskManager {
      */
     public Task addTask(String description) {
         Objects.requireNonNull(description, "description must not be null");
-        Task t = new Task(description);
-        synchronized (tasks) {
-            tasks.add(t);
+        Task t = new Task(idGenerator.nextId(), description);
+        Stripe stripe = stripeFor(description);
+        try {
+            synchronized (stripe) {
+                t.sequence = nextSequence.incrementAndGet();
+                link(stripe, t);
+            }
+        } finally {
+            version.incrementAndGet();
         }
         return t;
     }
+
+    /**
+     * Adds one task per description, in iteration order, and returns them.
+     * Descriptions are checked up front, so a null element adds nothing.
+     * Each description stripe is locked once for the whole batch.
+     *
+     * The batch is not atomic with respect to listeners: if a listener throws
+     * from {@link TaskListener#taskAdded(Task)}, the exception propagates, the task
+     * it was called for is not added, and neither are the tasks after it, but the
+     * tasks added before it stay in the manager and are visible to every query.
+     *
+     * @param descriptions non-null descriptions
+     * @return created tasks, in the order of the descriptions
+     */
+    public List<Task> addTasks(Collection<String> descriptions) {
+        Objects.requireNonNull(descriptions, "descriptions must not be null");
+        List<Task> created = new ArrayList<>(descriptions.size());
+        for (String description : descriptions) {
+            created.add(new Task(idGenerator.nextId(), Objects.requireNonNull(description, "description must not be null")));
+        }
+        if (created.isEmpty()) {
+            return Collections.emptyList();
+        }
+        // reserve a contiguous block so the batch keeps its order in listTasks()
+        long sequence = nextSequence.getAndAdd(created.size());
+        for (Task t : created) {
+            t.sequence = ++sequence;
+        }
+        List<List<Task>> byStripe = groupByStripe(created);
+        // a listener that throws leaves the stripes before it linked; listTasks() must still see them
+        try {
+            for (int i = 0; i < STRIPES; i++) {
+                List<Task> batch = byStripe.get(i);
+                if (batch == null) {
+                    continue;
+                }
+                Stripe stripe = stripes[i];
+                synchronized (stripe) {
+                    for (Task t : batch) {
+                        link(stripe, t);
+                    }
+                }
+            }
+        } finally {
+            version.incrementAndGet();
+        }
+        return Collections.unmodifiableList(created);
+    }
     
     /**
-     * Returns an unmodifiable copy of the tasks list to prevent external mutation.
+     * Returns an unmodifiable snapshot of the tasks list to prevent external mutation.
+     * The same instance is handed to every caller until a task is added or removed,
+     * so polling an unchanged manager allocates nothing. The copy is taken without
+     * locking, so it may or may not reflect mutations that run concurrently with the call.
      */
     public List<Task> listTasks() {
-        synchronized (tasks) {
-            return Collections.unmodifiableList(new ArrayList<>(tasks));
+        Snapshot s = snapshot;
+        long v = version.get();
+        if (s != null && s.version == v) {
+            return s.tasks;
         }
+        List<Task> copy = Collections.unmodifiableList(new ArrayList<>(tasks.values()));
+        snapshot = new Snapshot(v, copy);
+        return copy;
+    }
+
+    /**
+     * Applies the action to every task in insertion order without copying the list.
+     * Tasks added or removed during the walk may or may not be visited.
+     */
+    public void forEachTask(Consumer<? super Task> action) {
+        Objects.requireNonNull(action, "action must not be null");
+        tasks.values().forEach(action);
+    }
+
+    /**
+     * Returns a lazy stream over the tasks in insertion order, with the same
+     * weakly consistent view as {@link #forEachTask(Consumer)}.
+     */
+    public Stream<Task> streamTasks() {
+        return tasks.values().stream();
     }
     
     /**
@@ -108,14 +350,16 @@ public class TaskManager {
      */
     public boolean markTaskDone(String description) {
         Objects.requireNonNull(description, "description must not be null");
-        synchronized (tasks) {
-            for (Task t : tasks) {
-                if (t.getDescription().equals(description)) {
-                    t.setDone(true);
-                    return true;
-                }
+        Stripe stripe = stripeFor(description);
+        synchronized (stripe) {
+            Task t = firstWithDescription(stripe, description);
+            if (t == null) {
+                return false;
             }
-            return false;
+            if (t.markDone()) {
+                fireDone(t);
+            }
+            return true;
         }
     }
 
@@ -124,15 +368,8 @@ public class TaskManager {
      */
     public boolean markTaskDone(UUID id) {
         Objects.requireNonNull(id, "id must not be null");
-        synchronized (tasks) {
-            for (Task t : tasks) {
-                if (t.getId().equals(id)) {
-                    t.setDone(true);
-                    return true;
-                }
-            }
-            return false;
-        }
+        Task t = byId.get(id);
+        return t != null && markDone(t);
     }
 
     /**
@@ -142,16 +379,19 @@ public class TaskManager {
      */
     public boolean removeTask(String description) {
         Objects.requireNonNull(description, "description must not be null");
-        synchronized (tasks) {
-            Iterator<Task> it = tasks.iterator();
-            while (it.hasNext()) {
-                if (it.next().getDescription().equals(description)) {
-                    it.remove();
-                    return true;
-                }
+        Stripe stripe = stripeFor(description);
+        synchronized (stripe) {
+            Task t = firstWithDescription(stripe, description);
+            if (t == null) {
+                return false;
+            }
+            try {
+                unlink(stripe, t);
+            } finally {
+                version.incrementAndGet();
             }
-            return false;
         }
+        return true;
     }
 
     /**
@@ -159,16 +399,91 @@ public class TaskManager {
      */
     public boolean removeTask(UUID id) {
         Objects.requireNonNull(id, "id must not be null");
-        synchronized (tasks) {
-            Iterator<Task> it = tasks.iterator();
-            while (it.hasNext()) {
-                if (it.next().getId().equals(id)) {
-                    it.remove();
-                    return true;
+        Task t = byId.get(id);
+        if (t == null) {
+            return false;
+        }
+        Stripe stripe = stripeFor(t.getDescription());
+        synchronized (stripe) {
+            // a concurrent removal may have won between the lookup and the lock
+            if (byId.get(id) != t) {
+                return false;
+            }
+            try {
+                unlink(stripe, t);
+            } finally {
+                version.incrementAndGet();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Marks every task with one of the given ids as done, locking each task's
+     * stripe in turn.
+     *
+     * @return number of ids that matched a task
+     */
+    public int markTasksDone(Collection<UUID> ids) {
+        Objects.requireNonNull(ids, "ids must not be null");
+        int marked = 0;
+        for (UUID id : ids) {
+            Task t = byId.get(Objects.requireNonNull(id, "id must not be null"));
+            if (t != null && markDone(t)) {
+                marked++;
+            }
+        }
+        return marked;
+    }
+
+    /**
+     * Removes every task accepted by the filter. The filter is evaluated without
+     * holding any lock, then each affected stripe is locked once to unlink its matches.
+     *
+     * @return number of tasks removed
+     */
+    public int removeTasks(Predicate<? super Task> filter) {
+        Objects.requireNonNull(filter, "filter must not be null");
+        List<Task> matches = new ArrayList<>();
+        for (Task t : tasks.values()) {
+            if (filter.test(t)) {
+                matches.add(t);
+            }
+        }
+        if (matches.isEmpty()) {
+            return 0;
+        }
+        int removed = 0;
+        List<List<Task>> byStripe = groupByStripe(matches);
+        try {
+            for (int i = 0; i < STRIPES; i++) {
+                List<Task> batch = byStripe.get(i);
+                if (batch == null) {
+                    continue;
+                }
+                Stripe stripe = stripes[i];
+                synchronized (stripe) {
+                    for (Task t : batch) {
+                        if (byId.get(t.getId()) == t) {
+                            unlink(stripe, t);
+                            removed++;
+                        }
+                    }
                 }
             }
-            return false;
+        } finally {
+            version.incrementAndGet();
         }
+        return removed;
+    }
+
+    /**
+     * Removes every task that is marked done.
+     *
+     * @return number of tasks removed
+     */
+    public int removeCompleted() {
+        return removeTasks(Task::isDone);
     }
 
     /**
@@ -176,14 +491,148 @@ public class TaskManager {
      */
     public List<Task> findTasks(String description) {
         Objects.requireNonNull(description, "description must not be null");
-        synchronized (tasks) {
-            List<Task> found = new ArrayList<>();
-            for (Task t : tasks) {
-                if (t.getDescription().equals(description)) {
-                    found.add(t);
-                }
+        Stripe stripe = stripeFor(description);
+        synchronized (stripe) {
+            Set<Task> matches = stripe.byDescription.get(description);
+            if (matches == null) {
+                return Collections.emptyList();
+            }
+            return Collections.unmodifiableList(new ArrayList<>(matches));
+        }
+    }
+
+    /**
+     * Searches task descriptions by keyword. Every word of the query must match a
+     * word of the description, either exactly or as its prefix, ignoring case, so
+     * "rep q" finds "Quarterly report". Exact word matches rank first, then older
+     * tasks before newer ones.
+     *
+     * @param query words to look for
+     * @param limit maximum number of results
+     * @return matching tasks, best first
+     */
+    public List<Task> searchTasks(String query, int limit) {
+        Objects.requireNonNull(query, "query must not be null");
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit must not be negative");
+        }
+        return Collections.unmodifiableList(searchIndex.search(query, limit));
+    }
+
+    private Stripe stripeFor(String description) {
+        return stripes[stripeIndex(description)];
+    }
+
+    private static int stripeIndex(String description) {
+        int h = description.hashCode();
+        return (h ^ (h >>> 16)) & (STRIPES - 1);
+    }
+
+    private List<List<Task>> groupByStripe(List<Task> batch) {
+        List<List<Task>> byStripe = new ArrayList<>(Collections.nCopies(STRIPES, null));
+        for (Task t : batch) {
+            int i = stripeIndex(t.getDescription());
+            if (byStripe.get(i) == null) {
+                byStripe.set(i, new ArrayList<>());
+            }
+            byStripe.get(i).add(t);
+        }
+        return byStripe;
+    }
+
+    // caller must hold the stripe's monitor
+    private static Task firstWithDescription(Stripe stripe, String description) {
+        Set<Task> matches = stripe.byDescription.get(description);
+        return matches == null ? null : matches.iterator().next();
+    }
+
+    // caller must hold the stripe's monitor; the caller bumps the version, even if a listener throws
+    private void link(Stripe stripe, Task t) {
+        for (TaskListener l : listeners) {
+            l.taskAdded(t);
+        }
+        index(stripe, t);
+    }
+
+    // caller must hold the stripe's monitor
+    private void index(Stripe stripe, Task t) {
+        stripe.byDescription.computeIfAbsent(t.getDescription(), d -> new LinkedHashSet<>()).add(t);
+        byId.put(t.getId(), t);
+        tasks.put(t.sequence, t);
+        searchIndex.add(t);
+    }
+
+    // caller must hold the stripe's monitor; the caller bumps the version, even if a listener throws
+    private void unlink(Stripe stripe, Task t) {
+        byId.remove(t.getId());
+        tasks.remove(t.sequence);
+        searchIndex.remove(t);
+        Set<Task> matches = stripe.byDescription.get(t.getDescription());
+        matches.remove(t);
+        if (matches.isEmpty()) {
+            stripe.byDescription.remove(t.getDescription());
+        }
+        for (TaskListener l : listeners) {
+            l.taskRemoved(t);
+        }
+    }
+
+    // false if the task was removed between the id lookup and the lock
+    private boolean markDone(Task t) {
+        Stripe stripe = stripeFor(t.getDescription());
+        synchronized (stripe) {
+            if (byId.get(t.getId()) != t) {
+                return false;
             }
-            return Collections.unmodifiableList(found);
+            if (t.markDone()) {
+                fireDone(t);
+            }
+            return true;
+        }
+    }
+
+    // caller must hold the task's stripe monitor
+    private void fireDone(Task t) {
+        for (TaskListener l : listeners) {
+            l.taskDone(t);
+        }
+    }
+
+    /**
+     * Re-inserts a task with a known id and insertion sequence, as read back from
+     * storage. Does nothing if a task with that id is already present. Listeners
+     * are not notified.
+     */
+    Task restoreTask(UUID id, long sequence, String description) {
+        Task existing = byId.get(id);
+        if (existing != null) {
+            return existing;
+        }
+        Task t = new Task(id, description);
+        Stripe stripe = stripeFor(description);
+        synchronized (stripe) {
+            t.sequence = sequence;
+            nextSequence.accumulateAndGet(sequence, Math::max);
+            index(stripe, t);
+        }
+        version.incrementAndGet();
+        return t;
+    }
+
+    /**
+     * Runs the action while holding every stripe lock, so no task can be added or
+     * removed or marked done until it returns.
+     */
+    <T> T withAllStripesLocked(Supplier<T> action) {
+        return lockStripesFrom(0, action);
+    }
+
+    private <T> T lockStripesFrom(int i, Supplier<T> action) {
+        if (i == STRIPES) {
+            return action.get();
+        }
+        synchronized (stripes[i]) {
+            return lockStripesFrom(i + 1, action);
         }
     }
 
@@ -0,0 +1,335 @@
+package com.uday.copilot;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.uday.copilot.TaskManager.Task;
+
+/**
+ * Runs work attached to tasks of a {@link TaskManager}.
+ *
+ * Each submitted job adds a task to the manager, waits until the jobs it depends
+ * on have finished, then queues by priority for one of a bounded number of
+ * execution slots. When the work completes normally its task is marked done; if
+ * it throws, the task stays open and every job depending on it fails without
+ * running. By default work runs on a work-stealing pool sized to the machine;
+ * any executor can be supplied instead, e.g. a virtual-thread-per-task executor.
+ *
+ * Finished tasks stay in the manager until removed, e.g. with
+ * {@link TaskManager#removeCompleted()}.
+ */
+public class TaskScheduler implements AutoCloseable {
+
+    /**
+     * A unit of work bound to a task.
+     */
+    public static final class Job<T> {
+        private final Task task;
+        private final Callable<T> work;
+        private final int priority;
+        private final long order;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        // dependencies still running, plus one held until submit() has registered them all
+        private final AtomicInteger unfinished = new AtomicInteger(1);
+        private volatile Throwable failedDependency;
+        private long readyAt;
+        // guarded by this
+        private boolean finished;
+        private Throwable error;
+        private List<Job<?>> dependents = new ArrayList<>();
+
+        private Job(Task task, Callable<T> work, int priority, long order) {
+            this.task = task;
+            this.work = work;
+            this.priority = priority;
+            this.order = order;
+        }
+
+        public Task getTask() {
+            return task;
+        }
+
+        public int getPriority() {
+            return priority;
+        }
+
+        /**
+         * Returns a future completed with the work's result once it has run.
+         */
+        public CompletableFuture<T> result() {
+            return result.copy();
+        }
+    }
+
+    private static final Comparator<Job<?>> BY_PRIORITY =
+            Comparator.<Job<?>>comparingInt(j -> -j.priority).thenComparingLong(j -> j.order);
+
+    private final TaskManager manager;
+    private final Executor executor;
+    private final ExecutorService ownedExecutor;
+    private final int maxConcurrency;
+    private final PriorityBlockingQueue<Job<?>> ready = new PriorityBlockingQueue<>(64, BY_PRIORITY);
+    private final AtomicLong nextOrder = new AtomicLong();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger blocked = new AtomicInteger();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder started = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder runNanos = new LongAdder();
+
+    /**
+     * Creates a scheduler running up to one job per processor on its own
+     * work-stealing pool.
+     */
+    public TaskScheduler(TaskManager manager) {
+        this(manager, Executors.newWorkStealingPool(), Runtime.getRuntime().availableProcessors(), true);
+    }
+
+    /**
+     * Creates a scheduler that runs at most {@code maxConcurrency} jobs at a time on
+     * the given executor. The executor is not shut down by {@link #close()}.
+     */
+    public TaskScheduler(TaskManager manager, Executor executor, int maxConcurrency) {
+        this(manager, executor, maxConcurrency, false);
+    }
+
+    private TaskScheduler(TaskManager manager, Executor executor, int maxConcurrency, boolean owned) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("maxConcurrency must be positive");
+        }
+        this.manager = Objects.requireNonNull(manager, "manager must not be null");
+        this.executor = Objects.requireNonNull(executor, "executor must not be null");
+        this.ownedExecutor = owned ? (ExecutorService) executor : null;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * Submits work with default priority and no dependencies.
+     */
+    public Job<Void> submit(String description, Runnable work) {
+        Objects.requireNonNull(work, "work must not be null");
+        return submit(description, () -> {
+            work.run();
+            return null;
+        }, 0, Collections.emptyList());
+    }
+
+    /**
+     * Submits work with default priority and no dependencies.
+     */
+    public <T> Job<T> submit(String description, Callable<T> work) {
+        return submit(description, work, 0, Collections.emptyList());
+    }
+
+    /**
+     * Adds a task for the work and schedules it to run once every dependency has
+     * completed normally. Among ready jobs, higher priorities run first and equal
+     * priorities run in submission order.
+     *
+     * @param description description of the task added to the manager
+     * @param work the work to run
+     * @param priority larger values run earlier
+     * @param dependencies jobs of this scheduler that must complete first
+     */
+    public <T> Job<T> submit(String description, Callable<T> work, int priority, Collection<? extends Job<?>> dependencies) {
+        Objects.requireNonNull(work, "work must not be null");
+        Objects.requireNonNull(dependencies, "dependencies must not be null");
+        Task task = manager.addTask(description);
+        Job<T> job = new Job<>(task, work, priority, nextOrder.incrementAndGet());
+        blocked.incrementAndGet();
+        for (Job<?> dependency : dependencies) {
+            synchronized (dependency) {
+                if (!dependency.finished) {
+                    job.unfinished.incrementAndGet();
+                    dependency.dependents.add(job);
+                } else if (dependency.error != null) {
+                    job.failedDependency = dependency.error;
+                }
+            }
+        }
+        ArrayDeque<Job<?>> failing = new ArrayDeque<>();
+        dependencyFinished(job, failing);
+        failAll(failing);
+        return job;
+    }
+
+    /**
+     * Returns the number of jobs ready to run and waiting for a slot.
+     */
+    public int queueDepth() {
+        return ready.size();
+    }
+
+    /**
+     * Returns the number of jobs still waiting for their dependencies.
+     */
+    public int blockedCount() {
+        return blocked.get();
+    }
+
+    /**
+     * Returns the number of jobs currently running.
+     */
+    public int runningCount() {
+        return running.get();
+    }
+
+    /**
+     * Returns the number of jobs whose work completed normally.
+     */
+    public long completedCount() {
+        return completed.sum();
+    }
+
+    /**
+     * Returns the number of jobs that threw or whose dependencies failed.
+     */
+    public long failedCount() {
+        return failed.sum();
+    }
+
+    /**
+     * Returns the mean time jobs spent between becoming ready and starting.
+     */
+    public long averageWaitNanos() {
+        long n = started.sum();
+        return n == 0 ? 0 : waitNanos.sum() / n;
+    }
+
+    /**
+     * Returns the mean time jobs spent running.
+     */
+    public long averageRunNanos() {
+        long n = started.sum();
+        return n == 0 ? 0 : runNanos.sum() / n;
+    }
+
+    /**
+     * Shuts down the scheduler's own pool, if it created one. Jobs that have not
+     * started by then fail.
+     */
+    @Override
+    public void close() {
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+        }
+    }
+
+    // a job whose dependencies failed goes on the failing list instead of being finished here
+    private void dependencyFinished(Job<?> job, ArrayDeque<Job<?>> failing) {
+        if (job.unfinished.decrementAndGet() != 0) {
+            return;
+        }
+        blocked.decrementAndGet();
+        if (job.failedDependency != null) {
+            failing.add(job);
+            return;
+        }
+        job.readyAt = System.nanoTime();
+        ready.add(job);
+        dispatch();
+    }
+
+    // starts ready jobs while there are free slots
+    private void dispatch() {
+        while (!ready.isEmpty()) {
+            int r = running.get();
+            if (r >= maxConcurrency) {
+                return;
+            }
+            if (!running.compareAndSet(r, r + 1)) {
+                continue;
+            }
+            Job<?> job = ready.poll();
+            if (job == null) {
+                running.decrementAndGet();
+                continue;
+            }
+            try {
+                executor.execute(() -> run(job));
+            } catch (RejectedExecutionException e) {
+                running.decrementAndGet();
+                finish(job, null, e);
+            }
+        }
+    }
+
+    private <T> void run(Job<T> job) {
+        long start = System.nanoTime();
+        waitNanos.add(start - job.readyAt);
+        started.increment();
+        try {
+            T value = job.work.call();
+            runNanos.add(System.nanoTime() - start);
+            finish(job, value, null);
+        } catch (Throwable e) {
+            runNanos.add(System.nanoTime() - start);
+            finish(job, null, e);
+        } finally {
+            running.decrementAndGet();
+            dispatch();
+        }
+    }
+
+    private <T> void finish(Job<T> job, T value, Throwable error) {
+        if (error == null) {
+            // before dependents can start, so they always see their dependencies done
+            manager.markTaskDone(job.task.getId());
+        }
+        ArrayDeque<Job<?>> failing = new ArrayDeque<>();
+        release(complete(job, value, error), error, failing);
+        failAll(failing);
+    }
+
+    // fails the listed jobs and, in turn, their dependents; a worklist rather than recursion, so a
+    // long chain of dependents cannot overflow the stack
+    private void failAll(ArrayDeque<Job<?>> failing) {
+        for (Job<?> job = failing.poll(); job != null; job = failing.poll()) {
+            release(complete(job, null, job.failedDependency), job.failedDependency, failing);
+        }
+    }
+
+    private void release(List<Job<?>> dependents, Throwable error, ArrayDeque<Job<?>> failing) {
+        for (Job<?> dependent : dependents) {
+            if (error != null) {
+                dependent.failedDependency = error;
+            }
+            dependencyFinished(dependent, failing);
+        }
+    }
+
+    // records the outcome and returns the dependents to release
+    private <T> List<Job<?>> complete(Job<T> job, T value, Throwable error) {
+        List<Job<?>> dependents;
+        synchronized (job) {
+            job.finished = true;
+            job.error = error;
+            dependents = job.dependents;
+            job.dependents = null;
+        }
+        if (error == null) {
+            completed.increment();
+            job.result.complete(value);
+        } else {
+            failed.increment();
+            job.result.completeExceptionally(error);
+        }
+        return dependents;
+    }
+}
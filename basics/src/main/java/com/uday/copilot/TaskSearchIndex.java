@@ -0,0 +1,234 @@
+package com.uday.copilot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Stream;
+
+import com.uday.copilot.TaskManager.Task;
+
+/**
+ * Inverted index from description words to tasks, kept up to date by
+ * {@link TaskManager} as tasks are added and removed.
+ *
+ * Descriptions are split into lower-case words at every character that is not a
+ * letter or digit. Each word maps to the set of tasks containing it, and a sorted
+ * vocabulary of all words answers prefix lookups by range. A query matches a task
+ * when every query word is a word of the task or a prefix of one; exact word
+ * matches rank above prefix matches, and ties go to the older task.
+ *
+ * The words of each task are kept alongside the postings, so scoring a candidate
+ * never tokenizes its description again. A search scores at most
+ * {@value #MAX_CANDIDATES} candidates, taking the tasks with the rarest query word
+ * itself before those with longer words it is a prefix of; a query matching more
+ * tasks than that ranks the ones it scored.
+ */
+final class TaskSearchIndex {
+
+    private static final int EXACT = 2;
+    private static final int PREFIX = 1;
+    static final int MAX_CANDIDATES = 1_000;
+    // lower scores first, then newer tasks; written out rather than composed, as every candidate is compared
+    private static final Comparator<Scored> WORST_FIRST = (a, b) -> {
+        int c = Integer.compare(a.score, b.score);
+        return c != 0 ? c : Long.compare(b.task.sequence, a.task.sequence);
+    };
+
+    private final Map<String, Set<Task>> postings = new ConcurrentHashMap<>();
+    // every word that currently has postings, for prefix ranges
+    private final NavigableSet<String> vocabulary = new ConcurrentSkipListSet<>();
+    // the distinct words of each indexed task
+    private final Map<Task, String[]> words = new ConcurrentHashMap<>();
+
+    void add(Task t) {
+        String[] taskWords = tokenize(t.getDescription()).toArray(new String[0]);
+        words.put(t, taskWords);
+        for (String word : taskWords) {
+            postings.compute(word, (w, tasks) -> {
+                if (tasks == null) {
+                    tasks = ConcurrentHashMap.newKeySet();
+                    vocabulary.add(w);
+                }
+                tasks.add(t);
+                return tasks;
+            });
+        }
+    }
+
+    void remove(Task t) {
+        String[] taskWords = words.remove(t);
+        if (taskWords == null) {
+            return;
+        }
+        for (String word : taskWords) {
+            postings.computeIfPresent(word, (w, tasks) -> {
+                tasks.remove(t);
+                if (tasks.isEmpty()) {
+                    vocabulary.remove(w);
+                    return null;
+                }
+                return tasks;
+            });
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} tasks matching every word of the query, best first.
+     */
+    List<Task> search(String query, int limit) {
+        Set<String> terms = tokenize(query);
+        if (terms.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        // drive the search from the term with the fewest candidate tasks
+        String driver = null;
+        long fewest = Long.MAX_VALUE;
+        for (String term : terms) {
+            // beyond the candidates a search scores, broader terms are all alike
+            long count = candidateCount(term, Math.min(fewest, MAX_CANDIDATES + 1L));
+            if (count < fewest) {
+                fewest = count;
+                driver = term;
+            }
+        }
+        if (fewest == 0) {
+            return Collections.emptyList();
+        }
+
+        // the driver is scored by the word it is found under, the other terms against the task's words
+        List<String> others = new ArrayList<>(terms);
+        others.remove(driver);
+        String[] otherTerms = others.toArray(new String[0]);
+        List<Set<Task>> exact = new ArrayList<>(otherTerms.length);
+        for (String term : otherTerms) {
+            exact.add(postings.get(term));
+        }
+        int topScore = EXACT * terms.size();
+        PriorityQueue<Scored> best = new PriorityQueue<>(WORST_FIRST);
+        Set<Task> seen = new HashSet<>();
+        // the driver word itself first, then the longer words it is a prefix of
+        String first = driver;
+        Iterator<String> driverWords = Stream.concat(Stream.of(first),
+                vocabulary.subSet(first, false, first + Character.MAX_VALUE, false).stream()).iterator();
+        scan:
+        while (driverWords.hasNext()) {
+            String word = driverWords.next();
+            Set<Task> tasks = postings.get(word);
+            if (tasks == null) {
+                continue;
+            }
+            int driverScore = word.equals(driver) ? EXACT : PREFIX;
+            if (driverScore == PREFIX && best.size() == limit && best.peek().score == topScore) {
+                // a task with the driver only as a prefix cannot outrank these
+                break;
+            }
+            for (Task t : tasks) {
+                if (!seen.add(t)) {
+                    continue;
+                }
+                if (seen.size() > MAX_CANDIDATES) {
+                    break scan;
+                }
+                int rest = score(t, otherTerms, exact);
+                if (rest < 0) {
+                    continue;
+                }
+                Scored candidate = new Scored(t, driverScore + rest);
+                if (best.size() < limit) {
+                    best.add(candidate);
+                } else if (WORST_FIRST.compare(candidate, best.peek()) > 0) {
+                    best.poll();
+                    best.add(candidate);
+                }
+            }
+        }
+        List<Task> ranked = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            ranked.add(best.poll().task);
+        }
+        Collections.reverse(ranked);
+        return ranked;
+    }
+
+    // number of tasks indexed under words starting with the term, counting no further than the cap
+    private long candidateCount(String term, long cap) {
+        long count = 0;
+        for (String word : vocabulary.subSet(term, true, term + Character.MAX_VALUE, false)) {
+            Set<Task> tasks = postings.get(word);
+            if (tasks != null) {
+                count += tasks.size();
+                if (count >= cap) {
+                    break;
+                }
+            }
+        }
+        return count;
+    }
+
+    // -1 unless every term matches some word of the task; exact holds each term's postings, or null
+    private int score(Task t, String[] terms, List<Set<Task>> exact) {
+        if (terms.length == 0) {
+            return 0;
+        }
+        String[] taskWords = words.get(t);
+        if (taskWords == null) {
+            return -1;
+        }
+        int total = 0;
+        for (int i = 0; i < terms.length; i++) {
+            Set<Task> withTerm = exact.get(i);
+            int best = 0;
+            if (withTerm != null && withTerm.contains(t)) {
+                best = EXACT;
+            } else {
+                for (String word : taskWords) {
+                    if (word.startsWith(terms[i])) {
+                        best = PREFIX;
+                        break;
+                    }
+                }
+            }
+            if (best == 0) {
+                return -1;
+            }
+            total += best;
+        }
+        return total;
+    }
+
+    static Set<String> tokenize(String text) {
+        Set<String> words = new LinkedHashSet<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                words.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    private static final class Scored {
+        final Task task;
+        final int score;
+
+        Scored(Task task, int score) {
+            this.task = task;
+            this.score = score;
+        }
+    }
+}
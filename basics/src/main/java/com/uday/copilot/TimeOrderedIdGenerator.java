@@ -0,0 +1,44 @@
+package com.uday.copilot;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates version 7 UUIDs: a 48-bit Unix millisecond timestamp followed by a
+ * 12-bit counter and 62 random bits. The timestamp and counter only ever move
+ * forward, so ids from one generator are unique and {@link UUID#compareTo(UUID)}
+ * sorts them by creation time. Random bits come from {@link ThreadLocalRandom},
+ * which never blocks on entropy the way {@link UUID#randomUUID()} can.
+ */
+public final class TimeOrderedIdGenerator implements TaskIdGenerator {
+
+    static final TimeOrderedIdGenerator INSTANCE = new TimeOrderedIdGenerator();
+
+    // millisecond timestamp << 12 | counter of the last id handed out
+    private final AtomicLong last = new AtomicLong();
+
+    @Override
+    public UUID nextId() {
+        long now = System.currentTimeMillis() << 12;
+        // if the clock has not moved (or went backwards) bump the counter; when the
+        // counter overflows it carries into the timestamp, which keeps order intact
+        long stamp = last.updateAndGet(prev -> Math.max(prev + 1, now));
+        long msb = ((stamp >>> 12) << 16) | 0x7000L | (stamp & 0xFFFL);
+        long lsb = (ThreadLocalRandom.current().nextLong() & 0x3FFF_FFFF_FFFF_FFFFL) | 0x8000_0000_0000_0000L;
+        return new UUID(msb, lsb);
+    }
+
+    /**
+     * Returns the creation time encoded in a version 7 id.
+     *
+     * @throws IllegalArgumentException if the id is not a version 7 UUID
+     */
+    public static Instant timestampOf(UUID id) {
+        if (id.version() != 7) {
+            throw new IllegalArgumentException("not a time-ordered id: " + id);
+        }
+        return Instant.ofEpochMilli(id.getMostSignificantBits() >>> 16);
+    }
+}
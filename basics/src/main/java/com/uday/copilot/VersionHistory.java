@@ -0,0 +1,114 @@
+package com.uday.copilot;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Undo history behind {@link InventorySnapshot}, kept by {@link InventoryManager}
+ * while any snapshot is open.
+ *
+ * Before a product changes, the manager records the version it is overwriting as
+ * a new head of that id's chain of undo entries, newest first, each stamped with a
+ * fresh version number. A snapshot taken at version v reads a product by looking
+ * at the current value and then at the chain: the value it had at v is the one
+ * saved by the oldest entry newer than v, or the current value if there is no such
+ * entry. Because entries are recorded before the store changes and readers look at
+ * the store before the chain, a reader that sees a newer value always finds the
+ * entry undoing it.
+ *
+ * Entries no open snapshot can need are dropped when a snapshot closes.
+ */
+final class VersionHistory {
+
+    static final class Undo {
+        final long version;
+        final Product before;
+        // newest first; cut off once no open snapshot can reach past this entry
+        volatile Undo older;
+
+        Undo(long version, Product before, Undo older) {
+            this.version = version;
+            this.before = before;
+            this.older = older;
+        }
+    }
+
+    private final Map<Integer, Undo> chains = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+    // open snapshot versions and how many snapshots hold each; guarded by this
+    private final TreeMap<Long, Integer> open = new TreeMap<>();
+    private volatile int openCount;
+
+    /**
+     * Returns whether changes must be recorded, i.e. whether any snapshot is open.
+     */
+    boolean recording() {
+        return openCount > 0;
+    }
+
+    /**
+     * Records the product about to be replaced or removed; null if the id is new.
+     * The caller holds the id's write lock.
+     */
+    void record(int id, Product before) {
+        long v = version.incrementAndGet();
+        chains.compute(id, (key, head) -> new Undo(v, before, head));
+    }
+
+    /**
+     * Registers a snapshot of the current state and returns its version. The
+     * caller holds every write lock, so no change is half recorded.
+     */
+    synchronized long open() {
+        long v = version.get();
+        open.merge(v, 1, Integer::sum);
+        openCount++;
+        return v;
+    }
+
+    void close(long snapshotVersion) {
+        long oldest;
+        synchronized (this) {
+            open.computeIfPresent(snapshotVersion, (v, count) -> count == 1 ? null : count - 1);
+            openCount--;
+            // a snapshot opened after this point gets at least the current version
+            oldest = open.isEmpty() ? version.get() : open.firstKey();
+        }
+        // entries no newer than the oldest snapshot that is or may yet be open are never read again
+        for (Integer id : chains.keySet()) {
+            chains.computeIfPresent(id, (key, head) -> {
+                if (head.version <= oldest) {
+                    return null;
+                }
+                Undo u = head;
+                while (u.older != null && u.older.version > oldest) {
+                    u = u.older;
+                }
+                u.older = null;
+                return head;
+            });
+        }
+    }
+
+    /**
+     * Returns the product with the id as of the snapshot version, given its current
+     * value read from the store just before.
+     */
+    Product resolve(int id, Product current, long snapshotVersion) {
+        Product value = current;
+        for (Undo u = chains.get(id); u != null && u.version > snapshotVersion; u = u.older) {
+            value = u.before;
+        }
+        return value;
+    }
+
+    /**
+     * Returns the ids with recorded changes.
+     */
+    Set<Integer> changedIds() {
+        return chains.keySet();
+    }
+}
@@ -0,0 +1,45 @@
+package com.uday.copilot.clinical.controller;
+
+import com.uday.copilot.clinical.dto.ObservationInput;
+import com.uday.copilot.clinical.service.ObservationIngestService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@RestController
+@RequestMapping("/api/observations")
+public class ObservationController {
+
+    static final int MAX_BATCH = 10_000;
+
+    private final ObservationIngestService ingestService;
+
+    public ObservationController(ObservationIngestService ingestService) {
+        this.ingestService = ingestService;
+    }
+
+    /**
+     * Inserts up to {@link #MAX_BATCH} observations, for any number of patients, in
+     * one transaction. Nothing is inserted if any patient does not exist; the
+     * response then lists the missing patient ids.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<Map<String, Object>> addObservations(@RequestBody List<ObservationInput> observations) {
+        if (observations.isEmpty() || observations.size() > MAX_BATCH) {
+            return ResponseEntity.badRequest().body(Map.of("error", "batch must hold 1 to " + MAX_BATCH + " observations"));
+        }
+        for (ObservationInput o : observations) {
+            if (o == null || o.patientId() == null) {
+                return ResponseEntity.badRequest().body(Map.of("error", "every observation needs a patientId"));
+            }
+        }
+        Set<Long> missing = ingestService.findMissingPatients(observations);
+        if (!missing.isEmpty()) {
+            return ResponseEntity.unprocessableEntity().body(Map.of("missingPatientIds", missing));
+        }
+        return ResponseEntity.ok(Map.of("inserted", ingestService.insertAll(observations)));
+    }
+}
@@ -1,57 +1,187 @@
 package com.uday.copilot.clinical.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.uday.copilot.clinical.dto.ObservationInput;
+import com.uday.copilot.clinical.dto.ObservationView;
+import com.uday.copilot.clinical.dto.PatientView;
 import com.uday.copilot.clinical.model.Observation;
 import com.uday.copilot.clinical.model.Patient;
 import com.uday.copilot.clinical.repository.ObservationRepository;
 import com.uday.copilot.clinical.repository.PatientRepository;
+import com.uday.copilot.clinical.service.ObservationWriteBehind;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 @RestController
 @RequestMapping("/api/patients")
 public class PatientController {
 
+    static final int DEFAULT_PAGE_SIZE = 100;
+    static final int MAX_PAGE_SIZE = 1000;
+    static final int MAX_SERIES_BUCKETS = 10_000;
+    // rows written between flushes of a streamed listing
+    private static final int STREAM_FLUSH_EVERY = 500;
+
     private final PatientRepository patientRepository;
     private final ObservationRepository observationRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTransaction;
+    // null unless clinical.ingest.async.enabled
+    private final ObservationWriteBehind writeBehind;
 
-    public PatientController(PatientRepository patientRepository, ObservationRepository observationRepository) {
+    public PatientController(PatientRepository patientRepository, ObservationRepository observationRepository,
+                             ObjectMapper objectMapper, PlatformTransactionManager transactionManager,
+                             ObjectProvider<ObservationWriteBehind> writeBehind) {
         this.patientRepository = patientRepository;
         this.observationRepository = observationRepository;
+        this.objectMapper = objectMapper;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.writeBehind = writeBehind.getIfAvailable();
     }
 
     @PostMapping
-    public ResponseEntity<Patient> createPatient(@RequestBody Patient patient) {
+    public ResponseEntity<PatientView> createPatient(@RequestBody Patient patient) {
         Patient saved = patientRepository.save(patient);
-        return ResponseEntity.created(URI.create("/api/patients/" + saved.getId())).body(saved);
+        return ResponseEntity.created(URI.create("/api/patients/" + saved.getId())).body(PatientView.of(saved));
     }
 
+    /**
+     * One page of patients in id order, starting after the id given as {@code after}.
+     * When the page is full, a {@code Link: <...>; rel="next"} header gives the URL
+     * of the next page.
+     */
     @GetMapping
-    public List<Patient> listPatients() {
-        return patientRepository.findAll();
+    public ResponseEntity<List<PatientView>> listPatients(@RequestParam(defaultValue = "0") long after,
+                                                          @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+        List<PatientView> page = patientRepository.findPageAfter(after, PageRequest.ofSize(limit));
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.size() == limit) {
+            long last = page.get(page.size() - 1).id();
+            response.header(HttpHeaders.LINK, "</api/patients?after=" + last + "&limit=" + limit + ">; rel=\"next\"");
+        }
+        return response.body(page);
+    }
+
+    /**
+     * Every patient after the id given as {@code after}, in id order, as
+     * newline-delimited JSON. Rows are written as the database returns them, so
+     * memory use does not grow with the number of patients.
+     */
+    @GetMapping(params = "format=ndjson")
+    public ResponseEntity<StreamingResponseBody> streamPatients(@RequestParam(defaultValue = "0") long after) {
+        StreamingResponseBody body = out -> readOnlyTransaction.executeWithoutResult(status -> {
+            try (Stream<PatientView> rows = patientRepository.streamAfter(after)) {
+                int written = 0;
+                for (PatientView row : (Iterable<PatientView>) rows::iterator) {
+                    out.write(objectMapper.writeValueAsBytes(row));
+                    out.write('\n');
+                    if (++written % STREAM_FLUSH_EVERY == 0) {
+                        out.flush();
+                    }
+                }
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<Patient> getPatient(@PathVariable Long id) {
-        return patientRepository.findById(id)
+    public ResponseEntity<PatientView> getPatient(@PathVariable Long id) {
+        return patientRepository.findViewById(id)
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    /**
+     * Stores an observation and answers 201 with it. With write-behind enabled,
+     * answers 202 with {@code {"sequence": n}} as soon as the observation is queued,
+     * or 429 when the queue is full.
+     */
     @PostMapping("/{id}/observations")
-    public ResponseEntity<Observation> addObservation(@PathVariable Long id, @RequestBody Observation observation) {
+    public ResponseEntity<?> addObservation(@PathVariable Long id, @RequestBody Observation observation) {
+        if (writeBehind != null) {
+            if (!patientRepository.existsById(id)) return ResponseEntity.notFound().build();
+            long sequence = writeBehind.submit(new ObservationInput(id, observation.getType(), observation.getValue(),
+                    observation.getUnit(), observation.getObservedAt()));
+            if (sequence < 0) {
+                return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header(HttpHeaders.RETRY_AFTER, "1").build();
+            }
+            return ResponseEntity.accepted().body(Map.of("sequence", sequence));
+        }
         return patientRepository.findById(id).map(patient -> {
             observation.setPatient(patient);
             Observation saved = observationRepository.save(observation);
-            return ResponseEntity.created(URI.create("/api/patients/" + id + "/observations/" + saved.getId())).body(saved);
+            return ResponseEntity.created(URI.create("/api/patients/" + id + "/observations/" + saved.getId()))
+                    .body(ObservationView.of(saved));
         }).orElse(ResponseEntity.notFound().build());
     }
 
     @GetMapping("/{id}/observations")
-    public ResponseEntity<List<Observation>> getObservations(@PathVariable Long id) {
+    public ResponseEntity<List<ObservationView>> getObservations(@PathVariable Long id) {
         if (!patientRepository.existsById(id)) return ResponseEntity.notFound().build();
         return ResponseEntity.ok(observationRepository.findByPatientId(id));
     }
+
+    /**
+     * One type of the patient's observations from {@code from} up to {@code to},
+     * as the count, minimum, maximum and average value of each {@code bucket}-long
+     * interval, e.g. {@code ?type=heart-rate&from=2024-01-01T00:00:00Z&to=2024-01-02T00:00:00Z&bucket=PT5M}.
+     * Buckets must be at least a second long and at most {@link #MAX_SERIES_BUCKETS}
+     * of them may fit in the range. Answers 400 with an {@code error} if a value in
+     * the range is not a number.
+     */
+    @GetMapping("/{id}/observations/series")
+    public ResponseEntity<?> getObservationSeries(@PathVariable Long id, @RequestParam String type,
+                                                  @RequestParam Instant from, @RequestParam Instant to,
+                                                  @RequestParam Duration bucket) {
+        if (!to.isAfter(from) || bucket.getSeconds() < 1
+                || Duration.between(from, to).dividedBy(bucket) >= MAX_SERIES_BUCKETS) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (!patientRepository.existsById(id)) return ResponseEntity.notFound().build();
+        try {
+            return ResponseEntity.ok(observationRepository.findSeries(id, type, from, to, bucket));
+        } catch (DataAccessException e) {
+            if (!isDataException(e)) {
+                throw e;
+            }
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "observations of type '" + type + "' in this range have non-numeric values"));
+        }
+    }
+
+    // true if the database rejected a value, as it does for a cast of text that is not a number (SQLState class 22)
+    private static boolean isDataException(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLException sql && sql.getSQLState() != null && sql.getSQLState().startsWith("22")) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -0,0 +1,9 @@
+package com.uday.copilot.clinical.dto;
+
+import java.time.Instant;
+
+/**
+ * The numeric observations that fell into one interval of a time series, starting at {@code start}.
+ */
+public record ObservationBucket(Instant start, long count, double min, double max, double avg) {
+}
@@ -0,0 +1,9 @@
+package com.uday.copilot.clinical.dto;
+
+import java.time.Instant;
+
+/**
+ * One observation in a bulk upload, naming its patient by id.
+ */
+public record ObservationInput(Long patientId, String type, String value, String unit, Instant observedAt) {
+}
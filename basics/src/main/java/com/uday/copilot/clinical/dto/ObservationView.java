@@ -0,0 +1,18 @@
+package com.uday.copilot.clinical.dto;
+
+import com.uday.copilot.clinical.model.Observation;
+
+import java.time.Instant;
+
+/**
+ * An observation as returned by the API, with its patient as an id rather than
+ * the patient entity, so rendering it never loads the patient or walks back
+ * into the patient's observations.
+ */
+public record ObservationView(Long id, Long patientId, String type, String value, String unit, Instant observedAt) {
+
+    public static ObservationView of(Observation observation) {
+        return new ObservationView(observation.getId(), observation.getPatient().getId(), observation.getType(),
+                observation.getValue(), observation.getUnit(), observation.getObservedAt());
+    }
+}
@@ -0,0 +1,18 @@
+package com.uday.copilot.clinical.dto;
+
+import com.uday.copilot.clinical.model.Patient;
+
+import java.time.LocalDate;
+
+/**
+ * A patient as listed by the API: the patient's own columns, without observations.
+ * Selected straight into this record by JPQL constructor expressions, so listing
+ * patients never loads or tracks entities.
+ */
+public record PatientView(Long id, String firstName, String lastName, LocalDate dateOfBirth, String gender) {
+
+    public static PatientView of(Patient patient) {
+        return new PatientView(patient.getId(), patient.getFirstName(), patient.getLastName(),
+                patient.getDateOfBirth(), patient.getGender());
+    }
+}
@@ -4,10 +4,17 @@ import jakarta.persistence.*;
 import java.time.Instant;
 
 @Entity
-@Table(name = "observations")
+// serves time-series queries: one patient's observations of one type, in time order
+@Table(name = "observations", indexes = @Index(name = "idx_observations_patient_type_observed_at",
+        columnList = "patient_id, type, observed_at"))
 public class Observation {
+    // ids come from a sequence in blocks of ALLOCATION_SIZE, so inserts need no round trip per row and
+    // can be batched; an existing database must have the sequence advanced past max(id) once
+    public static final int ALLOCATION_SIZE = 500;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "observations_seq")
+    @SequenceGenerator(name = "observations_seq", sequenceName = "observations_seq", allocationSize = ALLOCATION_SIZE)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -1,10 +1,59 @@
 package com.uday.copilot.clinical.repository;
 
+import com.uday.copilot.clinical.dto.ObservationBucket;
+import com.uday.copilot.clinical.dto.ObservationView;
 import com.uday.copilot.clinical.model.Observation;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 
 public interface ObservationRepository extends JpaRepository<Observation, Long> {
-    List<Observation> findByPatientId(Long patientId);
+
+    /**
+     * The patient's observations, oldest first, in one query that reads the
+     * patient id from the foreign key column without joining the patient.
+     */
+    @Query("select new com.uday.copilot.clinical.dto.ObservationView(o.id, o.patient.id, o.type, o.value, o.unit, o.observedAt) "
+            + "from Observation o where o.patient.id = :patientId order by o.observedAt, o.id")
+    List<ObservationView> findByPatientId(@Param("patientId") Long patientId);
+
+    /**
+     * One type of the patient's observations in {@code [from, to)}, downsampled in
+     * the database to the count, minimum, maximum and average value of each
+     * {@code bucket}-long interval counted from {@code from}, oldest first. Intervals
+     * without observations are left out. Observations without a value are skipped;
+     * a value that is not a number fails the query with a data exception
+     * (SQLState class 22).
+     */
+    default List<ObservationBucket> findSeries(Long patientId, String type, Instant from, Instant to, Duration bucket) {
+        double fromEpoch = from.getEpochSecond() + from.getNano() / 1e9;
+        double bucketSeconds = bucket.toNanos() / 1e9;
+        List<Object[]> rows = aggregateSeries(patientId, type, from, to, fromEpoch, bucketSeconds);
+        List<ObservationBucket> series = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            series.add(new ObservationBucket(from.plus(bucket.multipliedBy(((Number) row[0]).longValue())),
+                    ((Number) row[1]).longValue(), ((Number) row[2]).doubleValue(),
+                    ((Number) row[3]).doubleValue(), ((Number) row[4]).doubleValue()));
+        }
+        return series;
+    }
+
+    // rows of bucket number, count, min, max and average; the bucket is computed in a subquery so the
+    // grouping does not depend on the database matching bound parameters between select and group by.
+    // The parameters are cast so the database types the division as floating point and keeps the floor
+    @Query(nativeQuery = true, value = "select s.bucket, count(*), min(s.v), max(s.v), avg(s.v) from ("
+            + "select cast(floor((extract(epoch from o.observed_at) - cast(:fromEpoch as double precision)) "
+            + "/ cast(:bucketSeconds as double precision)) as bigint) as bucket, "
+            + "cast(o.value as double precision) as v from observations o "
+            + "where o.patient_id = :patientId and o.type = :type "
+            + "and o.observed_at >= :from and o.observed_at < :to and o.value is not null"
+            + ") s group by s.bucket order by s.bucket")
+    List<Object[]> aggregateSeries(@Param("patientId") Long patientId, @Param("type") String type,
+                                   @Param("from") Instant from, @Param("to") Instant to,
+                                   @Param("fromEpoch") double fromEpoch, @Param("bucketSeconds") double bucketSeconds);
 }
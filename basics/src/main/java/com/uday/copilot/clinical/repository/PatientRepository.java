@@ -1,7 +1,46 @@
 package com.uday.copilot.clinical.repository;
 
+import com.uday.copilot.clinical.dto.PatientView;
 import com.uday.copilot.clinical.model.Patient;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 public interface PatientRepository extends JpaRepository<Patient, Long> {
+
+    @Query("select new com.uday.copilot.clinical.dto.PatientView(p.id, p.firstName, p.lastName, p.dateOfBirth, p.gender) "
+            + "from Patient p where p.id = :id")
+    Optional<PatientView> findViewById(@Param("id") Long id);
+
+    @Query("select p.id from Patient p where p.id in :ids")
+    Set<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Patients with an id above {@code after}, in id order, as many as the pageable's
+     * page size. Seeks on the primary key instead of skipping rows, so every page
+     * costs the same however deep it is.
+     */
+    @Query("select new com.uday.copilot.clinical.dto.PatientView(p.id, p.firstName, p.lastName, p.dateOfBirth, p.gender) "
+            + "from Patient p where p.id > :after order by p.id")
+    List<PatientView> findPageAfter(@Param("after") long after, Pageable pageable);
+
+    /**
+     * Every patient with an id above {@code after}, in id order, read from the
+     * database in batches as the stream is consumed. Must be consumed and closed
+     * inside a transaction.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("select new com.uday.copilot.clinical.dto.PatientView(p.id, p.firstName, p.lastName, p.dateOfBirth, p.gender) "
+            + "from Patient p where p.id > :after order by p.id")
+    Stream<PatientView> streamAfter(@Param("after") long after);
 }
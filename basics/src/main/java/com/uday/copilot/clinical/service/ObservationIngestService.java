@@ -0,0 +1,78 @@
+package com.uday.copilot.clinical.service;
+
+import com.uday.copilot.clinical.dto.ObservationInput;
+import com.uday.copilot.clinical.model.Observation;
+import com.uday.copilot.clinical.model.Patient;
+import com.uday.copilot.clinical.repository.PatientRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Inserts observations in bulk.
+ *
+ * All patients are checked with one query, then the observations are persisted in
+ * chunks of {@link Observation#ALLOCATION_SIZE}: each chunk takes its ids from one
+ * block of the sequence, goes to the database as one JDBC batch on flush, and is
+ * then cleared from the persistence context so memory does not grow with the
+ * upload. Patients are attached as references, never loaded.
+ */
+@Service
+public class ObservationIngestService {
+
+    private final PatientRepository patientRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public ObservationIngestService(PatientRepository patientRepository) {
+        this.patientRepository = patientRepository;
+    }
+
+    /**
+     * Returns the ids of the patients the observations refer to that do not exist.
+     */
+    @Transactional(readOnly = true)
+    public Set<Long> findMissingPatients(List<ObservationInput> observations) {
+        Set<Long> ids = new LinkedHashSet<>();
+        for (ObservationInput o : observations) {
+            ids.add(o.patientId());
+        }
+        ids.removeAll(patientRepository.findExistingIds(ids));
+        return ids;
+    }
+
+    /**
+     * Inserts every observation in one transaction and returns how many there were.
+     */
+    @Transactional
+    public int insertAll(List<ObservationInput> observations) {
+        Map<Long, Patient> patients = new HashMap<>();
+        int inChunk = 0;
+        for (ObservationInput input : observations) {
+            Observation observation = new Observation();
+            observation.setPatient(patients.computeIfAbsent(input.patientId(), patientRepository::getReferenceById));
+            observation.setType(input.type());
+            observation.setValue(input.value());
+            observation.setUnit(input.unit());
+            observation.setObservedAt(input.observedAt());
+            entityManager.persist(observation);
+            if (++inChunk == Observation.ALLOCATION_SIZE) {
+                entityManager.flush();
+                entityManager.clear();
+                patients.clear();
+                inChunk = 0;
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+        return observations.size();
+    }
+}
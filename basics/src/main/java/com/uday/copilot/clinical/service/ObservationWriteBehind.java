@@ -0,0 +1,508 @@
+package com.uday.copilot.clinical.service;
+
+import com.uday.copilot.clinical.dto.ObservationInput;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32C;
+
+/**
+ * Write-behind ingestion of single observations, enabled with
+ * {@code clinical.ingest.async.enabled=true}.
+ *
+ * {@link #submit(ObservationInput)} puts the observation on a bounded queue and
+ * returns its sequence number at once, or -1 when the queue is full so the caller
+ * can push back. Background writers take whatever has queued up, up to a batch
+ * size, and insert it through {@link ObservationIngestService} in one
+ * transaction. If the database refuses a batch because of its rows, such as a
+ * constraint violation, the observations are retried one by one so a single bad
+ * row only loses itself. If the database itself fails, the batch is retried with
+ * growing pauses until it goes in; meanwhile the queue fills up and submit starts
+ * refusing.
+ *
+ * With {@code clinical.ingest.async.log-dir} set, every observation is appended
+ * and forced to a log file before it is acknowledged. The log is split into
+ * segments, and a segment is deleted once all of its observations are in the
+ * database. Segments left over by a crash are queued again at startup, so an
+ * acknowledged observation is inserted at least once; one that was committed just
+ * before the crash may be inserted twice. The same holds for observations still
+ * waiting for the database when the application shuts down.
+ *
+ * Queue depth, flush latency, rejections and failed rows are published as metrics.
+ */
+@Service
+@ConditionalOnProperty(name = "clinical.ingest.async.enabled", havingValue = "true")
+public class ObservationWriteBehind {
+
+    private static final Logger log = LoggerFactory.getLogger(ObservationWriteBehind.class);
+
+    // records per log segment before the next one is started
+    static final int SEGMENT_RECORDS = 100_000;
+    private static final int MAX_RECORD = 1 << 20;
+
+    // first wait after the database fails; doubled on each further failure up to the maximum
+    private static final long INITIAL_BACKOFF_MILLIS = 100;
+    private static final long MAX_BACKOFF_MILLIS = 10_000;
+
+    private record Pending(long sequence, ObservationInput input, Segment segment) {
+    }
+
+    private enum Outcome {
+        INSERTED, REFUSED, ABANDONED
+    }
+
+    // one log file and the number of its observations not yet in the database
+    private static final class Segment {
+        final Path file;
+        final AtomicInteger outstanding = new AtomicInteger();
+        final AtomicBoolean deleted = new AtomicBoolean();
+        volatile boolean sealed;
+
+        Segment(Path file) {
+            this.file = file;
+        }
+    }
+
+    private final ObservationIngestService ingestService;
+    private final BlockingQueue<Pending> queue;
+    private final int maxBatch;
+    private final Timer flushLatency;
+    private final Counter rejected;
+    private final Counter failed;
+    private final List<Thread> writers = new ArrayList<>();
+    private final Path logDir;
+    private final int recordsPerSegment;
+    private final CRC32C crc = new CRC32C();
+    private volatile boolean stopping;
+    // released by close, to cut a writer's wait between retries short
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    // guarded by this
+    private long sequence;
+    private Segment segment;
+    private FileChannel channel;
+    private long segmentNumber;
+    private int segmentRecords;
+
+    @Autowired
+    public ObservationWriteBehind(ObservationIngestService ingestService, MeterRegistry registry,
+                                  @Value("${clinical.ingest.async.queue-capacity:100000}") int queueCapacity,
+                                  @Value("${clinical.ingest.async.writers:2}") int writerCount,
+                                  @Value("${clinical.ingest.async.max-batch:500}") int maxBatch,
+                                  @Value("${clinical.ingest.async.log-dir:}") String logDir) throws IOException {
+        this(ingestService, registry, queueCapacity, writerCount, maxBatch, logDir, SEGMENT_RECORDS);
+    }
+
+    ObservationWriteBehind(ObservationIngestService ingestService, MeterRegistry registry, int queueCapacity,
+                           int writerCount, int maxBatch, String logDir, int recordsPerSegment) throws IOException {
+        if (queueCapacity <= 0 || writerCount <= 0 || maxBatch <= 0 || recordsPerSegment <= 0) {
+            throw new IllegalArgumentException("queue capacity, writers, batch and segment size must be positive");
+        }
+        this.ingestService = ingestService;
+        this.recordsPerSegment = recordsPerSegment;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatch = maxBatch;
+        this.logDir = logDir.isEmpty() ? null : Path.of(logDir);
+        Gauge.builder("clinical.ingest.queue.depth", queue, BlockingQueue::size)
+                .description("observations accepted but not yet written")
+                .register(registry);
+        this.flushLatency = Timer.builder("clinical.ingest.flush.latency")
+                .description("time to write one batch to the database")
+                .register(registry);
+        this.rejected = Counter.builder("clinical.ingest.rejected")
+                .description("observations refused because the queue was full")
+                .register(registry);
+        this.failed = Counter.builder("clinical.ingest.failed")
+                .description("accepted observations that could not be written")
+                .register(registry);
+
+        List<Path> leftOver = this.logDir == null ? List.of() : recoverSegments();
+        for (int i = 0; i < writerCount; i++) {
+            Thread writer = new Thread(this::writeLoop, "observation-writer-" + i);
+            writer.setDaemon(true);
+            writers.add(writer);
+            writer.start();
+        }
+        for (Path file : leftOver) {
+            replay(file);
+        }
+    }
+
+    /**
+     * Queues the observation and returns its sequence number, or -1 if the queue is
+     * full. With a log, returns only once the observation is on disk.
+     *
+     * @throws UncheckedIOException if the log cannot be written
+     */
+    public long submit(ObservationInput observation) {
+        long accepted;
+        FileChannel toForce;
+        synchronized (this) {
+            if (stopping) {
+                throw new IllegalStateException("write-behind is shut down");
+            }
+            // only writers take from the queue, so it cannot fill up again before the add below
+            if (queue.remainingCapacity() == 0) {
+                rejected.increment();
+                return -1;
+            }
+            accepted = ++sequence;
+            Segment current = null;
+            if (logDir != null) {
+                try {
+                    current = append(accepted, observation);
+                } catch (IOException e) {
+                    sequence--;
+                    throw new UncheckedIOException(e);
+                }
+            }
+            queue.add(new Pending(accepted, observation, current));
+            toForce = channel;
+        }
+        if (toForce != null) {
+            // outside the lock, so concurrent submitters share one disk flush where they can
+            try {
+                toForce.force(false);
+            } catch (ClosedChannelException e) {
+                // a rotation or close forced the channel before closing it
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return accepted;
+    }
+
+    /**
+     * Returns the number of observations accepted but not yet written.
+     */
+    public int queueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Stops accepting observations, lets the writers empty the queue and closes the log.
+     */
+    @PreDestroy
+    public void close() throws IOException {
+        synchronized (this) {
+            stopping = true;
+        }
+        stopped.countDown();
+        for (Thread writer : writers) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        synchronized (this) {
+            if (channel != null) {
+                channel.force(false);
+                channel.close();
+                channel = null;
+                // deleted now if the writers got everything in, otherwise replayed by the next start
+                seal(segment);
+            }
+        }
+    }
+
+    private void writeLoop() {
+        List<Pending> batch = new ArrayList<>(maxBatch);
+        while (true) {
+            Pending first;
+            try {
+                first = queue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (first == null) {
+                if (stopping) {
+                    return;
+                }
+                continue;
+            }
+            batch.add(first);
+            queue.drainTo(batch, maxBatch - 1);
+            flush(batch);
+            batch.clear();
+        }
+    }
+
+    private void flush(List<Pending> batch) {
+        long start = System.nanoTime();
+        List<ObservationInput> inputs = new ArrayList<>(batch.size());
+        for (Pending p : batch) {
+            inputs.add(p.input());
+        }
+        Outcome outcome = insert(inputs);
+        if (outcome == Outcome.INSERTED) {
+            settle(batch);
+        } else if (outcome == Outcome.REFUSED) {
+            // e.g. a patient deleted since its observation was accepted; find the bad rows and save the rest
+            for (Pending p : batch) {
+                Outcome one = insert(List.of(p.input()));
+                if (one == Outcome.REFUSED) {
+                    failed.increment();
+                    log.warn("dropping observation {} for patient {}, which the database refused",
+                            p.sequence(), p.input().patientId());
+                }
+                if (one == Outcome.ABANDONED) {
+                    abandon(List.of(p));
+                } else {
+                    settle(List.of(p));
+                }
+            }
+        } else {
+            abandon(batch);
+        }
+        flushLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    // inserts the observations in one transaction, waiting out failures of the database itself
+    private Outcome insert(List<ObservationInput> inputs) {
+        long backoff = INITIAL_BACKOFF_MILLIS;
+        while (true) {
+            try {
+                ingestService.insertAll(inputs);
+                return Outcome.INSERTED;
+            } catch (RuntimeException e) {
+                if (refusedRows(e)) {
+                    return Outcome.REFUSED;
+                }
+                if (stopping) {
+                    return Outcome.ABANDONED;
+                }
+                log.warn("could not write {} observations, retrying in {} ms", inputs.size(), backoff, e);
+                try {
+                    if (stopped.await(backoff, TimeUnit.MILLISECONDS)) {
+                        return Outcome.ABANDONED;
+                    }
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return Outcome.ABANDONED;
+                }
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+            }
+        }
+    }
+
+    // true if the database rejected the rows themselves, such as a constraint violation or a bad value,
+    // rather than failing to run the transaction at all
+    private static boolean refusedRows(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof DataIntegrityViolationException) {
+                return true;
+            }
+            if (t instanceof SQLException sql && sql.getSQLState() != null
+                    && (sql.getSQLState().startsWith("22") || sql.getSQLState().startsWith("23"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // the observations are in the database or dropped for good; their log records are no longer needed
+    private void settle(List<Pending> done) {
+        for (Pending p : done) {
+            if (p.segment() != null && p.segment().outstanding.decrementAndGet() == 0 && p.segment().sealed) {
+                deleteSegment(p.segment());
+            }
+        }
+    }
+
+    // shut down while the database was failing; logged observations stay in their segments for the next start
+    private void abandon(List<Pending> left) {
+        if (logDir == null) {
+            failed.increment(left.size());
+            log.error("shut down with {} observations not written", left.size());
+        } else {
+            log.warn("shut down with {} observations not written; they stay in the log for the next start", left.size());
+        }
+    }
+
+    // caller holds the monitor; writes one record to the current segment, starting a new one when full
+    private Segment append(long seq, ObservationInput o) throws IOException {
+        if (segment == null || segmentRecords == recordsPerSegment) {
+            startSegment();
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0);
+        out.writeLong(seq);
+        out.writeLong(o.patientId());
+        writeString(out, o.type());
+        writeString(out, o.value());
+        writeString(out, o.unit());
+        out.writeBoolean(o.observedAt() != null);
+        if (o.observedAt() != null) {
+            out.writeLong(o.observedAt().getEpochSecond());
+            out.writeInt(o.observedAt().getNano());
+        }
+        out.writeInt(0);
+        byte[] record = bytes.toByteArray();
+        int length = record.length - 8;
+        if (length > MAX_RECORD) {
+            throw new IOException("observation too large to log: " + length + " bytes");
+        }
+        ByteBuffer buf = ByteBuffer.wrap(record);
+        buf.putInt(0, length);
+        crc.reset();
+        crc.update(record, 4, length);
+        buf.putInt(4 + length, (int) crc.getValue());
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+        segmentRecords++;
+        segment.outstanding.incrementAndGet();
+        return segment;
+    }
+
+    // caller holds the monitor
+    private void startSegment() throws IOException {
+        Path file = logDir.resolve("ingest-" + (segmentNumber + 1) + ".log");
+        FileChannel next = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        Segment previous = segment;
+        if (channel != null) {
+            // submitters of the last records may not have forced them yet; they skip forcing a closed channel
+            channel.force(false);
+            channel.close();
+        }
+        channel = next;
+        segment = new Segment(file);
+        segmentNumber++;
+        segmentRecords = 0;
+        if (previous != null) {
+            seal(previous);
+        }
+    }
+
+    private void seal(Segment s) {
+        s.sealed = true;
+        if (s.outstanding.get() == 0) {
+            deleteSegment(s);
+        }
+    }
+
+    private void deleteSegment(Segment s) {
+        if (s.deleted.compareAndSet(false, true)) {
+            try {
+                Files.deleteIfExists(s.file);
+            } catch (IOException e) {
+                log.warn("could not delete ingest log segment {}", s.file, e);
+            }
+        }
+    }
+
+    // the segments left by an earlier run, oldest first; new segments are numbered after them
+    private List<Path> recoverSegments() throws IOException {
+        Files.createDirectories(logDir);
+        TreeMap<Long, Path> found = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(logDir, "ingest-*.log")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                found.put(Long.parseLong(name.substring("ingest-".length(), name.length() - ".log".length())), file);
+            }
+        }
+        segmentNumber = found.isEmpty() ? 0 : found.lastKey();
+        return new ArrayList<>(found.values());
+    }
+
+    // queues the intact records of a segment from an earlier run again
+    private void replay(Path file) throws IOException {
+        Segment old = new Segment(file);
+        List<Pending> records = new ArrayList<>();
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(file));
+        CRC32C check = new CRC32C();
+        while (buf.remaining() >= 4) {
+            int p = buf.position();
+            int length = buf.getInt(p);
+            if (length < 17 || length > MAX_RECORD || buf.remaining() < length + 8) {
+                break;
+            }
+            check.reset();
+            check.update(buf.array(), p + 4, length);
+            if ((int) check.getValue() != buf.getInt(p + 4 + length)) {
+                break;
+            }
+            buf.position(p + 4);
+            long seq = buf.getLong();
+            long patientId = buf.getLong();
+            String type = readString(buf);
+            String value = readString(buf);
+            String unit = readString(buf);
+            Instant observedAt = buf.get() != 0 ? Instant.ofEpochSecond(buf.getLong(), buf.getInt()) : null;
+            buf.position(p + 4 + length + 4);
+            records.add(new Pending(seq, new ObservationInput(patientId, type, value, unit, observedAt), old));
+        }
+        synchronized (this) {
+            for (Pending r : records) {
+                sequence = Math.max(sequence, r.sequence());
+            }
+        }
+        old.outstanding.set(records.size());
+        log.info("requeueing {} observations from {}", records.size(), file);
+        for (Pending r : records) {
+            try {
+                queue.put(r);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted while replaying " + file, e);
+            }
+        }
+        seal(old);
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(b.length);
+            out.write(b);
+        }
+    }
+
+    private static String readString(ByteBuffer buf) {
+        int length = buf.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String s = new String(buf.array(), buf.position(), length, StandardCharsets.UTF_8);
+        buf.position(buf.position() + length);
+        return s;
+    }
+}
@@ -0,0 +1,145 @@
+package com.uday.copilot;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+public class CachingProductStoreTest {
+
+    private InMemoryProductStore backing;
+
+    @Before
+    public void setUp() {
+        backing = new InMemoryProductStore();
+    }
+
+    @Test
+    public void testReadThroughCountsHitsAndMisses() {
+        backing.put(new Product(1, "Laptop", 999.99));
+        CachingProductStore cache = new CachingProductStore(backing, 100);
+
+        assertEquals("Laptop", cache.get(1).getName());
+        assertEquals("Laptop", cache.get(1).getName());
+        assertNull(cache.get(2));
+
+        assertEquals(1, cache.hitCount());
+        assertEquals(2, cache.missCount());
+        assertEquals(1.0 / 3, cache.hitRate(), 1e-9);
+        assertEquals(1, cache.cachedCount());
+    }
+
+    @Test
+    public void testWritesGoThroughToBackingStore() {
+        CachingProductStore cache = new CachingProductStore(backing, 100);
+        cache.put(new Product(1, "Laptop", 999.99));
+        assertEquals("Laptop", backing.get(1).getName());
+
+        Product previous = cache.put(new Product(1, "Notebook", 899.99));
+        assertEquals("Laptop", previous.getName());
+        assertEquals("Notebook", cache.get(1).getName());
+        assertEquals(1, cache.hitCount());
+
+        assertEquals("Notebook", cache.remove(1).getName());
+        assertNull(backing.get(1));
+        assertNull(cache.get(1));
+        assertEquals(0, cache.cachedCount());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedWithinLimit() {
+        // a limit of one keeps a single shard, so the LRU order is global
+        CachingProductStore cache = new CachingProductStore(backing, 1);
+        cache.put(new Product(1, "a", 1));
+        cache.put(new Product(2, "b", 2));
+
+        assertEquals(1, cache.cachedCount());
+        assertEquals(1, cache.evictionCount());
+        cache.get(2);
+        assertEquals(1, cache.hitCount());
+        cache.get(1);
+        assertEquals(1, cache.missCount());
+        assertEquals(2, cache.evictionCount());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testKeepsRecentlyUsedProducts() {
+        // sixteen shards of two; pick three ids that land in the same one
+        CachingProductStore cache = new CachingProductStore(backing, 32);
+        List<Integer> ids = new ArrayList<>();
+        for (int id = 0; ids.size() < 3; id++) {
+            if (IntProductMap.hash(id) >>> 28 == 0) {
+                ids.add(id);
+            }
+        }
+        cache.put(new Product(ids.get(0), "a", 1));
+        cache.put(new Product(ids.get(1), "b", 2));
+        cache.get(ids.get(0));
+        cache.put(new Product(ids.get(2), "c", 3));
+
+        assertEquals(1, cache.evictionCount());
+        assertEquals("a", cache.get(ids.get(0)).getName());
+        assertEquals(2, cache.hitCount());
+        assertEquals("b", cache.get(ids.get(1)).getName());
+        assertEquals(1, cache.missCount());
+    }
+
+    @Test
+    public void testWeightLimitsMemory() {
+        CachingProductStore cache = new CachingProductStore(backing, 1_000, p -> p.getName().length());
+        for (int id = 0; id < 1_000; id++) {
+            cache.put(new Product(id, "name-" + id, id));
+        }
+        assertTrue(cache.cachedWeight() <= 1_000);
+        assertTrue(cache.evictionCount() > 0);
+        assertEquals(1_000, cache.size());
+        for (int id = 0; id < 1_000; id++) {
+            assertEquals("name-" + id, cache.get(id).getName());
+        }
+    }
+
+    @Test
+    public void testConcurrentReadsAndWritesStayConsistent() throws Exception {
+        CachingProductStore cache = new CachingProductStore(backing, 64);
+        InventoryManager manager = new InventoryManager(cache);
+        for (int id = 0; id < 256; id++) {
+            manager.addProduct(new Product(id, "p", 0));
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < 50_000; i++) {
+                    int id = ThreadLocalRandom.current().nextInt(256);
+                    if (i % 4 == 0) {
+                        manager.updateProduct(id, p -> new Product(p.getId(), p.getName(), p.getPrice() + 1));
+                    } else {
+                        manager.getProduct(id);
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> f : futures) {
+            f.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        double total = 0;
+        for (int id = 0; id < 256; id++) {
+            assertEquals(backing.get(id).getPrice(), cache.get(id).getPrice(), 0.0);
+            total += backing.get(id).getPrice();
+        }
+        assertEquals(4 * 50_000 / 4, total, 0.0);
+        assertTrue(cache.cachedCount() <= 64);
+    }
+}
@@ -0,0 +1,244 @@
+package com.uday.copilot;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class ChangeJournalTest {
+
+    private Path dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("journal");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    @Test
+    public void testRecordsEveryKindOfChange() {
+        ChangeJournal journal = new ChangeJournal(100);
+        InventoryManager manager = new InventoryManager(new InMemoryProductStore(), journal);
+
+        manager.addProduct(new Product(1, "Laptop", 999.99));
+        manager.updateProductPrice(1, 899.99);
+        manager.updateProductName(1, "Notebook");
+        manager.removeProduct(1);
+        manager.removeProduct(2);
+        manager.updateProductPrice(2, 1.0);
+
+        List<ChangeJournal.Change> changes = journal.changesAfter(0, 100);
+        assertEquals(4, changes.size());
+        assertEquals(4, journal.lastSequence());
+        assertEquals(ChangeJournal.Change.Type.PUT, changes.get(1).getType());
+        assertEquals(899.99, changes.get(1).getProduct().getPrice(), 0.0);
+        assertEquals("Notebook", changes.get(2).getProduct().getName());
+        assertEquals(ChangeJournal.Change.Type.REMOVE, changes.get(3).getType());
+        assertEquals(1, changes.get(3).getId());
+        assertNull(changes.get(3).getProduct());
+        assertEquals(3, journal.changesAfter(2, 100).get(0).getSequence());
+        assertTrue(journal.changesAfter(4, 100).isEmpty());
+    }
+
+    @Test
+    public void testNameTooLongToJournalIsRejectedBeforeTheStoreChanges() {
+        ChangeJournal journal = new ChangeJournal(100);
+        InventoryManager manager = new InventoryManager(new InMemoryProductStore(), journal);
+        manager.addProduct(new Product(1, "Laptop", 999.99));
+        // 3 UTF-8 bytes per char, so over the limit by byte count though not by length
+        String tooLong = "€".repeat(Short.MAX_VALUE / 3 + 1);
+
+        try {
+            manager.addProduct(new Product(2, tooLong, 1.0));
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            manager.updateProductName(1, tooLong);
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+        }
+
+        assertNull(manager.getProduct(2));
+        assertEquals("Laptop", manager.getProduct(1).getName());
+        assertEquals(1, journal.lastSequence());
+        String longest = "€".repeat(Short.MAX_VALUE / 3);
+        manager.updateProductName(1, longest);
+        assertEquals(longest, journal.changesAfter(1, 10).get(0).getProduct().getName());
+    }
+
+    @Test
+    public void testReplicaConvergesAfterReplay() {
+        ChangeJournal journal = new ChangeJournal(1 << 16);
+        InventoryManager primary = new InventoryManager(new InMemoryProductStore(), journal);
+        randomChanges(primary, new Random(11), 20_000);
+
+        InventoryManager replica = new InventoryManager();
+        long position = 0;
+        List<ChangeJournal.Change> batch;
+        while (!(batch = journal.changesAfter(position, 1_000)).isEmpty()) {
+            for (ChangeJournal.Change change : batch) {
+                change.applyTo(replica);
+            }
+            position = batch.get(batch.size() - 1).getSequence();
+        }
+
+        assertEquals(journal.lastSequence(), position);
+        assertEquals(contents(primary), contents(replica));
+    }
+
+    @Test
+    public void testReplicaFromSnapshotConvergesWhileWritersRun() throws Exception {
+        ChangeJournal journal = new ChangeJournal(1 << 20);
+        InventoryManager primary = new InventoryManager(new InMemoryProductStore(), journal);
+        randomChanges(primary, new Random(1), 5_000);
+
+        ExecutorService pool = Executors.newFixedThreadPool(5);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int seed = t;
+            writers.add(pool.submit(() -> randomChanges(primary, new Random(seed), 20_000)));
+        }
+        InventoryManager replica = new InventoryManager();
+        long start;
+        try (InventorySnapshot snapshot = primary.snapshot()) {
+            replica.addProducts(snapshot.listProducts());
+            start = snapshot.journalPosition();
+        }
+        AtomicBoolean writersDone = new AtomicBoolean();
+        Future<Long> follower = pool.submit(() -> {
+            long position = start;
+            while (true) {
+                boolean last = writersDone.get();
+                List<ChangeJournal.Change> batch = journal.awaitChangesAfter(position, 500, 10, TimeUnit.MILLISECONDS);
+                for (ChangeJournal.Change change : batch) {
+                    change.applyTo(replica);
+                    position = change.getSequence();
+                }
+                if (last && batch.isEmpty()) {
+                    return position;
+                }
+            }
+        });
+        for (Future<?> f : writers) {
+            f.get(60, TimeUnit.SECONDS);
+        }
+        writersDone.set(true);
+        long position = follower.get(60, TimeUnit.SECONDS);
+        pool.shutdown();
+
+        assertEquals(journal.lastSequence(), position);
+        assertEquals(contents(primary), contents(replica));
+    }
+
+    @Test
+    public void testReplicaBehindTheRingMustResync() {
+        ChangeJournal journal = new ChangeJournal(4);
+        InventoryManager manager = new InventoryManager(new InMemoryProductStore(), journal);
+        for (int id = 1; id <= 10; id++) {
+            manager.addProduct(new Product(id, "p" + id, id));
+        }
+
+        assertEquals(7, journal.oldestSequence());
+        assertEquals(4, journal.changesAfter(6, 10).size());
+        try {
+            journal.changesAfter(5, 10);
+            fail("expected the ring to have moved past position 5");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void testAwaitTimesOutWithoutChanges() throws InterruptedException {
+        ChangeJournal journal = new ChangeJournal(4);
+        assertTrue(journal.awaitChangesAfter(0, 10, 20, TimeUnit.MILLISECONDS).isEmpty());
+    }
+
+    @Test
+    public void testFileReplayAndContinuation() throws IOException {
+        Path file = dir.resolve("changes.journal");
+        InventoryManager primary;
+        long written;
+        try (ChangeJournal journal = new ChangeJournal(16, file)) {
+            primary = new InventoryManager(new InMemoryProductStore(), journal);
+            randomChanges(primary, new Random(5), 5_000);
+            primary.addProduct(new Product(1_000_000, null, 1.0));
+            primary.addProduct(new Product(1_000_001, "Café", 2.0));
+            written = journal.lastSequence();
+        }
+
+        InventoryManager replica = new InventoryManager();
+        assertEquals(written, ChangeJournal.read(file, 0, change -> change.applyTo(replica)));
+        assertEquals(contents(primary), contents(replica));
+
+        // a torn record at the end is cut off and numbering continues after the last intact one
+        Files.write(file, new byte[] {0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+        try (ChangeJournal journal = new ChangeJournal(16, file)) {
+            assertEquals(written, journal.lastSequence());
+            assertEquals(written + 1, journal.oldestSequence());
+            InventoryManager continued = new InventoryManager(new InMemoryProductStore(), journal);
+            continued.addProduct(new Product(7, "Lamp", 29.99));
+            assertEquals(written + 1, journal.changesAfter(written, 10).get(0).getSequence());
+        }
+        List<ChangeJournal.Change> tail = new ArrayList<>();
+        assertEquals(written + 1, ChangeJournal.read(file, written - 2, tail::add));
+        assertEquals(3, tail.size());
+        assertEquals("Lamp", tail.get(2).getProduct().getName());
+    }
+
+    // adds, reprices, renames and removes products among a small set of ids
+    private static Void randomChanges(InventoryManager manager, Random random, int count) {
+        for (int i = 0; i < count; i++) {
+            int id = random.nextInt(2_000);
+            switch (random.nextInt(4)) {
+                case 0:
+                    manager.addProduct(new Product(id, "p" + random.nextInt(100), random.nextInt(1_000)));
+                    break;
+                case 1:
+                    manager.updateProductPrice(id, random.nextInt(1_000));
+                    break;
+                case 2:
+                    manager.updateProductName(id, "n" + random.nextInt(100));
+                    break;
+                default:
+                    manager.removeProduct(id);
+            }
+        }
+        return null;
+    }
+
+    private static Map<Integer, String> contents(InventoryManager manager) {
+        Map<Integer, String> contents = new TreeMap<>();
+        for (Product p : manager.listProducts()) {
+            contents.put(p.getId(), p.getName() + "|" + p.getPrice());
+        }
+        return contents;
+    }
+}
@@ -0,0 +1,127 @@
+package com.uday.copilot;
+
+import org.junit.Test;
+
+import com.uday.copilot.CompactTaskManager.TaskView;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+public class CompactTaskManagerTest {
+
+    private final CompactTaskManager manager = new CompactTaskManager();
+
+    @Test
+    public void testAddAndList() {
+        TaskView t = manager.addTask("First");
+        manager.addTask("Second");
+        assertEquals("First", t.getDescription());
+        assertFalse(t.isDone());
+        assertEquals("[ ] First", t.toString());
+        assertEquals(List.of("First", "Second"), descriptions(manager.listTasks()));
+        assertEquals(2, manager.size());
+    }
+
+    @Test
+    public void testMarkDoneByIdAndDescription() {
+        TaskView a = manager.addTask("Dup");
+        TaskView b = manager.addTask("Dup");
+        assertTrue(manager.markTaskDone("Dup"));
+        assertTrue(a.isDone());
+        assertFalse(b.isDone());
+        assertTrue(manager.markTaskDone(b.getId()));
+        assertTrue(b.isDone());
+        assertFalse(manager.markTaskDone(UUID.randomUUID()));
+        assertFalse(manager.markTaskDone("Missing"));
+    }
+
+    @Test
+    public void testRemoveAndFind() {
+        TaskView a = manager.addTask("Dup");
+        manager.addTask("Other");
+        TaskView b = manager.addTask("Dup");
+        assertEquals(2, manager.findTasks("Dup").size());
+        assertTrue(manager.removeTask(a.getId()));
+        assertFalse(a.isPresent());
+        assertFalse(manager.removeTask(a.getId()));
+        assertEquals(List.of(b), manager.findTasks("Dup"));
+        assertTrue(manager.removeTask("Dup"));
+        assertTrue(manager.findTasks("Dup").isEmpty());
+        assertEquals(List.of("Other"), descriptions(manager.listTasks()));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testRemovedViewRejectsReads() {
+        TaskView t = manager.addTask("Gone");
+        manager.removeTask(t.getId());
+        t.getDescription();
+    }
+
+    @Test
+    public void testViewsSurviveCompaction() {
+        List<TaskView> views = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            views.add(manager.addTask("task " + (i % 7)));
+        }
+        TaskView keep = views.get(9_999);
+        keep.setDone(true);
+        for (int i = 0; i < 9_000; i++) {
+            assertTrue(manager.removeTask(views.get(i).getId()));
+        }
+        assertEquals(1_000, manager.size());
+        assertTrue(keep.isPresent());
+        assertTrue(keep.isDone());
+        assertEquals("task " + (9_999 % 7), keep.getDescription());
+        assertEquals(views.get(9_000), manager.listTasks().get(0));
+        for (int i = 9_000; i < 10_000; i++) {
+            assertEquals(views.get(i), manager.getTask(views.get(i).getId()));
+        }
+        assertNull(manager.getTask(views.get(0).getId()));
+    }
+
+    @Test
+    public void testOffHeapArenaAndDeduplication() {
+        CompactTaskManager offHeap = new CompactTaskManager(TaskIdGenerator.timeOrdered(), true);
+        for (int i = 0; i < 50_000; i++) {
+            offHeap.addTask("shared description " + (i % 10) + " é");
+        }
+        long footprint = offHeap.footprintBytes();
+        assertEquals("shared description 3 é", offHeap.listTasks().get(3).getDescription());
+        assertEquals(5_000, offHeap.findTasks("shared description 3 é").size());
+        // ten distinct descriptions share the arena, so growth is dominated by the columns
+        assertTrue("footprint " + footprint, footprint < 50_000L * 64);
+    }
+
+    @Test
+    public void testChurnOfUniqueDescriptionsStaysBounded() {
+        CompactTaskManager manager = new CompactTaskManager(TaskIdGenerator.timeOrdered(), true);
+        TaskView kept = manager.addTask("kept");
+        manager.addTask("shared");
+        long footprint = 0;
+        for (int i = 0; i < 200_000; i++) {
+            TaskView t = manager.addTask("unique description number " + i);
+            manager.removeTask(t.getId());
+            if (i == 10_000) {
+                footprint = manager.footprintBytes();
+            }
+        }
+        // the footprint moves with the compaction cycle but no longer with the number of descriptions seen
+        assertTrue("footprint " + manager.footprintBytes() + " after " + footprint,
+                manager.footprintBytes() < footprint * 2);
+        assertEquals("kept", kept.getDescription());
+        assertEquals(List.of("kept", "shared"), descriptions(manager.listTasks()));
+        // a description no task used any more can be added again
+        manager.addTask("unique description number 7");
+        assertEquals(1, manager.findTasks("unique description number 7").size());
+        assertEquals(1, manager.findTasks("shared").size());
+        assertTrue(manager.findTasks("unique description number 8").isEmpty());
+    }
+
+    private static List<String> descriptions(List<TaskView> tasks) {
+        return tasks.stream().map(TaskView::getDescription).collect(Collectors.toList());
+    }
+}
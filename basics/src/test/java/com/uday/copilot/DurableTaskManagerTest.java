@@ -0,0 +1,194 @@
+package com.uday.copilot;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.uday.copilot.TaskManager.Task;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class DurableTaskManagerTest {
+
+    private Path dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("tasks");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    @Test
+    public void testReopenRestoresTasks() throws IOException {
+        Task first;
+        Task second;
+        try (DurableTaskManager manager = DurableTaskManager.open(dir)) {
+            first = manager.addTask("First");
+            second = manager.addTask("Second");
+            manager.addTask("Third");
+            manager.addTasks(List.of("Fourth", "Fifth"));
+            manager.markTaskDone(second.getId());
+            manager.removeTask("Third");
+        }
+        try (DurableTaskManager manager = DurableTaskManager.open(dir)) {
+            List<Task> tasks = manager.listTasks();
+            assertEquals(List.of("First", "Second", "Fourth", "Fifth"), descriptions(tasks));
+            assertEquals(first.getId(), tasks.get(0).getId());
+            assertFalse(tasks.get(0).isDone());
+            assertTrue(tasks.get(1).isDone());
+            // the restored manager keeps logging
+            manager.removeTask(first.getId());
+        }
+        try (DurableTaskManager manager = DurableTaskManager.open(dir)) {
+            assertEquals(List.of("Second", "Fourth", "Fifth"), descriptions(manager.listTasks()));
+        }
+    }
+
+    @Test
+    public void testCheckpointCompactsLog() throws IOException {
+        try (DurableTaskManager manager = DurableTaskManager.open(dir)) {
+            for (int i = 0; i < 100; i++) {
+                manager.addTask("task " + i);
+            }
+            manager.removeTasks(t -> t.getDescription().endsWith("7"));
+            manager.markTaskDone("task 0");
+            manager.checkpoint();
+            manager.addTask("after checkpoint");
+        }
+        assertEquals(1, count("snapshot-"));
+        assertEquals(1, count("wal-"));
+        try (DurableTaskManager manager = DurableTaskManager.open(dir)) {
+            List<Task> tasks = manager.listTasks();
+            assertEquals(91, tasks.size());
+            assertTrue(tasks.get(0).isDone());
+            assertEquals("after checkpoint", tasks.get(90).getDescription());
+        }
+    }
+
+    @Test
+    public void testCheckpointOfLongestDoneDescription() throws IOException {
+        String longest = "x".repeat(TaskLog.MAX_DESCRIPTION);
+        try (DurableTaskManager manager = DurableTaskManager.open(dir)) {
+            manager.addTask("before");
+            manager.markTaskDone(manager.addTask(longest).getId());
+            manager.addTask("after");
+            manager.checkpoint();
+        }
+        assertEquals(1, count("snapshot-"));
+        try (DurableTaskManager manager = DurableTaskManager.open(dir)) {
+            List<Task> tasks = manager.listTasks();
+            assertEquals(3, tasks.size());
+            assertEquals(longest, tasks.get(1).getDescription());
+            assertTrue(tasks.get(1).isDone());
+            assertEquals("after", tasks.get(2).getDescription());
+        }
+    }
+
+    @Test
+    public void testBatchWithDescriptionTooLongToLogAddsNothing() throws IOException {
+        try (DurableTaskManager manager = DurableTaskManager.open(dir)) {
+            try {
+                manager.addTasks(List.of("first", "é".repeat(TaskLog.MAX_DESCRIPTION / 2 + 1), "last"));
+                fail("expected IllegalArgumentException");
+            } catch (IllegalArgumentException expected) {
+            }
+            assertTrue(manager.listTasks().isEmpty());
+            manager.addTask("kept");
+        }
+        try (DurableTaskManager manager = DurableTaskManager.open(dir)) {
+            assertEquals(1, manager.listTasks().size());
+        }
+    }
+
+    @Test
+    public void testAutomaticCheckpoint() throws Exception {
+        try (DurableTaskManager manager = DurableTaskManager.open(dir, 50)) {
+            for (int i = 0; i < 200; i++) {
+                manager.addTask("task " + i);
+            }
+        }
+        assertTrue(count("snapshot-") >= 1);
+        try (DurableTaskManager manager = DurableTaskManager.open(dir)) {
+            assertEquals(200, manager.listTasks().size());
+        }
+    }
+
+    @Test
+    public void testTornTailIsIgnored() throws IOException {
+        try (DurableTaskManager manager = DurableTaskManager.open(dir)) {
+            manager.addTask("Survives");
+        }
+        Path segment;
+        try (Stream<Path> files = Files.list(dir)) {
+            segment = files.filter(p -> p.getFileName().toString().startsWith("wal-")).findFirst().get();
+        }
+        // half a record, as left by a crash mid-write
+        Files.write(segment, new byte[] {0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+        try (DurableTaskManager manager = DurableTaskManager.open(dir)) {
+            assertEquals(List.of("Survives"), descriptions(manager.listTasks()));
+            manager.addTask("Next");
+        }
+        try (DurableTaskManager manager = DurableTaskManager.open(dir)) {
+            assertEquals(List.of("Survives", "Next"), descriptions(manager.listTasks()));
+        }
+    }
+
+    @Test
+    public void testConcurrentWritersAreAllRecovered() throws Exception {
+        int threads = 8;
+        int perThread = 500;
+        try (DurableTaskManager manager = DurableTaskManager.open(dir, 1_000)) {
+            Thread[] workers = new Thread[threads];
+            for (int n = 0; n < threads; n++) {
+                final int worker = n;
+                workers[n] = new Thread(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        Task t = manager.addTask("w" + worker + " " + i);
+                        if (i % 2 == 0) {
+                            manager.markTaskDone(t.getId());
+                        } else if (i % 5 == 0) {
+                            manager.removeTask(t.getId());
+                        }
+                    }
+                });
+                workers[n].start();
+            }
+            for (Thread w : workers) {
+                w.join();
+            }
+            manager.checkpoint();
+        }
+        try (DurableTaskManager manager = DurableTaskManager.open(dir)) {
+            List<Task> tasks = manager.listTasks();
+            assertEquals(threads * (perThread - 50), tasks.size());
+            assertEquals(threads * perThread / 2, manager.streamTasks().filter(Task::isDone).count());
+        }
+    }
+
+    private static List<String> descriptions(List<Task> tasks) {
+        return tasks.stream().map(Task::getDescription).collect(Collectors.toList());
+    }
+
+    private long count(String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.getFileName().toString().startsWith(prefix)).count();
+        }
+    }
+}
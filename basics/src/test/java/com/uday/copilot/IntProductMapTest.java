@@ -0,0 +1,83 @@
+package com.uday.copilot;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class IntProductMapTest {
+
+    @Test
+    public void testPutGetRemove() {
+        IntProductMap map = new IntProductMap();
+        Product laptop = new Product(1, "Laptop", 999.99);
+        assertNull(map.put(laptop));
+        assertSame(laptop, map.get(1));
+        assertNull(map.get(2));
+
+        Product replacement = new Product(1, "Notebook", 899.99);
+        assertSame(laptop, map.put(replacement));
+        assertEquals(1, map.size());
+
+        assertSame(replacement, map.remove(1));
+        assertNull(map.remove(1));
+        assertNull(map.get(1));
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    public void testNegativeAndZeroIds() {
+        IntProductMap map = new IntProductMap();
+        map.put(new Product(0, "zero", 0));
+        map.put(new Product(-1, "minus one", 1));
+        map.put(new Product(Integer.MIN_VALUE, "min", 2));
+
+        assertEquals("zero", map.get(0).getName());
+        assertEquals("minus one", map.get(-1).getName());
+        assertEquals("min", map.get(Integer.MIN_VALUE).getName());
+    }
+
+    @Test
+    public void testRandomOperationsMatchHashMap() {
+        IntProductMap map = new IntProductMap();
+        Map<Integer, Product> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            // a small key space keeps probe runs long and removals frequent
+            int id = random.nextInt(5_000) - 2_500;
+            if (random.nextInt(3) == 0) {
+                assertSame(expected.remove(id), map.remove(id));
+            } else {
+                Product p = new Product(id, "p" + i, i);
+                assertSame(expected.put(id, p), map.put(p));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (int id = -2_500; id < 2_500; id++) {
+            assertSame(expected.get(id), map.get(id));
+        }
+        int[] visited = {0};
+        map.forEach(p -> {
+            assertSame(expected.get(p.getId()), p);
+            visited[0]++;
+        });
+        assertEquals(expected.size(), visited[0]);
+    }
+
+    @Test
+    public void testEnsureCapacityKeepsContents() {
+        IntProductMap map = new IntProductMap();
+        for (int id = 0; id < 100; id++) {
+            map.put(new Product(id, "p" + id, id));
+        }
+        long before = map.footprintBytes();
+        map.ensureCapacity(1_000_000);
+        assertTrue(map.footprintBytes() > before);
+        for (int id = 0; id < 100; id++) {
+            assertEquals(id, map.get(id).getPrice(), 0.0);
+        }
+    }
+}
@@ -0,0 +1,534 @@
+package com.uday.copilot;
+
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rough throughput comparisons for InventoryManager. Not part of the unit test
+ * run; start it with its main method and read the printed numbers.
+ */
+public class InventoryManagerBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    /**
+     * Usage: {@code InventoryManagerBenchmark [updates|lookup|catalog|import|cache|snapshot|reprice|aggregate|replica] [args...]}
+     */
+    public static void main(String[] args) throws Exception {
+        String scenario = args.length > 0 ? args[0] : "updates";
+        switch (scenario) {
+            case "updates": {
+                int products = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+                int operations = args.length > 2 ? Integer.parseInt(args[2]) : 2_000_000;
+                int maxThreads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+                for (int round = 0; round < ROUNDS; round++) {
+                    System.out.println("round " + (round + 1));
+                    for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                        concurrentUpdates(products, operations, threads);
+                    }
+                }
+                break;
+            }
+            case "lookup": {
+                int products = args.length > 1 ? Integer.parseInt(args[1]) : 5_000_000;
+                int lookups = args.length > 2 ? Integer.parseInt(args[2]) : 20_000_000;
+                lookupVersusHashMap(products, lookups);
+                break;
+            }
+            case "catalog": {
+                int products = args.length > 1 ? Integer.parseInt(args[1]) : 5_000_000;
+                int lookups = args.length > 2 ? Integer.parseInt(args[2]) : 1_000_000;
+                catalogStartup(products, lookups);
+                break;
+            }
+            case "import": {
+                int products = args.length > 1 ? Integer.parseInt(args[1]) : 10_000_000;
+                int parallelism = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+                bulkImport(products, parallelism);
+                break;
+            }
+            case "cache": {
+                int products = args.length > 1 ? Integer.parseInt(args[1]) : 5_000_000;
+                int cached = args.length > 2 ? Integer.parseInt(args[2]) : 250_000;
+                int lookups = args.length > 3 ? Integer.parseInt(args[3]) : 10_000_000;
+                cachedCatalog(products, cached, lookups);
+                break;
+            }
+            case "snapshot": {
+                int products = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+                int writers = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+                int readers = args.length > 3 ? Integer.parseInt(args[3]) : 2;
+                for (int round = 0; round < ROUNDS; round++) {
+                    System.out.println("round " + (round + 1));
+                    snapshotReadersAndWriters(products, writers, readers, 3_000);
+                }
+                break;
+            }
+            case "reprice": {
+                int products = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+                int updates = args.length > 2 ? Integer.parseInt(args[2]) : 10_000_000;
+                for (int round = 0; round < ROUNDS; round++) {
+                    System.out.println("round " + (round + 1));
+                    repriceAllocation(products, updates);
+                }
+                break;
+            }
+            case "aggregate": {
+                int products = args.length > 1 ? Integer.parseInt(args[1]) : 2_000_000;
+                for (int round = 0; round < ROUNDS; round++) {
+                    System.out.println("round " + (round + 1));
+                    aggregates(products);
+                }
+                break;
+            }
+            case "replica": {
+                int products = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+                int changes = args.length > 2 ? Integer.parseInt(args[2]) : 10_000;
+                for (int round = 0; round < ROUNDS; round++) {
+                    System.out.println("round " + (round + 1));
+                    replicaSync(products, changes);
+                }
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("unknown scenario: " + scenario);
+        }
+    }
+
+    // mixed price updates and reads spread over many threads, against the previous
+    // HashMap implementation made safe with a single lock
+    static void concurrentUpdates(int products, int operations, int threads) throws Exception {
+        InventoryManager manager = new InventoryManager();
+        LockedHashMapInventory baseline = new LockedHashMapInventory();
+        for (int id = 0; id < products; id++) {
+            manager.addProduct(new Product(id, "product " + id, id));
+            baseline.addProduct(new Product(id, "product " + id, id));
+        }
+
+        long concurrent = run(threads, operations / threads, () -> {
+            int id = ThreadLocalRandom.current().nextInt(products);
+            if ((id & 3) == 0) {
+                manager.updateProductPrice(id, id + 1.0);
+            } else {
+                manager.getProduct(id);
+            }
+        });
+        long locked = run(threads, operations / threads, () -> {
+            int id = ThreadLocalRandom.current().nextInt(products);
+            if ((id & 3) == 0) {
+                baseline.updateProductPrice(id, id + 1.0);
+            } else {
+                baseline.getProduct(id);
+            }
+        });
+        System.out.printf("  %2d threads: concurrent %,12d ops/s   locked HashMap %,12d ops/s%n",
+                threads, perSecond(operations, concurrent), perSecond(operations, locked));
+    }
+
+    // heap held per product by the index structures alone, and random lookup latency
+    static void lookupVersusHashMap(int products, int lookups) {
+        Product[] catalog = new Product[products];
+        for (int id = 0; id < products; id++) {
+            catalog[id] = new Product(id, "product", id);
+        }
+        int[] ids = new int[1 << 20];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = ThreadLocalRandom.current().nextInt(products);
+        }
+
+        long base = usedHeap();
+        Map<Integer, Product> hashMap = new HashMap<>();
+        for (Product p : catalog) {
+            hashMap.put(p.getId(), p);
+        }
+        long hashMapBytes = usedHeap() - base;
+
+        base = usedHeap();
+        InventoryManager manager = new InventoryManager();
+        for (Product p : catalog) {
+            manager.addProduct(p);
+        }
+        long managerBytes = usedHeap() - base;
+        System.out.printf("  %-18s %6.1f bytes/product%n", "HashMap", (double) hashMapBytes / products);
+        System.out.printf("  %-18s %6.1f bytes/product%n", "InventoryManager", (double) managerBytes / products);
+
+        for (int round = 0; round < ROUNDS; round++) {
+            long sink = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < lookups; i++) {
+                sink += hashMap.get(ids[i & (ids.length - 1)]).getId();
+            }
+            long hashMapNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < lookups; i++) {
+                sink += manager.getProduct(ids[i & (ids.length - 1)]).getId();
+            }
+            long managerNanos = System.nanoTime() - start;
+            System.out.printf("  round %d: HashMap %5.1f ns/lookup   InventoryManager %5.1f ns/lookup  (%d)%n",
+                    round + 1, (double) hashMapNanos / lookups, (double) managerNanos / lookups, sink & 1);
+        }
+    }
+
+    // opening a mapped catalog against loading every product onto the heap
+    static void catalogStartup(int products, int lookups) throws Exception {
+        Path dir = Files.createTempDirectory("catalog");
+        Path file = dir.resolve("products.cat");
+        try {
+            long start = System.nanoTime();
+            try (MappedProductCatalog catalog = MappedProductCatalog.create(file, products, 32)) {
+                for (int id = 0; id < products; id++) {
+                    catalog.put(new Product(id, "product " + id, id));
+                }
+            }
+            System.out.printf("  build   %,8d ms  (%,d MB file)%n",
+                    (System.nanoTime() - start) / 1_000_000, Files.size(file) >> 20);
+
+            for (int round = 0; round < ROUNDS; round++) {
+                long base = usedHeap();
+                start = System.nanoTime();
+                try (MappedProductCatalog catalog = MappedProductCatalog.open(file)) {
+                    InventoryManager mapped = new InventoryManager(catalog);
+                    long opened = System.nanoTime() - start;
+                    long sink = 0;
+                    for (int i = 0; i < lookups; i++) {
+                        sink += mapped.getProduct(ThreadLocalRandom.current().nextInt(products)).getId();
+                    }
+                    long looked = System.nanoTime() - start - opened;
+                    long heap = usedHeap() - base;
+
+                    base = usedHeap();
+                    start = System.nanoTime();
+                    InventoryManager loaded = new InventoryManager();
+                    catalog.forEach(loaded::addProduct);
+                    long load = System.nanoTime() - start;
+                    long loadedHeap = usedHeap() - base;
+                    System.out.printf("  round %d: open %6.2f ms, %,d lookups %,d ms, heap %,d MB"
+                                    + "   vs reload onto heap %,d ms, heap %,d MB  (%d)%n",
+                            round + 1, opened / 1e6, lookups, looked / 1_000_000, heap >> 20,
+                            load / 1_000_000, loadedHeap >> 20, sink & 1);
+                    loaded.getProduct(0);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(file);
+            Files.delete(dir);
+        }
+    }
+
+    // loading a generated catalog from CSV and binary files, one product at a time and in bulk
+    static void bulkImport(int products, int parallelism) throws Exception {
+        Path dir = Files.createTempDirectory("import");
+        Path csv = dir.resolve("products.csv");
+        Path binary = dir.resolve("products.bin");
+        try {
+            List<Product> catalog = new ArrayList<>(products);
+            try (Writer out = Files.newBufferedWriter(csv)) {
+                for (int id = 0; id < products; id++) {
+                    Product p = new Product(id, "product " + id, id % 10_000 + 0.99);
+                    catalog.add(p);
+                    out.write(p.getId() + "," + p.getName() + "," + p.getPrice() + "\n");
+                }
+            }
+            ProductImporter.writeBinary(binary, catalog);
+            System.out.printf("  files: csv %,d MB, binary %,d MB%n", Files.size(csv) >> 20, Files.size(binary) >> 20);
+
+            for (int round = 0; round < ROUNDS; round++) {
+                System.out.println("round " + (round + 1));
+                InventoryManager single = new InventoryManager();
+                long start = System.nanoTime();
+                for (Product p : catalog) {
+                    single.addProduct(p);
+                }
+                System.out.printf("  %-16s %,12.0f rows/s%n", "addProduct", products * 1e9 / (System.nanoTime() - start));
+                single = null;
+                usedHeap();
+                System.out.printf("  %-16s %s%n", "csv x1", new ProductImporter(new InventoryManager()).importCsv(csv));
+                usedHeap();
+                System.out.printf("  %-16s %s%n", "csv x" + parallelism,
+                        new ProductImporter(new InventoryManager(), parallelism).importCsv(csv));
+                usedHeap();
+                System.out.printf("  %-16s %s%n", "binary", new ProductImporter(new InventoryManager()).importBinary(binary));
+                usedHeap();
+            }
+        } finally {
+            Files.deleteIfExists(csv);
+            Files.deleteIfExists(binary);
+            Files.delete(dir);
+        }
+    }
+
+    // skewed lookups, nine in ten to the hottest 5% of products, with and without a cache
+    // in front of a mapped catalog
+    static void cachedCatalog(int products, int cached, int lookups) throws Exception {
+        Path dir = Files.createTempDirectory("cache");
+        Path file = dir.resolve("products.cat");
+        try (MappedProductCatalog catalog = MappedProductCatalog.create(file, products, 32)) {
+            for (int id = 0; id < products; id++) {
+                catalog.put(new Product(id, "product " + id, id));
+            }
+            int hot = Math.max(1, products / 20);
+            int[] ids = new int[1 << 20];
+            for (int i = 0; i < ids.length; i++) {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                ids[i] = random.nextInt(10) < 9 ? random.nextInt(hot) : random.nextInt(products);
+            }
+            InventoryManager uncached = new InventoryManager(catalog);
+            CachingProductStore cache = new CachingProductStore(catalog, cached);
+            InventoryManager withCache = new InventoryManager(cache);
+            for (int round = 0; round < ROUNDS; round++) {
+                long sink = 0;
+                long start = System.nanoTime();
+                for (int i = 0; i < lookups; i++) {
+                    sink += uncached.getProduct(ids[i & (ids.length - 1)]).getId();
+                }
+                long mappedNanos = System.nanoTime() - start;
+                start = System.nanoTime();
+                for (int i = 0; i < lookups; i++) {
+                    sink += withCache.getProduct(ids[i & (ids.length - 1)]).getId();
+                }
+                long cachedNanos = System.nanoTime() - start;
+                System.out.printf("  round %d: mapped %5.1f ns/lookup   cached %5.1f ns/lookup"
+                                + "  (hit rate %.3f, %,d evictions, %,d cached)  (%d)%n",
+                        round + 1, (double) mappedNanos / lookups, (double) cachedNanos / lookups,
+                        cache.hitRate(), cache.evictionCount(), cache.cachedCount(), sink & 1);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+            Files.delete(dir);
+        }
+    }
+
+    // price updates from writer threads, alone and while reader threads export whole snapshots
+    static void snapshotReadersAndWriters(int products, int writers, int readers, long millis) throws Exception {
+        InventoryManager manager = new InventoryManager();
+        for (int id = 0; id < products; id++) {
+            manager.addProduct(new Product(id, "product " + id, id));
+        }
+        for (int activeReaders : new int[] {0, readers}) {
+            AtomicBoolean stop = new AtomicBoolean();
+            LongAdder writes = new LongAdder();
+            LongAdder exports = new LongAdder();
+            ExecutorService pool = Executors.newFixedThreadPool(writers + activeReaders);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                futures.add(pool.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (!stop.get()) {
+                        manager.updateProductPrice(random.nextInt(products), random.nextInt(1_000));
+                        writes.increment();
+                    }
+                    return null;
+                }));
+            }
+            for (int r = 0; r < activeReaders; r++) {
+                futures.add(pool.submit(() -> {
+                    while (!stop.get()) {
+                        try (InventorySnapshot snapshot = manager.snapshot()) {
+                            if (snapshot.listProducts().size() != products) {
+                                throw new IllegalStateException("inconsistent snapshot");
+                            }
+                        }
+                        exports.increment();
+                    }
+                    return null;
+                }));
+            }
+            Thread.sleep(millis);
+            stop.set(true);
+            for (Future<?> f : futures) {
+                f.get();
+            }
+            pool.shutdown();
+            System.out.printf("  %d readers: %,12d writes/s   %6.2f exports/s%n",
+                    activeReaders, writes.sum() * 1_000 / millis, exports.sum() * 1_000.0 / millis);
+        }
+    }
+
+    // price updates through InventoryManager, which replaces the Product, against StockLedger, which
+    // overwrites a column cell; reports throughput and the bytes allocated per update
+    static void repriceAllocation(int products, int updates) {
+        InventoryManager manager = new InventoryManager();
+        StockLedger ledger = new StockLedger();
+        for (int id = 0; id < products; id++) {
+            Product p = new Product(id, "product " + id, id);
+            manager.addProduct(p);
+            ledger.addProduct(p, 100);
+        }
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) java.lang.management.ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        long bytes = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        for (int i = 0; i < updates; i++) {
+            manager.updateProductPrice(i % products, i & 1023);
+        }
+        long managerNanos = System.nanoTime() - start;
+        long managerBytes = threads.getThreadAllocatedBytes(thread) - bytes;
+
+        bytes = threads.getThreadAllocatedBytes(thread);
+        start = System.nanoTime();
+        for (int i = 0; i < updates; i++) {
+            ledger.setPrice(i % products, i & 1023);
+        }
+        long ledgerNanos = System.nanoTime() - start;
+        long ledgerBytes = threads.getThreadAllocatedBytes(thread) - bytes;
+
+        System.out.printf("  %-16s %,12d updates/s %8.1f bytes/update%n",
+                "InventoryManager", perSecond(updates, managerNanos), (double) managerBytes / updates);
+        System.out.printf("  %-16s %,12d updates/s %8.1f bytes/update%n",
+                "StockLedger", perSecond(updates, ledgerNanos), (double) ledgerBytes / updates);
+    }
+
+    // statistics, histogram and top-N by copying listProducts() and looping, as callers used to,
+    // against the aggregation methods
+    static void aggregates(int products) {
+        InventoryManager manager = new InventoryManager();
+        for (int id = 0; id < products; id++) {
+            manager.addProduct(new Product(id, "product " + id, id % 10_000));
+        }
+        double[] boundaries = {100, 1_000, 5_000};
+
+        long start = System.nanoTime();
+        List<Product> copy = manager.listProducts();
+        double sum = 0;
+        double max = Double.NEGATIVE_INFINITY;
+        long[] counts = new long[boundaries.length + 1];
+        for (Product p : copy) {
+            sum += p.getPrice();
+            max = Math.max(max, p.getPrice());
+            int bucket = 0;
+            while (bucket < boundaries.length && p.getPrice() >= boundaries[bucket]) {
+                bucket++;
+            }
+            counts[bucket]++;
+        }
+        copy.sort((a, b) -> Double.compare(b.getPrice(), a.getPrice()));
+        List<Product> top = copy.subList(0, 10);
+        long external = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        PriceStatistics first = manager.priceStatistics();
+        manager.findMostExpensiveProducts(10);
+        long firstCall = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        PriceStatistics stats = manager.priceStatistics();
+        long statistics = System.nanoTime() - start;
+        start = System.nanoTime();
+        long[] histogram = manager.priceHistogram(boundaries);
+        long scan = System.nanoTime() - start;
+        start = System.nanoTime();
+        List<Product> mostExpensive = manager.findMostExpensiveProducts(10);
+        long topN = System.nanoTime() - start;
+
+        if (Math.abs(stats.getSum() - sum) > 1e-3 * products || stats.getMax() != max
+                || !java.util.Arrays.equals(histogram, counts) || first.getCount() != products
+                || mostExpensive.get(0).getPrice() != top.get(0).getPrice()) {
+            throw new IllegalStateException("aggregates disagree");
+        }
+        System.out.printf("  %-34s %8.2f ms%n", "listProducts, loop and sort", external / 1e6);
+        System.out.printf("  %-34s %8.2f ms%n", "first statistics + top-N (builds)", firstCall / 1e6);
+        System.out.printf("  %-34s %8.3f ms%n", "priceStatistics", statistics / 1e6);
+        System.out.printf("  %-34s %8.2f ms%n", "priceHistogram", scan / 1e6);
+        System.out.printf("  %-34s %8.3f ms%n", "findMostExpensiveProducts(10)", topN / 1e6);
+    }
+
+    // bringing a replica up to date after some changes: pulling listProducts() in full, as replicas
+    // used to, against applying the journaled changes since its last position
+    static void replicaSync(int products, int changes) {
+        ChangeJournal journal = new ChangeJournal(Math.max(changes, 1));
+        InventoryManager primary = new InventoryManager(new InMemoryProductStore(), journal);
+        for (int id = 0; id < products; id++) {
+            primary.addProduct(new Product(id, "product " + id, id));
+        }
+        InventoryManager replica = new InventoryManager();
+        replica.addProducts(primary.listProducts());
+        long position = journal.lastSequence();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < changes; i++) {
+            primary.updateProductPrice(random.nextInt(products), random.nextInt(1_000));
+        }
+
+        long start = System.nanoTime();
+        InventoryManager pulled = new InventoryManager();
+        pulled.addProducts(primary.listProducts());
+        long fullPull = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (ChangeJournal.Change change : journal.changesAfter(position, Integer.MAX_VALUE)) {
+            change.applyTo(replica);
+        }
+        long tail = System.nanoTime() - start;
+
+        System.out.printf("  %-28s %10.2f ms%n", "full listProducts() pull", fullPull / 1e6);
+        System.out.printf("  %-28s %10.2f ms  (%,d changes)%n", "journal tail", tail / 1e6, changes);
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    private static long run(int threads, int perThread, Runnable op) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < perThread; i++) {
+                    op.run();
+                }
+                return null;
+            }));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> f : futures) {
+            f.get();
+        }
+        long elapsed = System.nanoTime() - begin;
+        pool.shutdown();
+        return elapsed;
+    }
+
+    private static long perSecond(long operations, long nanos) {
+        return operations * 1_000_000_000L / Math.max(1, nanos);
+    }
+
+    // the original get-then-put InventoryManager, with every call under one lock
+    private static final class LockedHashMapInventory {
+        private final Map<Integer, Product> inventory = new HashMap<>();
+
+        synchronized void addProduct(Product product) {
+            inventory.put(product.getId(), product);
+        }
+
+        synchronized Product getProduct(int id) {
+            return inventory.get(id);
+        }
+
+        synchronized void updateProductPrice(int id, double newPrice) {
+            Product product = inventory.get(id);
+            if (product != null) {
+                inventory.put(id, new Product(product.getId(), product.getName(), newPrice));
+            }
+        }
+    }
+}
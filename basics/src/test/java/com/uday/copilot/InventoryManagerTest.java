@@ -5,7 +5,14 @@ import org.junit.Test;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 public class InventoryManagerTest {
 
@@ -97,4 +104,301 @@ public class InventoryManagerTest {
     public void testGetNonExistentReturnsNull() {
         assertNull(manager.getProduct(999));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testUpdateProductName() {
+        manager.addProduct(new Product(1, "Laptop", 999.99));
+
+        manager.updateProductName(1, "Notebook");
+        Product updated = manager.getProduct(1);
+        assertEquals("Notebook", updated.getName());
+        assertEquals(999.99, updated.getPrice(), 0.0001);
+    }
+
+    @Test
+    public void testUpdateProductAppliesFunctionToCurrentValue() {
+        manager.addProduct(new Product(1, "Laptop", 100.0));
+
+        Product updated = manager.updateProduct(1, p -> new Product(p.getId(), p.getName(), p.getPrice() * 2));
+        assertEquals(200.0, updated.getPrice(), 0.0001);
+        assertEquals(200.0, manager.getProduct(1).getPrice(), 0.0001);
+        assertNull(manager.updateProduct(99, p -> p));
+    }
+
+    @Test
+    public void testUpdateProductReturningNullRemoves() {
+        manager.addProduct(new Product(1, "Laptop", 100.0));
+
+        assertNull(manager.updateProduct(1, p -> null));
+        assertNull(manager.getProduct(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUpdateProductRejectsIdChange() {
+        manager.addProduct(new Product(1, "Laptop", 100.0));
+        manager.updateProduct(1, p -> new Product(2, p.getName(), p.getPrice()));
+    }
+
+    @Test
+    public void testConcurrentUpdatesAreNotLost() throws Exception {
+        int products = 8;
+        int threads = 8;
+        int incrementsPerThread = 5_000;
+        for (int id = 0; id < products; id++) {
+            manager.addProduct(new Product(id, "item" + id, 0.0));
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < incrementsPerThread; i++) {
+                    int id = (i + offset) % products;
+                    manager.updateProduct(id, p -> new Product(p.getId(), p.getName(), p.getPrice() + 1));
+                    // concurrent readers, renames and unrelated inserts must not disturb the counts
+                    manager.updateProductName(id, "item" + id);
+                    manager.getProduct(id);
+                    manager.addProduct(new Product(products + offset, "scratch", 0.0));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> f : futures) {
+            f.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        double total = 0;
+        for (int id = 0; id < products; id++) {
+            total += manager.getProduct(id).getPrice();
+            assertEquals("item" + id, manager.getProduct(id).getName());
+        }
+        assertEquals((double) threads * incrementsPerThread, total, 0.0001);
+        assertEquals(products + threads, manager.listProducts().size());
+    }
+
+    @Test
+    public void testManyProductsAddAndRemove() {
+        for (int id = 0; id < 100_000; id++) {
+            manager.addProduct(new Product(id, "item" + id, id));
+        }
+        for (int id = 0; id < 100_000; id += 2) {
+            manager.removeProduct(id);
+        }
+
+        assertEquals(50_000, manager.listProducts().size());
+        for (int id = 0; id < 100_000; id++) {
+            if (id % 2 == 0) {
+                assertNull(manager.getProduct(id));
+            } else {
+                assertEquals(id, manager.getProduct(id).getPrice(), 0.0);
+            }
+        }
+    }
+
+    @Test
+    public void testFindProductsByPriceRange() {
+        manager.addProduct(new Product(1, "Laptop", 999.99));
+        manager.addProduct(new Product(2, "Phone", 499.99));
+        manager.addProduct(new Product(3, "Tablet", 299.99));
+        manager.addProduct(new Product(4, "Mouse", 19.99));
+        manager.addProduct(new Product(5, "Monitor", 299.99));
+
+        assertEquals(List.of(3, 5, 2), ids(manager.findProductsByPrice(100, 500, 0, 10)));
+        assertEquals(List.of(5, 2), ids(manager.findProductsByPrice(100, 500, 1, 10)));
+        assertEquals(List.of(3), ids(manager.findProductsByPrice(100, 500, 0, 1)));
+        assertEquals(List.of(2), ids(manager.findProductsByPrice(499.99, 499.99, 0, 10)));
+        assertTrue(manager.findProductsByPrice(500, 100, 0, 10).isEmpty());
+    }
+
+    @Test
+    public void testFindProductsByNamePrefixIgnoresCase() {
+        manager.addProduct(new Product(1, "Laptop", 999.99));
+        manager.addProduct(new Product(2, "lapdesk", 49.99));
+        manager.addProduct(new Product(3, "LAP tray", 9.99));
+        manager.addProduct(new Product(4, "Phone", 499.99));
+
+        assertEquals(List.of(3, 2, 1), ids(manager.findProductsByNamePrefix("Lap", 0, 10)));
+        assertEquals(List.of(2), ids(manager.findProductsByNamePrefix("lapd", 0, 10)));
+        assertEquals(List.of(1), ids(manager.findProductsByNamePrefix("LAPT", 0, 10)));
+        assertEquals(List.of(2), ids(manager.findProductsByNamePrefix("lap", 1, 1)));
+        assertEquals(4, manager.findProductsByNamePrefix("", 0, 10).size());
+        assertTrue(manager.findProductsByNamePrefix("x", 0, 10).isEmpty());
+    }
+
+    @Test
+    public void testIndexesFollowUpdatesAndRemovals() {
+        manager.addProduct(new Product(1, "Laptop", 999.99));
+        manager.addProduct(new Product(2, "Phone", 499.99));
+        // build the indexes, then change products underneath them
+        assertEquals(1, manager.findProductsByPrice(0, 1_000, 0, 1).size());
+
+        manager.updateProductPrice(1, 199.99);
+        manager.updateProductName(2, "Laptop bag");
+        manager.addProduct(new Product(3, "Lamp", 29.99));
+        manager.removeProduct(3);
+        manager.addProduct(new Product(2, "Laptop sleeve", 39.99));
+
+        assertEquals(List.of(2, 1), ids(manager.findProductsByPrice(0, 1_000, 0, 10)));
+        assertTrue(manager.findProductsByPrice(400, 1_000, 0, 10).isEmpty());
+        assertEquals(List.of(1, 2), ids(manager.findProductsByNamePrefix("lapt", 0, 10)));
+        assertTrue(manager.findProductsByNamePrefix("phone", 0, 10).isEmpty());
+        assertTrue(manager.findProductsByNamePrefix("lamp", 0, 10).isEmpty());
+    }
+
+    @Test
+    public void testIndexBuiltWhileProductsChangeMatchesTheStore() throws Exception {
+        for (int id = 0; id < 100_000; id++) {
+            manager.addProduct(new Product(id, "p" + id, id));
+        }
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        CountDownLatch started = new CountDownLatch(1);
+        Future<?> writer = pool.submit(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < 200_000; i++) {
+                int id = random.nextInt(100_000);
+                switch (i % 3) {
+                    case 0: manager.updateProductPrice(id, random.nextInt(100_000)); break;
+                    case 1: manager.removeProduct(id); break;
+                    default: manager.addProduct(new Product(id, "q" + i, random.nextInt(100_000))); break;
+                }
+                if (i == 1_000) {
+                    started.countDown();
+                }
+            }
+        });
+        started.await();
+        manager.findProductsByPrice(0, 1, 0, 1);
+        writer.get(60, TimeUnit.SECONDS);
+        pool.shutdown();
+
+        List<Product> products = manager.listProducts();
+        List<Product> byPrice = manager.findProductsByPrice(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, 0, Integer.MAX_VALUE);
+        assertEquals(products.size(), byPrice.size());
+        assertEquals(products.size(), manager.findProductsByNamePrefix("", 0, Integer.MAX_VALUE).size());
+        for (int i = 1; i < byPrice.size(); i++) {
+            assertTrue(byPrice.get(i - 1).getPrice() <= byPrice.get(i).getPrice());
+        }
+    }
+
+    @Test
+    public void testPriceStatisticsFollowChanges() {
+        PriceStatistics empty = manager.priceStatistics();
+        assertEquals(0, empty.getCount());
+        assertTrue(Double.isNaN(empty.getAverage()));
+
+        manager.addProduct(new Product(1, "Laptop", 1000.0));
+        manager.addProduct(new Product(2, "Phone", 500.0));
+        manager.addProduct(new Product(3, "Lamp", 30.0));
+        manager.updateProductPrice(1, 900.0);
+        manager.removeProduct(3);
+        manager.addProducts(List.of(new Product(4, "Mouse", 20.0), new Product(2, "Phone", 400.0)));
+
+        PriceStatistics stats = manager.priceStatistics();
+        assertEquals(3, stats.getCount());
+        assertEquals(1320.0, stats.getSum(), 1e-9);
+        assertEquals(20.0, stats.getMin(), 0.0);
+        assertEquals(900.0, stats.getMax(), 0.0);
+        assertEquals(440.0, stats.getAverage(), 1e-9);
+    }
+
+    @Test
+    public void testPriceStatisticsOfExistingStoreMatchScan() {
+        InMemoryProductStore store = new InMemoryProductStore();
+        double sum = 0;
+        for (int id = 0; id < 10_000; id++) {
+            store.put(new Product(id, "p" + id, id % 100 + 0.25));
+            sum += id % 100 + 0.25;
+        }
+        InventoryManager filled = new InventoryManager(store);
+        filled.updateProductPrice(0, Double.POSITIVE_INFINITY);
+
+        assertEquals(Double.POSITIVE_INFINITY, filled.priceStatistics().getSum(), 0.0);
+        filled.updateProductPrice(0, 0.25);
+        PriceStatistics stats = filled.priceStatistics();
+        assertEquals(10_000, stats.getCount());
+        assertEquals(sum, stats.getSum(), 1e-6);
+        assertEquals(0.25, stats.getMin(), 0.0);
+        assertEquals(99.25, stats.getMax(), 0.0);
+    }
+
+    @Test
+    public void testPriceHistogram() {
+        manager.addProduct(new Product(1, "Laptop", 999.99));
+        manager.addProduct(new Product(2, "Phone", 500.0));
+        manager.addProduct(new Product(3, "Lamp", 29.99));
+        manager.addProduct(new Product(4, "Mouse", 9.99));
+        manager.addProduct(new Product(5, "Cable", 100.0));
+
+        assertArrayEquals(new long[] {1, 1, 2, 1}, manager.priceHistogram(10, 100, 999.99));
+        assertArrayEquals(new long[] {5}, manager.priceHistogram());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPriceHistogramRejectsUnorderedBoundaries() {
+        manager.priceHistogram(100, 10);
+    }
+
+    @Test
+    public void testFindMostExpensiveProducts() {
+        manager.addProduct(new Product(1, "Laptop", 999.99));
+        manager.addProduct(new Product(2, "Phone", 499.99));
+        manager.addProduct(new Product(3, "Lamp", 29.99));
+        manager.addProduct(new Product(4, "Tablet", 499.99));
+
+        assertEquals(List.of(1, 4, 2), ids(manager.findMostExpensiveProducts(3)));
+        manager.updateProductPrice(3, 2_000);
+        manager.removeProduct(1);
+        assertEquals(List.of(3, 4), ids(manager.findMostExpensiveProducts(2)));
+        assertTrue(manager.findMostExpensiveProducts(0).isEmpty());
+    }
+
+    @Test
+    public void testPriceStatisticsUnderConcurrentUpdates() throws Exception {
+        for (int id = 0; id < 1_000; id++) {
+            manager.addProduct(new Product(id, "p" + id, 1.0));
+        }
+        manager.priceStatistics();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    int id = ThreadLocalRandom.current().nextInt(1_000);
+                    manager.updateProductPrice(id, 1 + (i & 7));
+                }
+            }));
+        }
+        for (Future<?> f : futures) {
+            f.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        double sum = 0;
+        for (Product p : manager.listProducts()) {
+            sum += p.getPrice();
+        }
+        PriceStatistics stats = manager.priceStatistics();
+        assertEquals(1_000, stats.getCount());
+        assertEquals(sum, stats.getSum(), 1e-9);
+        long[] counts = manager.priceHistogram(2);
+        assertEquals(1_000, counts[0] + counts[1]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFindRejectsNegativeOffset() {
+        manager.findProductsByPrice(0, 10, -1, 10);
+    }
+
+    private static List<Integer> ids(List<Product> products) {
+        List<Integer> ids = new ArrayList<>();
+        for (Product p : products) {
+            ids.add(p.getId());
+        }
+        return ids;
+    }
+}
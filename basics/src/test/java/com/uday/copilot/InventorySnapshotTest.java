@@ -0,0 +1,148 @@
+package com.uday.copilot;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class InventorySnapshotTest {
+
+    private InventoryManager manager;
+
+    @Before
+    public void setUp() {
+        manager = new InventoryManager();
+        manager.addProduct(new Product(1, "Laptop", 999.99));
+        manager.addProduct(new Product(2, "Phone", 499.99));
+    }
+
+    @Test
+    public void testSnapshotIgnoresLaterChanges() {
+        try (InventorySnapshot snapshot = manager.snapshot()) {
+            manager.updateProductPrice(1, 899.99);
+            manager.removeProduct(2);
+            manager.addProduct(new Product(3, "Tablet", 299.99));
+            manager.updateProductName(1, "Notebook");
+
+            assertEquals(999.99, snapshot.getProduct(1).getPrice(), 0.0);
+            assertEquals("Laptop", snapshot.getProduct(1).getName());
+            assertEquals("Phone", snapshot.getProduct(2).getName());
+            assertNull(snapshot.getProduct(3));
+            assertEquals(List.of(1, 2), sortedIds(snapshot.listProducts()));
+
+            assertEquals("Notebook", manager.getProduct(1).getName());
+            assertNull(manager.getProduct(2));
+            assertEquals(List.of(1, 3), sortedIds(manager.listProducts()));
+        }
+    }
+
+    @Test
+    public void testSnapshotsTakenAtDifferentTimes() {
+        InventorySnapshot first = manager.snapshot();
+        manager.updateProductPrice(1, 1.0);
+        InventorySnapshot second = manager.snapshot();
+        manager.updateProductPrice(1, 2.0);
+        manager.removeProduct(1);
+
+        assertEquals(999.99, first.getProduct(1).getPrice(), 0.0);
+        assertEquals(1.0, second.getProduct(1).getPrice(), 0.0);
+        first.close();
+        // dropping the history only the first snapshot needed leaves the second intact
+        assertEquals(1.0, second.getProduct(1).getPrice(), 0.0);
+        assertEquals(List.of(1, 2), sortedIds(second.listProducts()));
+        second.close();
+
+        try (InventorySnapshot third = manager.snapshot()) {
+            assertNull(third.getProduct(1));
+            assertEquals(List.of(2), sortedIds(third.listProducts()));
+        }
+    }
+
+    @Test
+    public void testProductReaddedAfterRemoval() {
+        try (InventorySnapshot snapshot = manager.snapshot()) {
+            manager.removeProduct(1);
+            manager.addProduct(new Product(1, "Refurbished laptop", 599.99));
+
+            assertEquals("Laptop", snapshot.getProduct(1).getName());
+            assertEquals(2, snapshot.listProducts().size());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testClosedSnapshotRejectsReads() {
+        InventorySnapshot snapshot = manager.snapshot();
+        snapshot.close();
+        snapshot.close();
+        snapshot.getProduct(1);
+    }
+
+    @Test
+    public void testSnapshotsAreConsistentUnderConcurrentWrites() throws Exception {
+        int products = 2_000;
+        for (int id = 0; id < products; id++) {
+            manager.addProduct(new Product(id, "item" + id, 0));
+        }
+        // the writer sets every price to the round number, in id order, so any point-in-time view
+        // shows a prefix of ids at round r and the rest at round r - 1
+        AtomicBoolean stop = new AtomicBoolean();
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        Future<?> writer = pool.submit(() -> {
+            for (int round = 1; !stop.get(); round++) {
+                for (int id = 0; id < products; id++) {
+                    manager.updateProductPrice(id, round);
+                }
+            }
+            return null;
+        });
+        List<Future<Integer>> readers = new ArrayList<>();
+        for (int r = 0; r < 2; r++) {
+            readers.add(pool.submit(() -> {
+                int checked = 0;
+                for (int i = 0; i < 200; i++) {
+                    try (InventorySnapshot snapshot = manager.snapshot()) {
+                        List<Product> view = snapshot.listProducts();
+                        assertEquals(products, view.size());
+                        view.sort(Comparator.comparingInt(Product::getId));
+                        double first = view.get(0).getPrice();
+                        for (Product p : view) {
+                            double price = p.getPrice();
+                            assertTrue(price == first || price == first - 1);
+                            assertEquals(price, snapshot.getProduct(p.getId()).getPrice(), 0.0);
+                            first = Math.min(first, price + 1);
+                        }
+                        checked++;
+                    }
+                }
+                return checked;
+            }));
+        }
+        try {
+            for (Future<Integer> reader : readers) {
+                assertEquals(200, (int) reader.get(60, TimeUnit.SECONDS));
+            }
+        } finally {
+            stop.set(true);
+            writer.get(60, TimeUnit.SECONDS);
+            pool.shutdown();
+        }
+    }
+
+    private static List<Integer> sortedIds(List<Product> products) {
+        List<Integer> ids = new ArrayList<>();
+        for (Product p : products) {
+            ids.add(p.getId());
+        }
+        ids.sort(null);
+        return ids;
+    }
+}
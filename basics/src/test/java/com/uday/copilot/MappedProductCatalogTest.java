@@ -0,0 +1,234 @@
+package com.uday.copilot;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class MappedProductCatalogTest {
+
+    private Path dir;
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("catalog");
+        file = dir.resolve("products.cat");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    @Test
+    public void testReopenRestoresProducts() throws IOException {
+        try (MappedProductCatalog catalog = MappedProductCatalog.create(file, 100, 32)) {
+            catalog.put(new Product(1, "Laptop", 999.99));
+            catalog.put(new Product(2, "Smartphone", 499.99));
+            catalog.put(new Product(3, "Tablet", 299.99));
+            catalog.remove(2);
+        }
+        try (MappedProductCatalog catalog = MappedProductCatalog.open(file)) {
+            assertEquals(2, catalog.size());
+            assertEquals("Laptop", catalog.get(1).getName());
+            assertEquals(999.99, catalog.get(1).getPrice(), 0.0);
+            assertNull(catalog.get(2));
+            assertEquals("Tablet", catalog.get(3).getName());
+        }
+    }
+
+    @Test
+    public void testPutExistingIdUpdatesInPlace() throws IOException {
+        try (MappedProductCatalog catalog = MappedProductCatalog.create(file, 10, 32)) {
+            catalog.put(new Product(1, "Laptop", 999.99));
+            long length = Files.size(file);
+
+            Product previous = catalog.put(new Product(1, "Notebook", 899.99));
+            assertEquals("Laptop", previous.getName());
+            assertEquals(1, catalog.size());
+            assertEquals(length, Files.size(file));
+        }
+        try (MappedProductCatalog catalog = MappedProductCatalog.open(file)) {
+            assertEquals("Notebook", catalog.get(1).getName());
+            assertEquals(899.99, catalog.get(1).getPrice(), 0.0);
+        }
+    }
+
+    @Test
+    public void testGrowsBeyondInitialCapacity() throws IOException {
+        try (MappedProductCatalog catalog = MappedProductCatalog.create(file, 10, 16)) {
+            for (int id = 0; id < 10_000; id++) {
+                catalog.put(new Product(id, "p" + id, id));
+            }
+            assertEquals(10_000, catalog.size());
+            assertEquals("p9999", catalog.get(9_999).getName());
+        }
+        try (MappedProductCatalog catalog = MappedProductCatalog.open(file)) {
+            assertEquals(10_000, catalog.size());
+            for (int id = 0; id < 10_000; id++) {
+                assertEquals(id, catalog.get(id).getPrice(), 0.0);
+            }
+        }
+        assertFalse(Files.exists(dir.resolve("products.cat.grow")));
+    }
+
+    @Test
+    public void testFailedGrowKeepsTheOriginalTable() throws IOException {
+        // a non-empty directory where the grown file goes makes the rebuild fail before it starts
+        Path blocker = Files.createDirectory(dir.resolve("products.cat.grow"));
+        Files.createFile(blocker.resolve("keep"));
+        try (MappedProductCatalog catalog = MappedProductCatalog.create(file, 10, 16)) {
+            int id = 0;
+            try {
+                for (; id < 1_000; id++) {
+                    catalog.put(new Product(id, "p" + id, id));
+                }
+                fail("expected the catalog to need growing");
+            } catch (UncheckedIOException expected) {
+            }
+            assertEquals(id, catalog.size());
+            assertNull(catalog.get(id));
+            for (int i = 0; i < id; i++) {
+                assertEquals("p" + i, catalog.get(i).getName());
+            }
+
+            Files.delete(blocker.resolve("keep"));
+            Files.delete(blocker);
+            for (; id < 1_000; id++) {
+                catalog.put(new Product(id, "p" + id, id));
+            }
+        }
+        try (MappedProductCatalog catalog = MappedProductCatalog.open(file)) {
+            assertEquals(1_000, catalog.size());
+            assertEquals("p999", catalog.get(999).getName());
+        }
+    }
+
+    @Test
+    public void testRandomOperationsMatchHashMap() throws IOException {
+        Map<Integer, Product> expected = new HashMap<>();
+        Random random = new Random(7);
+        try (MappedProductCatalog catalog = MappedProductCatalog.create(file, 1_000, 16)) {
+            for (int i = 0; i < 50_000; i++) {
+                int id = random.nextInt(2_000);
+                if (random.nextInt(3) == 0) {
+                    Product removed = expected.remove(id);
+                    Product actual = catalog.remove(id);
+                    assertEquals(removed == null, actual == null);
+                } else {
+                    expected.put(id, new Product(id, "n" + i, i));
+                    catalog.put(expected.get(id));
+                }
+            }
+            assertEquals(expected.size(), catalog.size());
+            for (int id = 0; id < 2_000; id++) {
+                Product p = catalog.get(id);
+                if (expected.containsKey(id)) {
+                    assertEquals(expected.get(id).getName(), p.getName());
+                } else {
+                    assertNull(p);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testEnsureCapacityGrowsOnceAndKeepsProducts() throws IOException {
+        try (MappedProductCatalog catalog = MappedProductCatalog.create(file, 10, 16)) {
+            catalog.put(new Product(1, "Laptop", 999.99));
+            catalog.ensureCapacity(100_000);
+            long length = Files.size(file);
+            for (int id = 2; id <= 100_000; id++) {
+                catalog.put(new Product(id, "p" + id, id));
+            }
+            assertEquals(length, Files.size(file));
+            assertEquals("Laptop", catalog.get(1).getName());
+            assertEquals(100_000, catalog.size());
+        }
+    }
+
+    @Test
+    public void testPartsCoverEveryProductOnce() throws IOException {
+        try (MappedProductCatalog catalog = MappedProductCatalog.create(file, 10, 16)) {
+            for (int id = 0; id < 5_000; id++) {
+                catalog.put(new Product(id, "p" + id, id));
+            }
+            int[] seen = new int[5_000];
+            for (int part = 0; part < catalog.partCount(); part++) {
+                catalog.forEachInPart(part, p -> seen[p.getId()]++);
+            }
+            for (int count : seen) {
+                assertEquals(1, count);
+            }
+        }
+    }
+
+    @Test
+    public void testStoresNullAndMultiByteNames() throws IOException {
+        try (MappedProductCatalog catalog = MappedProductCatalog.create(file, 10, 32)) {
+            catalog.put(new Product(1, null, 1.0));
+            catalog.put(new Product(2, "Café crème", 2.0));
+            catalog.put(new Product(3, "", 3.0));
+
+            assertNull(catalog.get(1).getName());
+            assertEquals("Café crème", catalog.get(2).getName());
+            assertEquals("", catalog.get(3).getName());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsNameLongerThanRecord() throws IOException {
+        try (MappedProductCatalog catalog = MappedProductCatalog.create(file, 10, 14)) {
+            assertEquals(14, catalog.maxNameBytes());
+            catalog.put(new Product(1, "a name that does not fit", 1.0));
+        }
+    }
+
+    @Test(expected = FileAlreadyExistsException.class)
+    public void testCreateRefusesExistingFile() throws IOException {
+        Files.createFile(file);
+        MappedProductCatalog.create(file, 10, 32);
+    }
+
+    @Test(expected = IOException.class)
+    public void testOpenRejectsOtherFiles() throws IOException {
+        Files.write(file, new byte[128]);
+        MappedProductCatalog.open(file);
+    }
+
+    @Test
+    public void testInventoryManagerOverCatalog() throws IOException {
+        try (MappedProductCatalog catalog = MappedProductCatalog.create(file, 10, 32)) {
+            InventoryManager manager = new InventoryManager(catalog);
+            manager.addProduct(new Product(1, "Laptop", 999.99));
+            manager.addProduct(new Product(2, "Smartphone", 499.99));
+            manager.updateProductPrice(1, 899.99);
+            manager.removeProduct(2);
+        }
+        try (MappedProductCatalog catalog = MappedProductCatalog.open(file)) {
+            InventoryManager manager = new InventoryManager(catalog);
+            List<Product> products = manager.listProducts();
+            assertEquals(1, products.size());
+            assertEquals(899.99, manager.getProduct(1).getPrice(), 0.0);
+        }
+    }
+}
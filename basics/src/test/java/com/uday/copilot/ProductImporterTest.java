@@ -0,0 +1,139 @@
+package com.uday.copilot;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class ProductImporterTest {
+
+    private Path dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("import");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    @Test
+    public void testImportsCsvWithHeaderQuotesAndBlankLines() throws IOException {
+        Path file = dir.resolve("products.csv");
+        Files.write(file, ("id,name,price\r\n"
+                + "1,Laptop,999.99\r\n"
+                + "\r\n"
+                + "2,\"Cable, USB-C \"\"braided\"\"\",9.5\n"
+                + "3,Café table,120\n"
+                + "-4,Returns bin,0").getBytes(StandardCharsets.UTF_8));
+        InventoryManager manager = new InventoryManager();
+
+        ProductImporter.Result result = new ProductImporter(manager).importCsv(file);
+
+        assertEquals(4, result.getRows());
+        assertEquals(4, manager.listProducts().size());
+        assertEquals(999.99, manager.getProduct(1).getPrice(), 0.0);
+        assertEquals("Cable, USB-C \"braided\"", manager.getProduct(2).getName());
+        assertEquals("Café table", manager.getProduct(3).getName());
+        assertEquals("Returns bin", manager.getProduct(-4).getName());
+    }
+
+    @Test
+    public void testParallelCsvImportMatchesSequential() throws IOException {
+        Path file = dir.resolve("large.csv");
+        int rows = 150_000;
+        try (Writer out = Files.newBufferedWriter(file)) {
+            for (int id = 0; id < rows; id++) {
+                out.write(id + ",product number " + id + "," + (id % 1000) + ".25\n");
+            }
+        }
+        InventoryManager sequential = new InventoryManager();
+        InventoryManager parallel = new InventoryManager();
+
+        assertEquals(rows, new ProductImporter(sequential).importCsv(file).getRows());
+        ProductImporter.Result result = new ProductImporter(parallel, 4).importCsv(file);
+
+        assertEquals(rows, result.getRows());
+        assertTrue(result.rowsPerSecond() > 0);
+        assertEquals(rows, parallel.listProducts().size());
+        for (int id = 0; id < rows; id += 997) {
+            assertEquals(sequential.getProduct(id).getName(), parallel.getProduct(id).getName());
+            assertEquals(sequential.getProduct(id).getPrice(), parallel.getProduct(id).getPrice(), 0.0);
+        }
+        assertEquals("product number 149999", parallel.getProduct(rows - 1).getName());
+    }
+
+    @Test
+    public void testCsvLineLongerThanReadBlock() throws IOException {
+        Path file = dir.resolve("long.csv");
+        StringBuilder name = new StringBuilder();
+        while (name.length() < 3_000_000) {
+            name.append("very long name ");
+        }
+        Files.write(file, ("1,short,1\n2," + name + ",2\n3,after,3\n").getBytes(StandardCharsets.UTF_8));
+        InventoryManager manager = new InventoryManager();
+
+        assertEquals(3, new ProductImporter(manager).importCsv(file).getRows());
+        assertEquals(name.toString(), manager.getProduct(2).getName());
+        assertEquals("after", manager.getProduct(3).getName());
+    }
+
+    @Test(expected = IOException.class)
+    public void testMalformedCsvRowFails() throws IOException {
+        Path file = dir.resolve("bad.csv");
+        Files.write(file, "1,Laptop,999.99\n2,Phone,cheap\n".getBytes(StandardCharsets.UTF_8));
+        new ProductImporter(new InventoryManager()).importCsv(file);
+    }
+
+    @Test
+    public void testBinaryRoundTrip() throws IOException {
+        Path file = dir.resolve("products.bin");
+        List<Product> products = new ArrayList<>();
+        for (int id = 0; id < 100_000; id++) {
+            products.add(new Product(id, "item " + id + (id % 7 == 0 ? " ünïcode" : ""), id / 4.0));
+        }
+        ProductImporter.writeBinary(file, products);
+        InventoryManager manager = new InventoryManager();
+
+        ProductImporter.Result result = new ProductImporter(manager).importBinary(file);
+
+        assertEquals(products.size(), result.getRows());
+        assertEquals(products.size(), manager.listProducts().size());
+        assertEquals("item 77 ünïcode", manager.getProduct(77).getName());
+        assertEquals(99_999 / 4.0, manager.getProduct(99_999).getPrice(), 0.0);
+    }
+
+    @Test(expected = IOException.class)
+    public void testBinaryImportRejectsOtherFiles() throws IOException {
+        Path file = dir.resolve("products.csv");
+        Files.write(file, "1,Laptop,999.99\n".getBytes(StandardCharsets.UTF_8));
+        new ProductImporter(new InventoryManager()).importBinary(file);
+    }
+
+    @Test
+    public void testAddProductsLastDuplicateWins() {
+        InventoryManager manager = new InventoryManager();
+        manager.addProducts(List.of(new Product(1, "first", 1), new Product(2, "other", 2), new Product(1, "second", 3)));
+
+        assertEquals(2, manager.listProducts().size());
+        assertEquals("second", manager.getProduct(1).getName());
+    }
+}
@@ -0,0 +1,198 @@
+package com.uday.copilot;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.uday.copilot.StockLedger.StockView;
+
+public class StockLedgerTest {
+
+    private StockLedger ledger;
+
+    @Before
+    public void setUp() {
+        ledger = new StockLedger();
+    }
+
+    @Test
+    public void testViewReflectsPriceChangesInPlace() {
+        StockView laptop = ledger.addProduct(new Product(1, "Laptop", 999.99), 10);
+        assertEquals(1, laptop.getId());
+        assertEquals("Laptop", laptop.getName());
+        assertEquals(999.99, laptop.getPrice(), 0.0);
+        assertEquals(10, laptop.getQuantity());
+
+        assertTrue(ledger.setPrice(1, 899.99));
+        assertEquals(899.99, laptop.getPrice(), 0.0);
+        assertEquals(899.99, ledger.getPrice(1), 0.0);
+        assertSame(laptop, ledger.getProduct(1));
+
+        assertFalse(ledger.setPrice(2, 1.0));
+        assertTrue(Double.isNaN(ledger.getPrice(2)));
+        assertNull(ledger.getProduct(2));
+    }
+
+    @Test
+    public void testAddExistingIdOverwritesRow() {
+        StockView first = ledger.addProduct(new Product(1, "Laptop", 999.99), 10);
+        StockView second = ledger.addProduct(new Product(1, "Notebook", 899.99), 3);
+
+        assertSame(first, second);
+        assertEquals("Notebook", first.getName());
+        assertEquals(3, ledger.getQuantity(1));
+        assertEquals(1, ledger.size());
+    }
+
+    @Test
+    public void testReserveAndRelease() {
+        ledger.addProduct(new Product(1, "Laptop", 999.99), 5);
+
+        assertTrue(ledger.reserve(1, 3));
+        assertFalse(ledger.reserve(1, 3));
+        assertEquals(2, ledger.getQuantity(1));
+        assertTrue(ledger.release(1, 3));
+        assertTrue(ledger.reserve(1, 5));
+        assertEquals(0, ledger.getQuantity(1));
+
+        assertFalse(ledger.reserve(2, 1));
+        assertFalse(ledger.release(2, 1));
+        assertEquals(-1, ledger.getQuantity(2));
+    }
+
+    @Test
+    public void testRemoveProduct() {
+        StockView laptop = ledger.addProduct(new Product(1, "Laptop", 999.99), 5);
+        ledger.addProduct(new Product(2, "Phone", 499.99), 5);
+
+        assertTrue(ledger.removeProduct(1));
+        assertFalse(ledger.removeProduct(1));
+        assertNull(ledger.getProduct(1));
+        assertFalse(ledger.reserve(1, 1));
+        assertEquals(999.99, laptop.getPrice(), 0.0);
+        assertEquals(1, ledger.size());
+    }
+
+    @Test
+    public void testRemovedRowsAreReused() {
+        StockView laptop = ledger.addProduct(new Product(1, "Laptop", 999.99), 5);
+        ledger.removeProduct(1);
+        StockView phone = ledger.addProduct(new Product(2, "Phone", 499.99), 7);
+        ledger.setPrice(2, 450.0);
+
+        assertEquals(1, ledger.rowCount());
+        assertEquals("Laptop", laptop.getName());
+        assertEquals(999.99, laptop.getPrice(), 0.0);
+        assertEquals(5, laptop.getQuantity());
+        assertEquals(450.0, phone.getPrice(), 0.0);
+        assertEquals(7, ledger.getQuantity(2));
+
+        for (int id = 3; id < 100_000; id++) {
+            ledger.addProduct(new Product(id, "p" + id, id), id);
+            ledger.removeProduct(id);
+        }
+        // the phone keeps its row, and the churn cycles through one more
+        assertEquals(2, ledger.rowCount());
+        assertEquals(1, ledger.size());
+    }
+
+    @Test
+    public void testWritesNeverLandOnAReusedRow() throws Exception {
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        AtomicBoolean done = new AtomicBoolean();
+        // keeps repricing product 2, which keeps handing its row over to product 3
+        Future<?> repricer = pool.submit(() -> {
+            while (!done.get()) {
+                ledger.setPrice(2, 22.0);
+                ledger.release(2, 1);
+            }
+        });
+        try {
+            for (int i = 0; i < 100_000; i++) {
+                ledger.addProduct(new Product(2, "two", 2.0), 0);
+                ledger.removeProduct(2);
+                ledger.addProduct(new Product(3, "three", 3.0), 0);
+                assertEquals(3.0, ledger.getPrice(3), 0.0);
+                assertEquals(0, ledger.getQuantity(3));
+                ledger.removeProduct(3);
+            }
+        } finally {
+            done.set(true);
+            repricer.get(30, TimeUnit.SECONDS);
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testReleaseRefusesToOverflow() {
+        ledger.addProduct(new Product(1, "Laptop", 999.99), Long.MAX_VALUE - 1);
+
+        assertTrue(ledger.release(1, 1));
+        try {
+            ledger.release(1, 1);
+            fail("expected the release to overflow");
+        } catch (IllegalArgumentException expected) {
+        }
+        assertEquals(Long.MAX_VALUE, ledger.getQuantity(1));
+    }
+
+    @Test
+    public void testManyProductsSpanPages() {
+        for (int id = 0; id < 20_000; id++) {
+            ledger.addProduct(new Product(id, "p" + id, id), id);
+        }
+        for (int id = 0; id < 20_000; id += 2) {
+            ledger.removeProduct(id);
+        }
+        assertEquals(10_000, ledger.size());
+        int[] seen = {0};
+        ledger.forEach(view -> {
+            assertEquals(1, view.getId() % 2);
+            assertEquals(view.getId(), view.getQuantity());
+            seen[0]++;
+        });
+        assertEquals(10_000, seen[0]);
+        assertEquals(19_999.0, ledger.getPrice(19_999), 0.0);
+    }
+
+    @Test
+    public void testConcurrentReservationsNeverOversell() throws Exception {
+        int stock = 10_000;
+        ledger.addProduct(new Product(1, "Laptop", 999.99), stock);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int worker = t;
+            futures.add(pool.submit(() -> {
+                int reserved = 0;
+                for (int i = 0; i < 5_000; i++) {
+                    if (ledger.reserve(1, 1)) {
+                        reserved++;
+                    }
+                    // repricing and growth running alongside must not disturb the stock count
+                    ledger.setPrice(1, i);
+                    ledger.addProduct(new Product(100_000 * (worker + 1) + i, "filler", 0), 0);
+                }
+                return reserved;
+            }));
+        }
+        int reserved = 0;
+        for (Future<Integer> f : futures) {
+            reserved += f.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        assertEquals(stock, reserved);
+        assertEquals(0, ledger.getQuantity(1));
+        assertEquals(1 + 4 * 5_000, ledger.size());
+    }
+}
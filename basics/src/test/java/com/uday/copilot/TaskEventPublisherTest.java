@@ -0,0 +1,252 @@
+package com.uday.copilot;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.uday.copilot.TaskManager.Task;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TaskEventPublisherTest {
+
+    private ExecutorService executor;
+    private TaskManager manager;
+    private TaskEventPublisher publisher;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+        manager = new TaskManager();
+        publisher = new TaskEventPublisher(executor, 1_024);
+        manager.addListener(publisher);
+    }
+
+    @After
+    public void tearDown() {
+        publisher.close();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testEventsInOrder() throws Exception {
+        Recorder recorder = new Recorder(Long.MAX_VALUE, 3);
+        publisher.subscribe(recorder);
+        Task t = manager.addTask("Watched");
+        manager.markTaskDone(t.getId());
+        // already done, so no second DONE event
+        manager.markTaskDone("Watched");
+        manager.removeTask(t.getId());
+        assertTrue(recorder.received.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("ADDED [X] Watched", "DONE [X] Watched", "REMOVED [X] Watched"), recorder.events());
+        assertSame(t, recorder.tasks.get(0));
+    }
+
+    @Test
+    public void testManagerEventsPublisher() throws Exception {
+        Recorder recorder = new Recorder(Long.MAX_VALUE, 2);
+        manager.events().subscribe(recorder);
+        assertSame(manager.events(), manager.events());
+        manager.addTasks(List.of("One", "Two"));
+        assertTrue(recorder.received.await(5, TimeUnit.SECONDS));
+        assertEquals(2, recorder.events().size());
+    }
+
+    @Test
+    public void testCloseCompletesManagerEventsSubscribers() throws Exception {
+        Recorder recorder = new Recorder(Long.MAX_VALUE, 1);
+        manager.events().subscribe(recorder);
+        manager.addTask("Before close");
+        manager.close();
+        assertTrue(recorder.completed.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("ADDED [ ] Before close"), recorder.events());
+        // the manager keeps working, but its publisher stays closed
+        manager.addTask("After close");
+        Recorder late = new Recorder(Long.MAX_VALUE, 0);
+        manager.events().subscribe(late);
+        assertTrue(late.completed.await(5, TimeUnit.SECONDS));
+        assertEquals(2, manager.listTasks().size());
+    }
+
+    @Test
+    public void testDoneNeverFollowsRemoved() throws Exception {
+        int count = 2_000;
+        List<Task> added = manager.addTasks(descriptions(count));
+        Map<Task, TaskEvent.Type> last = new ConcurrentHashMap<>();
+        List<Task> outOfOrder = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch removed = new CountDownLatch(count);
+        publisher.subscribe(new Flow.Subscriber<TaskEvent>() {
+            public void onSubscribe(Flow.Subscription s) {
+                s.request(Long.MAX_VALUE);
+            }
+
+            public void onNext(TaskEvent item) {
+                if (last.put(item.getTask(), item.getType()) == TaskEvent.Type.REMOVED) {
+                    outOfOrder.add(item.getTask());
+                }
+                if (item.getType() == TaskEvent.Type.REMOVED) {
+                    removed.countDown();
+                }
+            }
+
+            public void onError(Throwable throwable) {
+            }
+
+            public void onComplete() {
+            }
+        });
+        List<UUID> ids = new ArrayList<>();
+        for (Task t : added) {
+            ids.add(t.getId());
+        }
+        Thread marker = new Thread(() -> manager.markTasksDone(ids));
+        marker.start();
+        for (Task t : added) {
+            manager.removeTask(t.getId());
+        }
+        marker.join();
+        assertTrue(removed.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(), outOfOrder);
+    }
+
+    @Test
+    public void testSlowSubscriberDoesNotStallWriters() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        // requests one event, then blocks its delivery thread until released
+        publisher.subscribe(new Flow.Subscriber<TaskEvent>() {
+            public void onSubscribe(Flow.Subscription s) {
+                s.request(Long.MAX_VALUE);
+            }
+
+            public void onNext(TaskEvent item) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            public void onError(Throwable throwable) {
+            }
+
+            public void onComplete() {
+            }
+        });
+        long start = System.nanoTime();
+        for (int i = 0; i < 20_000; i++) {
+            manager.addTask("task " + i);
+        }
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        release.countDown();
+        assertEquals(20_000, manager.listTasks().size());
+        assertTrue("dropped " + publisher.droppedEvents(), publisher.droppedEvents() > 0);
+        assertTrue("adds took " + millis + "ms", millis < 10_000);
+    }
+
+    @Test
+    public void testManySubscribersAccountForEveryEvent() throws Exception {
+        int subscribers = 16;
+        int events = 20_000;
+        List<Recorder> recorders = new ArrayList<>();
+        for (int i = 0; i < subscribers; i++) {
+            // each subscriber keeps a small window of outstanding demand
+            Recorder r = new Recorder(64, events);
+            recorders.add(r);
+            publisher.subscribe(r);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < events; i++) {
+            manager.addTask("task " + i);
+        }
+        // every event reaches each subscriber or is counted as dropped for it, all within one deadline
+        long expected = (long) subscribers * events;
+        long deadline = start + TimeUnit.SECONDS.toNanos(30);
+        long delivered;
+        while ((delivered = delivered(recorders)) + publisher.droppedEvents() < expected
+                && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(1);
+        }
+        assertEquals(expected, delivered + publisher.droppedEvents());
+    }
+
+    private static List<String> descriptions(int count) {
+        List<String> descriptions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            descriptions.add("task " + i);
+        }
+        return descriptions;
+    }
+
+    private static long delivered(List<Recorder> recorders) {
+        long delivered = 0;
+        for (Recorder r : recorders) {
+            delivered += r.count.get();
+        }
+        return delivered;
+    }
+
+    private static final class Recorder implements Flow.Subscriber<TaskEvent> {
+        final long window;
+        final CountDownLatch received;
+        final CountDownLatch completed = new CountDownLatch(1);
+        final AtomicLong count = new AtomicLong();
+        final List<String> events = new ArrayList<>();
+        final List<Task> tasks = new ArrayList<>();
+        Flow.Subscription subscription;
+        long outstanding;
+
+        Recorder(long window, int expected) {
+            this.window = window;
+            this.received = new CountDownLatch(expected);
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription s) {
+            subscription = s;
+            outstanding = window;
+            s.request(window);
+        }
+
+        @Override
+        public void onNext(TaskEvent item) {
+            synchronized (this) {
+                if (events.size() < 100) {
+                    events.add(item.toString());
+                    tasks.add(item.getTask());
+                }
+            }
+            count.incrementAndGet();
+            received.countDown();
+            if (window != Long.MAX_VALUE && --outstanding <= window / 2) {
+                subscription.request(window - outstanding);
+                outstanding = window;
+            }
+        }
+
+        synchronized List<String> events() {
+            return new ArrayList<>(events);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+
+        @Override
+        public void onComplete() {
+            completed.countDown();
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package com.uday.copilot;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.uday.copilot.TaskManager.Task;
+
+/**
+ * Rough throughput comparisons for TaskManager. Not part of the unit test run;
+ * start it with its main method and read the printed numbers.
+ */
+public class TaskManagerBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    /**
+     * Usage: {@code TaskManagerBenchmark [batch|wal|memory|scaling|search|fanout] [args...]}
+     */
+    public static void main(String[] args) throws Exception {
+        String scenario = args.length > 0 ? args[0] : "batch";
+        switch (scenario) {
+            case "batch": {
+                int batchSize = args.length > 1 ? Integer.parseInt(args[1]) : 5_000;
+                int batches = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+                for (int round = 0; round < ROUNDS; round++) {
+                    System.out.println("round " + (round + 1));
+                    batchVersusPerItem(batchSize, batches);
+                }
+                break;
+            }
+            case "wal": {
+                int events = args.length > 1 ? Integer.parseInt(args[1]) : 10_000_000;
+                int threads = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+                durableAppendAndRecovery(events, threads);
+                break;
+            }
+            case "memory": {
+                int tasks = args.length > 1 ? Integer.parseInt(args[1]) : 10_000_000;
+                int distinct = args.length > 2 ? Integer.parseInt(args[2]) : 1_000;
+                memoryFootprint(tasks, distinct);
+                break;
+            }
+            case "scaling": {
+                int small = args.length > 1 ? Integer.parseInt(args[1]) : 1_000;
+                int large = args.length > 2 ? Integer.parseInt(args[2]) : 1_000_000;
+                for (int size : new int[] {small, large}) {
+                    System.out.printf("  %,10d tasks %,8d ns/op%n", size, nanosPerPointOperation(size));
+                }
+                break;
+            }
+            case "search": {
+                int tasks = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+                searchLatency(tasks);
+                break;
+            }
+            case "fanout": {
+                int subscribers = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+                int events = args.length > 2 ? Integer.parseInt(args[2]) : 1_000_000;
+                eventFanOut(subscribers, events);
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("unknown scenario: " + scenario);
+        }
+    }
+
+    // adds, completes and removes the same work one item at a time and in batches
+    static void batchVersusPerItem(int batchSize, int batches) {
+        List<String> descriptions = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            descriptions.add("task " + i);
+        }
+
+        TaskManager single = new TaskManager();
+        long start = System.nanoTime();
+        for (int b = 0; b < batches; b++) {
+            List<UUID> ids = new ArrayList<>(batchSize);
+            for (String d : descriptions) {
+                ids.add(single.addTask(d).getId());
+            }
+            for (UUID id : ids) {
+                single.markTaskDone(id);
+            }
+            for (UUID id : ids) {
+                single.removeTask(id);
+            }
+        }
+        report("per-item", batchSize * batches, System.nanoTime() - start);
+
+        TaskManager batched = new TaskManager();
+        start = System.nanoTime();
+        for (int b = 0; b < batches; b++) {
+            List<Task> added = batched.addTasks(descriptions);
+            List<UUID> ids = new ArrayList<>(added.size());
+            for (Task t : added) {
+                ids.add(t.getId());
+            }
+            batched.markTasksDone(ids);
+            batched.removeCompleted();
+        }
+        report("batch", batchSize * batches, System.nanoTime() - start);
+    }
+
+    // writes adds, completions and removals from many threads, then reopens the log
+    static void durableAppendAndRecovery(int events, int threads) throws Exception {
+        Path dir = Files.createTempDirectory("task-wal");
+        // each worker logs add + done + remove for two in five of its tasks, add + done for the rest
+        int perThread = events / threads / 12 * 5;
+        long start = System.nanoTime();
+        try (DurableTaskManager manager = DurableTaskManager.open(dir, Long.MAX_VALUE)) {
+            Thread[] workers = new Thread[threads];
+            for (int n = 0; n < threads; n++) {
+                final int worker = n;
+                workers[n] = new Thread(() -> {
+                    List<String> batch = new ArrayList<>(1_000);
+                    for (int i = 0; i < perThread; i += 1_000) {
+                        batch.clear();
+                        for (int j = i; j < Math.min(perThread, i + 1_000); j++) {
+                            batch.add("worker " + worker + " task " + j);
+                        }
+                        List<UUID> ids = new ArrayList<>(batch.size());
+                        for (Task t : manager.addTasks(batch)) {
+                            ids.add(t.getId());
+                        }
+                        manager.markTasksDone(ids);
+                        for (UUID id : ids.subList(0, ids.size() * 2 / 5)) {
+                            manager.removeTask(id);
+                        }
+                    }
+                });
+                workers[n].start();
+            }
+            for (Thread w : workers) {
+                w.join();
+            }
+        }
+        long logged = (long) perThread * threads * 12 / 5;
+        report("append", logged, System.nanoTime() - start);
+
+        start = System.nanoTime();
+        try (DurableTaskManager manager = DurableTaskManager.open(dir)) {
+            long nanos = System.nanoTime() - start;
+            System.out.printf("  recovered %,d tasks from %,d records in %,d ms%n",
+                    manager.listTasks().size(), logged, nanos / 1_000_000);
+            start = System.nanoTime();
+            manager.checkpoint();
+            System.out.printf("  checkpoint took %,d ms%n", (System.nanoTime() - start) / 1_000_000);
+        }
+        start = System.nanoTime();
+        try (DurableTaskManager manager = DurableTaskManager.open(dir)) {
+            System.out.printf("  recovered %,d tasks from snapshot in %,d ms%n",
+                    manager.listTasks().size(), (System.nanoTime() - start) / 1_000_000);
+        }
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    // heap retained per task by the object-per-task and the columnar engines
+    static void memoryFootprint(int tasks, int distinct) {
+        String[] descriptions = new String[distinct];
+        for (int i = 0; i < distinct; i++) {
+            descriptions[i] = "description number " + i;
+        }
+
+        long base = usedHeap();
+        TaskManager objects = new TaskManager();
+        for (int i = 0; i < tasks; i++) {
+            objects.addTask(descriptions[i % distinct]);
+        }
+        long objectBytes = usedHeap() - base;
+        System.out.printf("  %-22s %,14d bytes  %6.1f bytes/task%n", "TaskManager", objectBytes, (double) objectBytes / tasks);
+        objects = null;
+
+        for (boolean offHeap : new boolean[] {false, true}) {
+            base = usedHeap();
+            CompactTaskManager compact = new CompactTaskManager(TaskIdGenerator.timeOrdered(), offHeap);
+            for (int i = 0; i < tasks; i++) {
+                compact.addTask(descriptions[i % distinct]);
+            }
+            long heapBytes = usedHeap() - base;
+            String label = offHeap ? "CompactTaskManager/off" : "CompactTaskManager";
+            System.out.printf("  %-22s %,14d bytes  %6.1f bytes/task  (self-reported %,d incl. off-heap)%n",
+                    label, heapBytes, (double) heapBytes / tasks, compact.footprintBytes());
+        }
+    }
+
+    // best time of marking done and removing one task, by id and by description; flat if lookups are indexed
+    static long nanosPerPointOperation(int size) {
+        TaskManager manager = new TaskManager();
+        List<Task> added = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            added.add(manager.addTask("task " + (i % 1_000)));
+        }
+        int ops = Math.min(200, size / ROUNDS);
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < ops; i++) {
+                Task t = added.get(size - 1 - (round * ops + i));
+                manager.markTaskDone(t.getId());
+                manager.markTaskDone(t.getDescription());
+                manager.removeTask(t.getId());
+                manager.removeTask(t.getDescription());
+            }
+            best = Math.min(best, (System.nanoTime() - start) / ops);
+        }
+        return best;
+    }
+
+    // best time of a search matching one task out of many
+    static void searchLatency(int tasks) {
+        String[] words = {"alpha", "beta", "gamma", "delta", "epsilon", "zeta", "eta", "theta"};
+        List<String> batch = new ArrayList<>(tasks);
+        for (int i = 0; i < tasks; i++) {
+            batch.add(words[i % 8] + " " + words[(i / 8) % 8] + " item" + i);
+        }
+        TaskManager manager = new TaskManager();
+        manager.addTasks(batch);
+        // one rare word, and a prefix of nearly every word
+        for (String query : new String[] {"item" + (tasks / 2), "i"}) {
+            long best = Long.MAX_VALUE;
+            for (int round = 0; round < 500; round++) {
+                long start = System.nanoTime();
+                manager.searchTasks(query, 10);
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            System.out.printf("  search for %-12s over %,d tasks %,d ns%n", "'" + query + "'", tasks, best);
+        }
+    }
+
+    // events delivered to subscribers that keep a small window of demand, and how evenly
+    static void eventFanOut(int subscribers, int events) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        TaskManager manager = new TaskManager();
+        TaskEventPublisher publisher = new TaskEventPublisher(executor, 1_024);
+        manager.addListener(publisher);
+        AtomicLong[] counts = new AtomicLong[subscribers];
+        for (int i = 0; i < subscribers; i++) {
+            AtomicLong count = counts[i] = new AtomicLong();
+            publisher.subscribe(new Flow.Subscriber<TaskEvent>() {
+                Flow.Subscription subscription;
+                long outstanding;
+
+                @Override
+                public void onSubscribe(Flow.Subscription s) {
+                    subscription = s;
+                    outstanding = 64;
+                    s.request(64);
+                }
+
+                @Override
+                public void onNext(TaskEvent item) {
+                    count.incrementAndGet();
+                    if (--outstanding <= 32) {
+                        subscription.request(64 - outstanding);
+                        outstanding = 64;
+                    }
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                }
+
+                @Override
+                public void onComplete() {
+                }
+            });
+        }
+        long expected = (long) subscribers * events;
+        long start = System.nanoTime();
+        for (int i = 0; i < events; i++) {
+            manager.addTask("task " + i);
+        }
+        long delivered = 0;
+        while (delivered + publisher.droppedEvents() < expected) {
+            Thread.sleep(1);
+            delivered = 0;
+            for (AtomicLong count : counts) {
+                delivered += count.get();
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        long fewest = Long.MAX_VALUE;
+        for (AtomicLong count : counts) {
+            fewest = Math.min(fewest, count.get());
+        }
+        report("delivered", delivered, nanos);
+        System.out.printf("  dropped %,d of %,d; the slowest subscriber got %,d of %,d%n",
+                publisher.droppedEvents(), expected, fewest, events);
+        publisher.close();
+        executor.shutdownNow();
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    static void report(String label, long items, long nanos) {
+        System.out.printf("  %-10s %,12.0f items/s%n", label, items * 1e9 / nanos);
+    }
+}
@@ -7,7 +7,16 @@ import com.uday.copilot.TaskManager.Task;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Unit tests for the TaskManager class.
@@ -135,6 +144,42 @@ public class TaskManagerTest {
         assertEquals("Third", tasks.get(2).getDescription());
     }
     
+    @Test
+    public void testListTasksSharedUntilMutation() {
+        taskManager.addTask("First");
+        List<Task> first = taskManager.listTasks();
+        assertSame(first, taskManager.listTasks());
+        taskManager.markTaskDone("First");
+        assertSame(first, taskManager.listTasks());
+        assertTrue(first.get(0).isDone());
+        taskManager.addTask("Second");
+        List<Task> second = taskManager.listTasks();
+        assertNotSame(first, second);
+        assertEquals(1, first.size());
+        assertEquals(2, second.size());
+        taskManager.removeTask("First");
+        assertEquals(1, taskManager.listTasks().size());
+    }
+
+    @Test
+    public void testForEachTaskVisitsInOrder() {
+        taskManager.addTask("First");
+        taskManager.addTask("Second");
+        taskManager.addTask("Third");
+        List<String> seen = new ArrayList<>();
+        taskManager.forEachTask(t -> seen.add(t.getDescription()));
+        assertEquals(List.of("First", "Second", "Third"), seen);
+    }
+
+    @Test
+    public void testStreamTasks() {
+        taskManager.addTask("Keep");
+        taskManager.addTask("Done");
+        taskManager.markTaskDone("Done");
+        assertEquals(1, taskManager.streamTasks().filter(Task::isDone).count());
+        assertEquals("Keep", taskManager.streamTasks().findFirst().get().getDescription());
+    }
+    
     // markTaskDone Tests
     
     @Test
@@ -213,4 +258,236 @@ public class TaskManagerTest {
         assertTrue(res);
         assertEquals(0, taskManager.listTasks().size());
     }
+
+    @Test
+    public void testRemoveTaskByIdLeavesDuplicatesIndexed() {
+        Task first = taskManager.addTask("Duplicate");
+        Task second = taskManager.addTask("Duplicate");
+        taskManager.removeTask(first.getId());
+        assertEquals(1, taskManager.findTasks("Duplicate").size());
+        assertEquals(second, taskManager.findTasks("Duplicate").get(0));
+        assertTrue(taskManager.removeTask("Duplicate"));
+        assertTrue(taskManager.findTasks("Duplicate").isEmpty());
+        assertFalse(taskManager.markTaskDone("Duplicate"));
+    }
+
+    @Test
+    public void testMarkRemovedTaskDoneById() {
+        Task t = taskManager.addTask("Gone");
+        taskManager.removeTask(t.getId());
+        assertFalse(taskManager.markTaskDone(t.getId()));
+        assertFalse(taskManager.removeTask(t.getId()));
+    }
+
+    // searchTasks Tests
+
+    @Test
+    public void testSearchTasksByWordAndPrefix() {
+        taskManager.addTask("Write quarterly report");
+        taskManager.addTask("Review report draft");
+        taskManager.addTask("Buy groceries");
+        assertEquals(List.of("Write quarterly report", "Review report draft"),
+                descriptions(taskManager.searchTasks("report", 10)));
+        assertEquals(List.of("Write quarterly report"), descriptions(taskManager.searchTasks("REP quart", 10)));
+        assertEquals(List.of("Buy groceries"), descriptions(taskManager.searchTasks("groc", 10)));
+        assertTrue(taskManager.searchTasks("report groceries", 10).isEmpty());
+        assertTrue(taskManager.searchTasks("  ", 10).isEmpty());
+    }
+
+    @Test
+    public void testSearchTasksRanksExactMatchesFirst() {
+        taskManager.addTask("reporting tools");
+        taskManager.addTask("annual report");
+        taskManager.addTask("report card");
+        assertEquals(List.of("annual report", "report card", "reporting tools"),
+                descriptions(taskManager.searchTasks("report", 10)));
+        assertEquals(List.of("annual report"), descriptions(taskManager.searchTasks("report", 1)));
+    }
+
+    @Test
+    public void testSearchTasksFollowsRemovals() {
+        Task t = taskManager.addTask("Temporary note");
+        taskManager.addTask("Permanent note");
+        taskManager.removeTask(t.getId());
+        assertEquals(List.of("Permanent note"), descriptions(taskManager.searchTasks("note", 10)));
+        taskManager.removeCompleted();
+        taskManager.removeTask("Permanent note");
+        assertTrue(taskManager.searchTasks("note", 10).isEmpty());
+    }
+
+    @Test
+    public void testSearchTasksFindsOneTaskAmongMany() {
+        String[] words = {"alpha", "beta", "gamma", "delta", "epsilon", "zeta", "eta", "theta"};
+        List<String> batch = new ArrayList<>();
+        for (int i = 0; i < 200_000; i++) {
+            batch.add(words[i % 8] + " " + words[(i / 8) % 8] + " item" + i);
+        }
+        taskManager.addTasks(batch);
+        assertEquals(List.of("theta theta item199999"), descriptions(taskManager.searchTasks("item199999", 10)));
+        assertEquals("beta theta item12345", taskManager.searchTasks("theta item12345", 10).get(0).getDescription());
+    }
+
+    @Test
+    public void testBroadPrefixSearchKeepsExactMatchesFirst() {
+        List<String> batch = new ArrayList<>();
+        for (int i = 0; i < 3 * TaskSearchIndex.MAX_CANDIDATES; i++) {
+            batch.add("item" + i);
+        }
+        taskManager.addTasks(batch);
+        taskManager.addTask("spare item");
+
+        assertEquals(List.of("spare item"), descriptions(taskManager.searchTasks("item", 1)));
+        assertEquals(10, taskManager.searchTasks("ite", 10).size());
+    }
+
+    private static List<String> descriptions(List<Task> tasks) {
+        List<String> result = new ArrayList<>();
+        for (Task t : tasks) {
+            result.add(t.getDescription());
+        }
+        return result;
+    }
+
+    // Batch Tests
+
+    @Test
+    public void testAddTasksKeepsOrder() {
+        taskManager.addTask("Before");
+        List<Task> added = taskManager.addTasks(List.of("One", "Two", "Three", "One"));
+        assertEquals(4, added.size());
+        List<Task> all = taskManager.listTasks();
+        assertEquals(5, all.size());
+        assertEquals("Before", all.get(0).getDescription());
+        assertEquals(added, all.subList(1, 5));
+        assertEquals(2, taskManager.findTasks("One").size());
+    }
+
+    @Test
+    public void testAddTasksRejectsNullElementAtomically() {
+        try {
+            taskManager.addTasks(Arrays.asList("One", null));
+            fail("expected NullPointerException");
+        } catch (NullPointerException expected) {
+            assertEquals(0, taskManager.listTasks().size());
+        }
+    }
+
+    @Test
+    public void testListTasksSeesPartialBatchWhenListenerThrows() {
+        List<String> descriptions = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            descriptions.add("task " + i);
+        }
+        assertEquals(0, taskManager.listTasks().size());
+        int[] calls = {0};
+        taskManager.addListener(new TaskListener() {
+            @Override
+            public void taskAdded(Task task) {
+                if (++calls[0] == 3) {
+                    throw new IllegalStateException("rejected " + task.getDescription());
+                }
+            }
+        });
+        try {
+            taskManager.addTasks(descriptions);
+            fail("expected IllegalStateException");
+        } catch (IllegalStateException expected) {
+        }
+        int visible = 0;
+        for (String d : descriptions) {
+            visible += taskManager.findTasks(d).size();
+        }
+        assertEquals(2, visible);
+        assertEquals(visible, taskManager.listTasks().size());
+    }
+
+    @Test
+    public void testMarkTasksDone() {
+        List<Task> added = taskManager.addTasks(List.of("One", "Two", "Three"));
+        Task stale = new Task("Not managed");
+        int marked = taskManager.markTasksDone(List.of(added.get(0).getId(), added.get(2).getId(), stale.getId()));
+        assertEquals(2, marked);
+        assertTrue(added.get(0).isDone());
+        assertFalse(added.get(1).isDone());
+        assertTrue(added.get(2).isDone());
+    }
+
+    @Test
+    public void testRemoveTasksByPredicate() {
+        taskManager.addTasks(List.of("keep 1", "drop 1", "keep 2", "drop 2"));
+        assertEquals(2, taskManager.removeTasks(t -> t.getDescription().startsWith("drop")));
+        assertEquals(2, taskManager.listTasks().size());
+        assertTrue(taskManager.findTasks("drop 1").isEmpty());
+        assertEquals(0, taskManager.removeTasks(t -> t.getDescription().startsWith("drop")));
+    }
+
+    @Test
+    public void testRemoveCompleted() {
+        List<Task> added = taskManager.addTasks(List.of("One", "Two", "Three"));
+        taskManager.markTaskDone(added.get(1).getId());
+        assertEquals(1, taskManager.removeCompleted());
+        assertEquals(2, taskManager.listTasks().size());
+        assertFalse(taskManager.removeTask(added.get(1).getId()));
+    }
+
+    // Concurrency Tests
+
+    @Test
+    public void testConcurrentWritersLoseAndDoubleRemoveNothing() throws Exception {
+        int threads = 64;
+        int perThread = 2_000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        ConcurrentLinkedQueue<Task> created = new ConcurrentLinkedQueue<>();
+        AtomicInteger removedById = new AtomicInteger();
+        AtomicInteger removedByDescription = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int n = 0; n < threads; n++) {
+            final int worker = n;
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < perThread; i++) {
+                    // descriptions are shared between workers so stripes see contention
+                    Task t = taskManager.addTask("job " + (i % 50));
+                    created.add(t);
+                    taskManager.markTaskDone(t.getId());
+                    if (i % 3 == 0 && taskManager.removeTask(t.getId())) {
+                        removedById.incrementAndGet();
+                    } else if (i % 3 == 1 && taskManager.removeTask("job " + ((i + worker) % 50))) {
+                        removedByDescription.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> f : futures) {
+            f.get();
+        }
+        pool.shutdown();
+
+        int total = threads * perThread;
+        int removed = removedById.get() + removedByDescription.get();
+        List<Task> remaining = taskManager.listTasks();
+        assertEquals(total, created.size());
+        assertEquals(total - removed, remaining.size());
+        assertEquals(remaining.size(), new HashSet<>(remaining).size());
+        int indexed = 0;
+        for (int d = 0; d < 50; d++) {
+            indexed += taskManager.findTasks("job " + d).size();
+        }
+        assertEquals(remaining.size(), indexed);
+        for (Task t : remaining) {
+            assertTrue(t.isDone());
+        }
+        // every task that is gone must report as gone, and only once
+        int goneNow = 0;
+        for (Task t : created) {
+            if (taskManager.removeTask(t.getId())) {
+                goneNow++;
+            }
+        }
+        assertEquals(remaining.size(), goneNow);
+        assertEquals(0, taskManager.listTasks().size());
+    }
 }
\ No newline at end of file
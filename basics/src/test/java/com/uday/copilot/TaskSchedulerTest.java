@@ -0,0 +1,175 @@
+package com.uday.copilot;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.uday.copilot.TaskScheduler.Job;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TaskSchedulerTest {
+
+    private TaskManager manager;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        manager = new TaskManager();
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testRunsWorkAndMarksTaskDone() {
+        try (TaskScheduler scheduler = new TaskScheduler(manager)) {
+            Job<Integer> job = scheduler.submit("Compute", () -> 6 * 7);
+            assertEquals(Integer.valueOf(42), job.result().join());
+            assertTrue(job.getTask().isDone());
+            assertEquals(1, manager.findTasks("Compute").size());
+            assertEquals(1, scheduler.completedCount());
+        }
+    }
+
+    @Test
+    public void testDependenciesRunFirst() {
+        TaskScheduler scheduler = new TaskScheduler(manager, executor, 4);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch gate = new CountDownLatch(1);
+        Job<Void> fetch = scheduler.submit("Fetch", () -> {
+            await(gate);
+            order.add("fetch");
+        });
+        Job<Void> parse = scheduler.submit("Parse", () -> {
+            order.add("parse");
+            return null;
+        }, 0, List.of(fetch));
+        Job<Void> report = scheduler.submit("Report", () -> {
+            assertTrue(fetch.getTask().isDone());
+            order.add("report");
+            return null;
+        }, 0, List.of(fetch, parse));
+        assertEquals(2, scheduler.blockedCount());
+        gate.countDown();
+        report.result().join();
+        assertEquals(List.of("fetch", "parse", "report"), order);
+        assertEquals(0, scheduler.blockedCount());
+        // a finished dependency does not hold anything up
+        assertNull(scheduler.submit("Late", () -> null, 0, List.of(report)).result().join());
+    }
+
+    @Test
+    public void testHigherPriorityRunsFirst() {
+        TaskScheduler scheduler = new TaskScheduler(manager, executor, 1);
+        CountDownLatch gate = new CountDownLatch(1);
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        Job<Void> blocker = scheduler.submit("Blocker", () -> await(gate));
+        List<Job<Integer>> jobs = new ArrayList<>();
+        for (int priority : new int[] {1, 5, 3, 5}) {
+            jobs.add(scheduler.submit("p" + priority, () -> {
+                order.add(priority);
+                return priority;
+            }, priority, List.of()));
+        }
+        assertEquals(4, scheduler.queueDepth());
+        gate.countDown();
+        blocker.result().join();
+        for (Job<Integer> job : jobs) {
+            job.result().join();
+        }
+        assertEquals(List.of(5, 5, 3, 1), order);
+    }
+
+    @Test
+    public void testFailurePropagatesToDependents() {
+        TaskScheduler scheduler = new TaskScheduler(manager, executor, 2);
+        AtomicInteger ran = new AtomicInteger();
+        Job<Void> broken = scheduler.submit("Broken", () -> {
+            throw new IllegalStateException("boom");
+        });
+        Job<Void> dependent = scheduler.submit("Dependent", () -> {
+            ran.incrementAndGet();
+            return null;
+        }, 0, List.of(broken));
+        try {
+            dependent.result().join();
+            fail("expected failure");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertEquals(0, ran.get());
+        assertFalse(broken.getTask().isDone());
+        assertFalse(dependent.getTask().isDone());
+        assertEquals(2, scheduler.failedCount());
+    }
+
+    @Test
+    public void testFailureRunsDownALongChain() throws Exception {
+        TaskScheduler scheduler = new TaskScheduler(manager, executor, 2);
+        CountDownLatch gate = new CountDownLatch(1);
+        Job<Void> first = scheduler.submit("Link 0", () -> {
+            await(gate);
+            throw new IllegalStateException("boom");
+        });
+        Job<?> last = first;
+        for (int i = 1; i < 100_000; i++) {
+            last = scheduler.submit("Link " + i, () -> null, 0, List.of(last));
+        }
+        gate.countDown();
+        try {
+            last.result().get(30, TimeUnit.SECONDS);
+            fail("expected failure");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertEquals(100_000, scheduler.failedCount());
+        assertEquals(0, scheduler.blockedCount());
+    }
+
+    @Test
+    public void testManyShortJobs() throws Exception {
+        int jobs = 100_000;
+        TaskScheduler scheduler = new TaskScheduler(manager, executor, 4);
+        AtomicInteger counter = new AtomicInteger();
+        long start = System.nanoTime();
+        Job<Integer> last = null;
+        for (int i = 0; i < jobs; i++) {
+            last = scheduler.submit("job " + i, counter::incrementAndGet);
+        }
+        last.result().join();
+        while (scheduler.completedCount() < jobs) {
+            TimeUnit.MILLISECONDS.sleep(1);
+        }
+        long nanos = System.nanoTime() - start;
+        assertEquals(jobs, counter.get());
+        assertEquals(jobs, manager.streamTasks().filter(TaskManager.Task::isDone).count());
+        assertEquals(0, scheduler.queueDepth());
+        assertEquals(0, scheduler.runningCount());
+        assertTrue(scheduler.averageRunNanos() > 0);
+        System.out.printf("ran %,d jobs at %,.0f jobs/min, mean wait %,d ns, mean run %,d ns%n",
+                jobs, jobs * 60e9 / nanos, scheduler.averageWaitNanos(), scheduler.averageRunNanos());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
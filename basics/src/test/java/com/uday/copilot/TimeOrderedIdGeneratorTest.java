@@ -0,0 +1,79 @@
+package com.uday.copilot;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class TimeOrderedIdGeneratorTest {
+
+    private final TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator();
+
+    @Test
+    public void testIdsAreVersion7() {
+        UUID id = generator.nextId();
+        assertEquals(7, id.version());
+        assertEquals(2, id.variant());
+    }
+
+    @Test
+    public void testIdsSortByCreation() {
+        UUID previous = generator.nextId();
+        for (int i = 0; i < 100_000; i++) {
+            UUID next = generator.nextId();
+            assertTrue(previous + " !< " + next, previous.compareTo(next) < 0);
+            previous = next;
+        }
+    }
+
+    @Test
+    public void testTimestampOf() {
+        long before = System.currentTimeMillis();
+        Instant stamp = TimeOrderedIdGenerator.timestampOf(generator.nextId());
+        assertTrue(stamp.toEpochMilli() >= before);
+        assertTrue(stamp.toEpochMilli() <= System.currentTimeMillis() + 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTimestampOfRandomIdRejected() {
+        TimeOrderedIdGenerator.timestampOf(UUID.randomUUID());
+    }
+
+    @Test
+    public void testIdsUniqueAcrossThreads() throws Exception {
+        int threads = 16;
+        int perThread = 20_000;
+        Set<UUID> seen = ConcurrentHashMap.newKeySet();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int n = 0; n < threads; n++) {
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    seen.add(generator.nextId());
+                }
+            }));
+        }
+        for (Future<?> f : futures) {
+            f.get();
+        }
+        pool.shutdown();
+        assertEquals(threads * perThread, seen.size());
+    }
+
+    @Test
+    public void testTaskManagerUsesGivenGenerator() {
+        UUID fixed = UUID.fromString("00000000-0000-0000-0000-000000000001");
+        TaskManager manager = new TaskManager(() -> fixed);
+        assertEquals(fixed, manager.addTask("Fixed").getId());
+        assertTrue(manager.markTaskDone(fixed));
+    }
+}
@@ -0,0 +1,117 @@
+package com.uday.copilot.clinical.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.uday.copilot.clinical.dto.ObservationInput;
+import com.uday.copilot.clinical.model.Patient;
+import com.uday.copilot.clinical.repository.ObservationRepository;
+import com.uday.copilot.clinical.repository.PatientRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:observations;DB_CLOSE_DELAY=-1;NON_KEYWORDS=VALUE",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@AutoConfigureMockMvc
+class ObservationControllerTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private PatientRepository patients;
+
+    @Autowired
+    private ObservationRepository observations;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private final List<Long> patientIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        observations.deleteAll();
+        patients.deleteAll();
+        patientIds.clear();
+        for (int i = 0; i < 10; i++) {
+            Patient p = new Patient();
+            p.setFirstName("First" + i);
+            patientIds.add(patients.save(p).getId());
+        }
+    }
+
+    @Test
+    void insertsABatchForManyPatientsInFewStatements() throws Exception {
+        List<ObservationInput> batch = observationsFor(patientIds, 3_000);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        mvc.perform(post("/api/observations/batch").contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(batch)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.inserted").value(3_000));
+
+        assertEquals(3_000, observations.count());
+        assertEquals(300, observations.findByPatientId(patientIds.get(0)).size());
+        // one existence check, a sequence call and an insert batch per 500 rows; nothing per row
+        assertTrue(statistics.getPrepareStatementCount() < 20, "statements: " + statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void rejectsTheWholeBatchIfAPatientIsMissing() throws Exception {
+        List<Long> ids = new ArrayList<>(patientIds);
+        ids.add(-1L);
+
+        mvc.perform(post("/api/observations/batch").contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(observationsFor(ids, 100))))
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(jsonPath("$.missingPatientIds[0]").value(-1));
+
+        assertEquals(0, observations.count());
+    }
+
+    @Test
+    void rejectsEmptyAndOversizedBatches() throws Exception {
+        mvc.perform(post("/api/observations/batch").contentType(MediaType.APPLICATION_JSON).content("[]"))
+                .andExpect(status().isBadRequest());
+        mvc.perform(post("/api/observations/batch").contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(observationsFor(patientIds, ObservationController.MAX_BATCH + 1))))
+                .andExpect(status().isBadRequest());
+    }
+
+    private static List<ObservationInput> observationsFor(List<Long> ids, int count) {
+        List<ObservationInput> batch = new ArrayList<>(count);
+        Instant start = Instant.parse("2024-01-01T00:00:00Z");
+        for (int i = 0; i < count; i++) {
+            batch.add(new ObservationInput(ids.get(i % ids.size()), "heart_rate", String.valueOf(60 + i % 40), "bpm",
+                    start.plusSeconds(i)));
+        }
+        return batch;
+    }
+}
@@ -0,0 +1,137 @@
+package com.uday.copilot.clinical.controller;
+
+import com.uday.copilot.clinical.dto.ObservationInput;
+import com.uday.copilot.clinical.model.Patient;
+import com.uday.copilot.clinical.repository.ObservationRepository;
+import com.uday.copilot.clinical.repository.PatientRepository;
+import com.uday.copilot.clinical.service.ObservationIngestService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:series;DB_CLOSE_DELAY=-1;NON_KEYWORDS=VALUE",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false"
+})
+@AutoConfigureMockMvc
+class ObservationSeriesTest {
+
+    private static final Instant START = Instant.parse("2024-01-01T00:00:00Z");
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private PatientRepository patients;
+
+    @Autowired
+    private ObservationRepository observations;
+
+    @Autowired
+    private ObservationIngestService ingestService;
+
+    private Long patientId;
+
+    @BeforeEach
+    void setUp() {
+        observations.deleteAll();
+        patients.deleteAll();
+        patientId = patients.save(new Patient()).getId();
+        Long otherId = patients.save(new Patient()).getId();
+
+        // a heart rate every minute for two hours, equal to the minute, plus rows the query must skip
+        List<ObservationInput> rows = new ArrayList<>();
+        for (int minute = 0; minute < 120; minute++) {
+            Instant at = START.plusSeconds(60L * minute);
+            rows.add(new ObservationInput(patientId, "heart_rate", String.valueOf(minute), "bpm", at));
+            rows.add(new ObservationInput(patientId, "temperature", "37.0", "C", at));
+            rows.add(new ObservationInput(otherId, "heart_rate", "1000", "bpm", at));
+        }
+        ingestService.insertAll(rows);
+    }
+
+    @Test
+    void downsamplesIntoBucketsInTheDatabase() throws Exception {
+        mvc.perform(get("/api/patients/{id}/observations/series", patientId)
+                        .param("type", "heart_rate")
+                        .param("from", "2024-01-01T00:00:00Z")
+                        .param("to", "2024-01-01T01:00:00Z")
+                        .param("bucket", "PT10M"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(6)))
+                .andExpect(jsonPath("$[0].start").value("2024-01-01T00:00:00Z"))
+                .andExpect(jsonPath("$[0].count").value(10))
+                .andExpect(jsonPath("$[0].min").value(0.0))
+                .andExpect(jsonPath("$[0].max").value(9.0))
+                .andExpect(jsonPath("$[0].avg").value(4.5))
+                .andExpect(jsonPath("$[5].start").value("2024-01-01T00:50:00Z"))
+                .andExpect(jsonPath("$[5].min").value(50.0))
+                .andExpect(jsonPath("$[5].max").value(59.0));
+    }
+
+    @Test
+    void bucketsCountFromTheStartOfTheRange() throws Exception {
+        mvc.perform(get("/api/patients/{id}/observations/series", patientId)
+                        .param("type", "heart_rate")
+                        .param("from", "2024-01-01T01:45:00Z")
+                        .param("to", "2024-01-01T03:00:00Z")
+                        .param("bucket", "PT1H"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].start").value("2024-01-01T01:45:00Z"))
+                .andExpect(jsonPath("$[0].count").value(15))
+                .andExpect(jsonPath("$[0].min").value(105.0))
+                .andExpect(jsonPath("$[0].max").value(119.0));
+    }
+
+    @Test
+    void namesNonNumericValuesInsteadOfFailing() throws Exception {
+        ingestService.insertAll(List.of(new ObservationInput(patientId, "blood_pressure", "120/80", "mmHg", START)));
+
+        mvc.perform(get("/api/patients/{id}/observations/series", patientId)
+                        .param("type", "blood_pressure")
+                        .param("from", "2024-01-01T00:00:00Z")
+                        .param("to", "2024-01-01T01:00:00Z")
+                        .param("bucket", "PT10M"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value(containsString("blood_pressure")));
+    }
+
+    @Test
+    void rejectsBadRangesAndUnknownPatients() throws Exception {
+        mvc.perform(get("/api/patients/{id}/observations/series", patientId)
+                        .param("type", "heart_rate")
+                        .param("from", "2024-01-01T01:00:00Z")
+                        .param("to", "2024-01-01T00:00:00Z")
+                        .param("bucket", "PT10M"))
+                .andExpect(status().isBadRequest());
+        mvc.perform(get("/api/patients/{id}/observations/series", patientId)
+                        .param("type", "heart_rate")
+                        .param("from", "2024-01-01T00:00:00Z")
+                        .param("to", "2024-01-02T00:00:00Z")
+                        .param("bucket", "PT1S"))
+                .andExpect(status().isBadRequest());
+        mvc.perform(get("/api/patients/{id}/observations/series", -1)
+                        .param("type", "heart_rate")
+                        .param("from", "2024-01-01T00:00:00Z")
+                        .param("to", "2024-01-01T01:00:00Z")
+                        .param("bucket", "PT10M"))
+                .andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,132 @@
+package com.uday.copilot.clinical.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.uday.copilot.clinical.model.Patient;
+import com.uday.copilot.clinical.repository.ObservationRepository;
+import com.uday.copilot.clinical.repository.PatientRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Runs the patient API against an in-memory H2 database.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:patients;DB_CLOSE_DELAY=-1;NON_KEYWORDS=VALUE",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false"
+})
+@AutoConfigureMockMvc
+class PatientControllerTest {
+
+    private static final Pattern NEXT = Pattern.compile("<(.+)>; rel=\"next\"");
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private PatientRepository patients;
+
+    @Autowired
+    private ObservationRepository observations;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final List<Long> ids = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        observations.deleteAll();
+        patients.deleteAll();
+        ids.clear();
+        List<Patient> batch = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            Patient p = new Patient();
+            p.setFirstName("First" + i);
+            p.setLastName("Last" + i);
+            p.setDateOfBirth(LocalDate.of(1950, 1, 1).plusDays(i));
+            p.setGender(i % 2 == 0 ? "F" : "M");
+            batch.add(p);
+        }
+        for (Patient saved : patients.saveAll(batch)) {
+            ids.add(saved.getId());
+        }
+    }
+
+    @Test
+    void pagesFollowTheNextLinkThroughEveryPatient() throws Exception {
+        List<Long> seen = new ArrayList<>();
+        String url = "/api/patients?limit=100";
+        int pages = 0;
+        while (url != null) {
+            MvcResult result = mvc.perform(get(url)).andExpect(status().isOk()).andReturn();
+            for (JsonNode patient : objectMapper.readTree(result.getResponse().getContentAsString())) {
+                seen.add(patient.get("id").asLong());
+                assertFalse(patient.has("observations"));
+            }
+            String link = result.getResponse().getHeader(HttpHeaders.LINK);
+            url = null;
+            if (link != null) {
+                Matcher m = NEXT.matcher(link);
+                assertTrue(m.matches());
+                url = m.group(1);
+            }
+            pages++;
+        }
+
+        assertEquals(ids, seen);
+        assertEquals(3, pages);
+    }
+
+    @Test
+    void pageStartsAfterTheGivenId() throws Exception {
+        MvcResult result = mvc.perform(get("/api/patients?after=" + ids.get(9) + "&limit=5"))
+                .andExpect(status().isOk()).andReturn();
+
+        JsonNode page = objectMapper.readTree(result.getResponse().getContentAsString());
+        assertEquals(5, page.size());
+        assertEquals(ids.get(10).longValue(), page.get(0).get("id").asLong());
+        assertEquals("First10", page.get(0).get("firstName").asText());
+    }
+
+    @Test
+    void rejectsPageSizesOutOfRange() throws Exception {
+        mvc.perform(get("/api/patients?limit=0")).andExpect(status().isBadRequest());
+        mvc.perform(get("/api/patients?limit=" + (PatientController.MAX_PAGE_SIZE + 1))).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void streamsEveryPatientAsNdjson() throws Exception {
+        MvcResult started = mvc.perform(get("/api/patients?format=ndjson&after=" + ids.get(49)))
+                .andExpect(request().asyncStarted()).andReturn();
+        MvcResult result = mvc.perform(asyncDispatch(started)).andExpect(status().isOk()).andReturn();
+
+        assertTrue(result.getResponse().getContentType().startsWith("application/x-ndjson"));
+        String[] lines = result.getResponse().getContentAsString().split("\n");
+        assertEquals(200, lines.length);
+        for (int i = 0; i < lines.length; i++) {
+            assertEquals(ids.get(50 + i).longValue(), objectMapper.readTree(lines[i]).get("id").asLong());
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.uday.copilot.clinical.controller;
+
+import com.uday.copilot.clinical.model.Observation;
+import com.uday.copilot.clinical.model.Patient;
+import com.uday.copilot.clinical.repository.ObservationRepository;
+import com.uday.copilot.clinical.repository.PatientRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Counts the SQL statements each patient read issues, which must not depend on how
+ * many patients or observations there are.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:querycount;DB_CLOSE_DELAY=-1;NON_KEYWORDS=VALUE",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@AutoConfigureMockMvc
+class PatientQueryCountTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private PatientRepository patients;
+
+    @Autowired
+    private ObservationRepository observations;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private Long firstId;
+
+    @BeforeEach
+    void setUp() {
+        observations.deleteAll();
+        patients.deleteAll();
+        List<Observation> batch = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            Patient patient = new Patient();
+            patient.setFirstName("First" + i);
+            patient.setLastName("Last" + i);
+            patient.setDateOfBirth(LocalDate.of(1980, 1, 1));
+            patient = patients.save(patient);
+            if (i == 0) {
+                firstId = patient.getId();
+            }
+            for (int j = 0; j < 25; j++) {
+                Observation o = new Observation();
+                o.setPatient(patient);
+                o.setType("heart_rate");
+                o.setValue(String.valueOf(60 + j));
+                o.setUnit("bpm");
+                o.setObservedAt(Instant.parse("2024-01-01T00:00:00Z").plusSeconds(60L * j));
+                batch.add(o);
+            }
+        }
+        observations.saveAll(batch);
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void listingPatientsIsOneStatement() throws Exception {
+        mvc.perform(get("/api/patients?limit=100"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(40));
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void readingOnePatientIsOneStatement() throws Exception {
+        mvc.perform(get("/api/patients/" + firstId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.firstName").value("First0"));
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void readingObservationsIsTwoStatements() throws Exception {
+        mvc.perform(get("/api/patients/" + firstId + "/observations"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(25))
+                .andExpect(jsonPath("$[0].patientId").value(firstId))
+                .andExpect(jsonPath("$[0].value").value("60"));
+
+        // the existence check and the observations themselves
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+}
@@ -0,0 +1,235 @@
+package com.uday.copilot.clinical.service;
+
+import com.uday.copilot.clinical.dto.ObservationInput;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+class ObservationWriteBehindTest {
+
+    // a patient whose observations cannot be inserted
+    private static final long MISSING_PATIENT = -1;
+
+    @TempDir
+    Path dir;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void acknowledgesAtOnceAndWritesInBatches() throws IOException {
+        RecordingIngestService ingest = new RecordingIngestService(true);
+        ObservationWriteBehind writeBehind = new ObservationWriteBehind(ingest, registry, 1_000, 2, 50, "");
+
+        for (int i = 1; i <= 500; i++) {
+            assertEquals(i, writeBehind.submit(observation(i)));
+        }
+        writeBehind.close();
+
+        assertEquals(500, ingest.inserted.size());
+        assertEquals(0, writeBehind.queueDepth());
+        assertTrue(registry.get("clinical.ingest.flush.latency").timer().count() >= 10);
+    }
+
+    @Test
+    void refusesWhenTheQueueIsFull() throws IOException {
+        RecordingIngestService ingest = new RecordingIngestService(false);
+        ObservationWriteBehind writeBehind = new ObservationWriteBehind(ingest, registry, 4, 1, 1, "");
+
+        int accepted = 0;
+        for (int i = 1; i <= 10; i++) {
+            if (writeBehind.submit(observation(i)) > 0) {
+                accepted++;
+            }
+        }
+        assertTrue(accepted >= 4 && accepted <= 5, "accepted " + accepted);
+        assertEquals(10 - accepted, registry.get("clinical.ingest.rejected").counter().count());
+
+        ingest.gate.countDown();
+        writeBehind.close();
+        assertEquals(accepted, ingest.inserted.size());
+    }
+
+    @Test
+    void badRowOnlyLosesItself() throws IOException {
+        RecordingIngestService ingest = new RecordingIngestService(true);
+        ObservationWriteBehind writeBehind = new ObservationWriteBehind(ingest, registry, 100, 1, 100, "");
+
+        for (int i = 1; i <= 20; i++) {
+            writeBehind.submit(observation(i == 7 ? MISSING_PATIENT : i));
+        }
+        writeBehind.close();
+
+        assertEquals(19, ingest.inserted.size());
+        assertEquals(1, registry.get("clinical.ingest.failed").counter().count());
+    }
+
+    @Test
+    void waitsOutADatabaseOutage() throws Exception {
+        RecordingIngestService ingest = new RecordingIngestService(true);
+        ingest.outages.set(3);
+        ObservationWriteBehind writeBehind = new ObservationWriteBehind(ingest, registry, 100, 1, 100, "");
+
+        for (int i = 1; i <= 20; i++) {
+            writeBehind.submit(observation(i));
+        }
+        awaitUntil(() -> ingest.inserted.size() == 20);
+        writeBehind.close();
+
+        assertEquals(0, registry.get("clinical.ingest.failed").counter().count());
+    }
+
+    @Test
+    void loggedObservationsOutliveAnOutageAtShutdown() throws Exception {
+        RecordingIngestService down = new RecordingIngestService(true);
+        down.outages.set(Integer.MAX_VALUE);
+        ObservationWriteBehind writeBehind = new ObservationWriteBehind(down, registry, 100, 1, 10, dir.toString());
+        for (int i = 1; i <= 10; i++) {
+            writeBehind.submit(observation(i));
+        }
+        awaitUntil(() -> down.calls.get() >= 2);
+        writeBehind.close();
+
+        assertEquals(0, registry.get("clinical.ingest.failed").counter().count());
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(1, files.count());
+        }
+
+        RecordingIngestService ingest = new RecordingIngestService(true);
+        new ObservationWriteBehind(ingest, new SimpleMeterRegistry(), 100, 1, 10, dir.toString()).close();
+        assertEquals(10, ingest.inserted.size());
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void concurrentSubmittersSurviveLogRotation() throws Exception {
+        RecordingIngestService ingest = new RecordingIngestService(true);
+        ObservationWriteBehind writeBehind = new ObservationWriteBehind(ingest, registry, 10_000, 2, 50, dir.toString(), 3);
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<?>> submitters = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int first = t * 500;
+            submitters.add(pool.submit(() -> {
+                for (int i = first + 1; i <= first + 500; i++) {
+                    assertTrue(writeBehind.submit(observation(i)) > 0);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> f : submitters) {
+            f.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+        writeBehind.close();
+
+        assertEquals(2_000, ingest.inserted.size());
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void acknowledgedObservationsSurviveACrash() throws IOException {
+        RecordingIngestService stuck = new RecordingIngestService(false);
+        ObservationWriteBehind crashed = new ObservationWriteBehind(stuck, registry, 100, 1, 10, dir.toString());
+        for (int i = 1; i <= 25; i++) {
+            crashed.submit(observation(i));
+        }
+        // a record torn by the crash is skipped
+        try (Stream<Path> files = Files.list(dir)) {
+            Files.write(files.findFirst().orElseThrow(), new byte[] {0, 0, 0, 40, 1, 2}, StandardOpenOption.APPEND);
+        }
+
+        RecordingIngestService ingest = new RecordingIngestService(true);
+        ObservationWriteBehind restarted = new ObservationWriteBehind(ingest, new SimpleMeterRegistry(), 100, 1, 10, dir.toString());
+        assertEquals(26, restarted.submit(observation(26)));
+        restarted.close();
+
+        Set<Long> patients = new HashSet<>();
+        for (ObservationInput o : ingest.inserted) {
+            patients.add(o.patientId());
+        }
+        assertEquals(26, patients.size());
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(0, files.count());
+        }
+
+        stuck.gate.countDown();
+        crashed.close();
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                fail("timed out");
+            }
+            TimeUnit.MILLISECONDS.sleep(1);
+        }
+    }
+
+    private static ObservationInput observation(long patientId) {
+        return new ObservationInput(patientId, "heart-rate", "72", "bpm", Instant.parse("2024-01-01T00:00:00Z"));
+    }
+
+    // records the observations it is asked to insert, once the gate is open and the outages are over
+    private static final class RecordingIngestService extends ObservationIngestService {
+        final List<ObservationInput> inserted = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch gate;
+        // calls still to fail as if the database were down
+        final AtomicInteger outages = new AtomicInteger();
+        final AtomicInteger calls = new AtomicInteger();
+
+        RecordingIngestService(boolean open) {
+            super(null);
+            this.gate = new CountDownLatch(open ? 0 : 1);
+        }
+
+        @Override
+        public int insertAll(List<ObservationInput> observations) {
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            calls.incrementAndGet();
+            if (outages.getAndDecrement() > 0) {
+                throw new DataAccessResourceFailureException("connection refused");
+            }
+            for (ObservationInput o : observations) {
+                if (o.patientId() == MISSING_PATIENT) {
+                    throw new DataIntegrityViolationException("patient " + MISSING_PATIENT + " does not exist");
+                }
+            }
+            inserted.addAll(observations);
+            return observations.size();
+        }
+    }
+}